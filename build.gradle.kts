@@ -6,11 +6,27 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations {
+    named("jmhImplementation") {
+        extendsFrom(configurations.implementation.get())
+    }
+}
+
 dependencies {
     implementation("org.slf4j:slf4j-api:2.0.12")
 
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.10.2")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.10.2")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.test {
@@ -20,3 +36,23 @@ tasks.test {
         events("passed", "skipped", "failed")
     }
 }
+
+// ./gradlew jmh                                   runs every benchmark
+// ./gradlew jmh -PjmhArgs="ReadEnrollees -p rows=10000"   passes extra arguments to JMH
+// results are written as JSON so runs of different releases can be compared
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks and writes the results as JSON."
+    dependsOn(tasks.named("jmhClasses"))
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val results = providers.gradleProperty("jmhResults")
+        .orElse(layout.buildDirectory.file("reports/jmh/results.json").map { it.asFile.absolutePath })
+    val extra = providers.gradleProperty("jmhArgs").map { it.split(" ").filter(String::isNotBlank) }.orElse(listOf())
+
+    doFirst {
+        file(results.get()).parentFile.mkdirs()
+        args(extra.get() + listOf("-rf", "json", "-rff", results.get()))
+    }
+}
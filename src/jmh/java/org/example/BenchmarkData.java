@@ -0,0 +1,107 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates the synthetic enrollment files the benchmarks run over.
+ * <p>
+ * Files are deterministic for a given row count, duplicate ratio and company count and are
+ * cached in {@code java.io.tmpdir/enrollment-bench}, so the 10M row inputs are only written once.
+ * Names follow a skewed distribution over common first and last names, as real member lists do.
+ */
+final class BenchmarkData {
+
+    static final String[] FIRST_NAMES = {
+            "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+            "Christopher", "Lisa", "Daniel", "Nancy", "Matthew", "Betty", "Anthony", "Margaret", "Mark", "Sandra",
+            "Donald", "Ashley", "Steven", "Kimberly", "Paul", "Emily", "Andrew", "Donna", "Joshua", "Michelle"
+    };
+
+    static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+            "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson",
+            "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres", "Nguyen", "Hill", "Flores"
+    };
+
+    private BenchmarkData() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns a CSV input with a header and {@code rows} data rows, generating it on first use.
+     *
+     * @param rows           number of data rows
+     * @param duplicateRatio fraction of rows that repeat an earlier user ID with another version
+     * @param companies      number of distinct insurance companies
+     */
+    static Path csv(int rows, double duplicateRatio, int companies) throws IOException {
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "enrollment-bench");
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format(Locale.ROOT, "rows%d-dup%.3f-companies%d.csv",
+                rows, duplicateRatio, companies));
+        if (Files.exists(file)) {
+            return file;
+        }
+        Path partial = Files.createTempFile(directory, "generating", ".csv");
+        try (BufferedWriter out = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            write(out, rows, duplicateRatio, companies);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * Returns the data rows of a generated file, without its header.
+     */
+    static List<String> lines(Path csv) throws IOException {
+        try (Stream<String> lines = Files.lines(csv)) {
+            return lines.skip(1).collect(Collectors.toList());
+        }
+    }
+
+    private static void write(BufferedWriter out, int rows, double duplicateRatio, int companies) throws IOException {
+        Random random = new Random(rows * 31L + companies);
+        out.write("User Id,Full Name,Version,Insurance Company\n");
+        int distinct = 0;
+        for (int i = 0; i < rows; i++) {
+            int id;
+            if (distinct > 0 && random.nextDouble() < duplicateRatio) {
+                id = random.nextInt(distinct);
+            } else {
+                id = distinct++;
+            }
+            // the member's name and company depend on the id only, so duplicates agree
+            Random member = new Random(id * 0x9E3779B97F4A7C15L);
+            out.write('U');
+            out.write(Integer.toString(1000 + id));
+            out.write(',');
+            out.write(skewed(FIRST_NAMES, member));
+            out.write(' ');
+            out.write(skewed(LAST_NAMES, member));
+            out.write(',');
+            out.write(Integer.toString(1 + random.nextInt(9)));
+            out.write(",Carrier ");
+            out.write(Integer.toString(id % companies));
+            out.write(" Health\n");
+        }
+    }
+
+    // squaring a uniform value favours the front of the list
+    static String skewed(String[] names, Random random) {
+        double r = random.nextDouble();
+        return names[(int) (r * r * names.length)];
+    }
+}
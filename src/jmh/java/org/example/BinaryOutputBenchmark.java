@@ -0,0 +1,93 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * What a downstream job pays to read the output back: re-parsing the company CSV files
+ * against mapping the same companies as {@link BinaryCompanyFile}s, plus the cost of
+ * converting the CSV files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class BinaryOutputBenchmark extends GeneratedInputBenchmark {
+
+    private Path csvDirectory;
+    private Path binaryDirectory;
+    private Path convertedDirectory;
+    private List<Path> csvFiles;
+    private List<Path> binaryFiles;
+
+    @Setup
+    public void prepare() throws IOException {
+        Map<String, Map<String, Enrolled>> sorted = Sorting.sortByName(MappedCSVReader.readEnrollees(csv().toString()));
+        csvDirectory = Files.createTempDirectory("enrollment-bench-csv");
+        binaryDirectory = Files.createTempDirectory("enrollment-bench-binary");
+        convertedDirectory = Files.createTempDirectory("enrollment-bench-converted");
+        CSVWriter.writeByCompany(sorted, csvDirectory);
+        BinaryCompanyFile.writeByCompany(sorted, binaryDirectory);
+        csvFiles = list(csvDirectory);
+        binaryFiles = list(binaryDirectory);
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @TearDown
+    public void cleanUp() throws IOException {
+        for (Path directory : List.of(csvDirectory, binaryDirectory, convertedDirectory)) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void readCsvOutput(Blackhole blackhole) throws IOException {
+        for (Path file : csvFiles) {
+            blackhole.consume(MappedCSVReader.readEnrollees(file.toString()));
+        }
+    }
+
+    @Benchmark
+    public void readBinaryOutput(Blackhole blackhole) throws IOException {
+        for (Path file : binaryFiles) {
+            for (Enrolled e : BinaryCompanyFile.open(file)) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public int convertCsvOutput() throws IOException {
+        return BinaryCompanyFile.convertDirectory(csvDirectory, convertedDirectory);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Deduplication of parsed rows into company → userId maps: the {@code Collectors.toMap}
+ * collector {@link CSVReader} uses by default against the packed {@link UserIdMap}, on
+ * their own and as part of a whole stream read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class DedupeMapBenchmark extends GeneratedInputBenchmark {
+
+    @Param({"hash", "packed"})
+    public String dedupeMap;
+
+    private List<Enrolled> parsed;
+    private String path;
+    private PipelineOptions options;
+
+    @Setup
+    public void prepare() throws IOException {
+        path = csv().toString();
+        parsed = BenchmarkData.lines(csv()).stream()
+                .map(CSVReader::parseLine)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        options = PipelineOptions.parse("--dedupe-map=" + dedupeMap);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Enrolled>> dedupe() {
+        ParseContext context = new ParseContext();
+        Collector<Enrolled, ?, Map<String, Enrolled>> members = options.packedUserIds()
+                ? UserIdMap.collector()
+                : Collectors.toMap(Enrolled::userId, Function.identity(),
+                        Enrolled::latest);
+        return parsed.stream().collect(Collectors.groupingBy(e -> context.companyKey(e.insuranceCompany()), members));
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Enrolled>> readEnrollees() throws IOException {
+        return ReaderEngine.STREAM.read(path, options);
+    }
+}
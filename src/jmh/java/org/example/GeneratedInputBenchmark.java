@@ -0,0 +1,26 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Param;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Parameters shared by every benchmark that runs over a generated enrollment file.
+ * Override them on the command line, e.g. {@code -p rows=10000 -p duplicateRatio=0.5}.
+ */
+public abstract class GeneratedInputBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"0.2"})
+    public double duplicateRatio;
+
+    @Param({"50"})
+    public int companies;
+
+    protected Path csv() throws IOException {
+        return BenchmarkData.csv(rows, duplicateRatio, companies);
+    }
+}
@@ -0,0 +1,82 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting one company's members: {@code Arrays.sort} with {@link Sorting#BY_NAME} against
+ * the folded-key sort and the {@link NameRadixSort}.
+ * <p>
+ * Names use the skewed distribution of the generated inputs, so most members share a
+ * common surname and many share the full name, and a share of them is upper-cased the way
+ * feeds from some carriers arrive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class NameSortBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int members;
+
+    @Param({"0.1"})
+    public double upperCaseRatio;
+
+    private List<Enrolled> enrollees;
+
+    @Setup
+    public void prepare() {
+        Random random = new Random(members);
+        Enrolled[] generated = new Enrolled[members];
+        for (int i = 0; i < members; i++) {
+            String first = BenchmarkData.skewed(BenchmarkData.FIRST_NAMES, random);
+            String last = BenchmarkData.skewed(BenchmarkData.LAST_NAMES, random);
+            if (random.nextDouble() < upperCaseRatio) {
+                first = first.toUpperCase(java.util.Locale.ROOT);
+                last = last.toUpperCase(java.util.Locale.ROOT);
+            }
+            generated[i] = new Enrolled("U" + (1000 + i), first, last, 1, "Carrier 0 Health");
+        }
+        // members arrive in user ID order, not name order
+        enrollees = Arrays.asList(generated);
+    }
+
+    @Benchmark
+    public Enrolled[] arraysSort() {
+        Enrolled[] rows = enrollees.toArray(new Enrolled[0]);
+        Arrays.sort(rows, Sorting.BY_NAME);
+        return rows;
+    }
+
+    @Benchmark
+    public FoldedNameKey[] foldedKeys() {
+        FoldedNameKey[] keys = new FoldedNameKey[enrollees.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = FoldedNameKey.of(enrollees.get(i));
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    @Benchmark
+    public Enrolled[] radix() {
+        return NameRadixSort.sort(enrollees);
+    }
+}
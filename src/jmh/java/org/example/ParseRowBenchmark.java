@@ -0,0 +1,76 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Cost of turning one row into an {@link Enrolled}, cycling through the rows of the input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParseRowBenchmark extends GeneratedInputBenchmark {
+
+    private static final Logger logger = Logger.getLogger(ParseRowBenchmark.class.getName());
+
+    private String[] lines;
+    private int nextLine;
+
+    private ByteBuffer bytes;
+    private int[] lineStarts;
+    private int nextBytes;
+
+    @Setup
+    public void load() throws IOException {
+        List<String> rows = BenchmarkData.lines(csv());
+        lines = rows.toArray(new String[0]);
+
+        // the rows as one UTF-8 buffer, the way the mapped reader sees them
+        byte[] file = Files.readAllBytes(csv());
+        bytes = ByteBuffer.wrap(file);
+        lineStarts = new int[lines.length];
+        int position = MappedCSVReader.nextLineStart(bytes, MappedCSVReader.skipLine(bytes, 0, file.length), file.length);
+        for (int i = 0; i < lineStarts.length; i++) {
+            lineStarts[i] = position;
+            position = MappedCSVReader.nextLineStart(bytes, MappedCSVReader.skipLine(bytes, position, file.length), file.length);
+        }
+    }
+
+    @Benchmark
+    public Enrolled parseLine() {
+        String line = lines[nextLine];
+        if (++nextLine == lines.length) {
+            nextLine = 0;
+        }
+        return CSVReader.parseLine(line);
+    }
+
+    @Benchmark
+    public Enrolled parseUtf8Line() {
+        int start = lineStarts[nextBytes];
+        if (++nextBytes == lineStarts.length) {
+            nextBytes = 0;
+        }
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread();
+        tokenizer.tokenize(bytes, start, bytes.limit());
+        return tokenizer.fieldCount() < FieldTokenizer.FIELDS ? null : tokenizer.toEnrollee(logger);
+    }
+}
@@ -0,0 +1,48 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@code readEnrollees}: file to deduplicated company → userId map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ReadEnrolleesBenchmark extends GeneratedInputBenchmark {
+
+    @Param({"stream", "mapped", "parallel"})
+    public String engine;
+
+    private String path;
+    private ReaderEngine readerEngine;
+    private PipelineOptions options;
+
+    @Setup
+    public void prepare() throws IOException {
+        path = csv().toString();
+        readerEngine = ReaderEngine.fromName(engine);
+        options = PipelineOptions.parse();
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Enrolled>> readEnrollees() throws IOException {
+        return readerEngine.read(path, options);
+    }
+}
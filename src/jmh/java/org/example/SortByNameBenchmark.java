@@ -0,0 +1,53 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Sorting#sortByName(Map)} over the deduplicated map of a generated input, and
+ * {@link Sorting#sortByName(Map, Sorting.Strategy, int)} per strategy and thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class SortByNameBenchmark extends GeneratedInputBenchmark {
+
+    @Param({"COMPARATOR", "FOLDED"})
+    public Sorting.Strategy strategy;
+
+    @Param({"1", "8"})
+    public int parallelism;
+
+    private Map<String, Map<String, Enrolled>> grouped;
+
+    @Setup
+    public void prepare() throws IOException {
+        grouped = MappedCSVReader.readEnrollees(csv().toString());
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Enrolled>> sortByName() {
+        return Sorting.sortByName(grouped);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Enrolled>> sortByNameWithStrategy() {
+        return Sorting.sortByName(grouped, strategy, parallelism);
+    }
+}
@@ -0,0 +1,57 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link CSVWriter#writeByCompany(Map, Path)} of the sorted map of a generated input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class WriteByCompanyBenchmark extends GeneratedInputBenchmark {
+
+    private Map<String, Map<String, Enrolled>> sorted;
+    private Path outputDirectory;
+
+    @Setup
+    public void prepare() throws IOException {
+        sorted = Sorting.sortByName(MappedCSVReader.readEnrollees(csv().toString()));
+        outputDirectory = Files.createTempDirectory("enrollment-bench-out");
+    }
+
+    @TearDown
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(outputDirectory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public Path writeByCompany() throws IOException {
+        CSVWriter.writeByCompany(sorted, outputDirectory);
+        return outputDirectory;
+    }
+}
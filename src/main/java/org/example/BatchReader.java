@@ -0,0 +1,177 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Reads a batch of input files, given as a directory or a glob, into one deduplicated map.
+ * <p>
+ * Every file is parsed on its own on a pool of {@code parallelism} threads, so many small
+ * files are read at once and never more than {@code parallelism} of them are being parsed.
+ * The per-file results are then merged in file name order with the usual highest-version
+ * rule: on equal versions the row of the file whose name sorts first wins, just as if the
+ * files had been concatenated in that order. Rejected rows of all files go to one
+ * collector; their line numbers count within their own file and are reported as
+ * {@code file:line}.
+ */
+public class BatchReader {
+
+    private static final Logger logger = Logger.getLogger(BatchReader.class.getName());
+
+    private BatchReader() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Whether {@code input} names a batch: an existing directory, or a glob such as
+     * {@code drop/*.csv} that is not itself the name of an existing file.
+     */
+    static boolean isBatch(String input) {
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path)) {
+            return true;
+        }
+        return !Files.exists(path) && input.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    /**
+     * Lists the files of a batch in the order they are merged.
+     * <p>
+     * A directory stands for the {@code .csv} and {@code .csv.gz} files directly inside it. A glob is matched
+     * against paths below the directory in front of its first wildcard, so {@code drop/*.csv}
+     * matches the CSV files in {@code drop} and {@code drop/**.csv} those in all of its
+     * subdirectories.
+     *
+     * @param input a directory or a glob
+     * @return the regular files of the batch, sorted by path
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Path> listFiles(String input) throws IOException {
+        Path directory;
+        PathMatcher matcher;
+        int depth;
+        if (Files.isDirectory(Paths.get(input))) {
+            directory = Paths.get(input);
+            matcher = path -> {
+                String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                return name.endsWith(".csv") || name.endsWith(".csv.gz");
+            };
+            depth = 1;
+        } else {
+            // the directory is everything before the separator preceding the first wildcard
+            int wildcard = firstWildcard(input);
+            int separator = Math.max(input.lastIndexOf('/', wildcard), input.lastIndexOf('\\', wildcard));
+            directory = Paths.get(separator < 0 ? "." : input.substring(0, separator + 1));
+            String pattern = input.substring(separator + 1);
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            depth = pattern.contains("**") ? Integer.MAX_VALUE : Paths.get(pattern).getNameCount();
+        }
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("No such directory: " + directory);
+        }
+        try (Stream<Path> paths = Files.walk(directory, depth)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(directory.relativize(path)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int firstWildcard(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return input.length();
+    }
+
+    /**
+     * Reads every file into the company → (userId → enrollee) map, merged in file order.
+     *
+     * @param files   the files to read, in merge order
+     * @param options selects the engine and the number of files parsed at once
+     * @param context the per-batch state; each file is read with its own worker copy
+     * @return a map of lower-cased insurance company → (user ID → enrollee)
+     * @throws IOException if any file cannot be read
+     */
+    static Map<String, Map<String, Enrolled>> readEnrollees(List<Path> files, PipelineOptions options,
+                                                            ParseContext context) throws IOException {
+        return readAll(files, options, context, (engine, file, fileContext) ->
+                engine.read(file.toString(), options, fileContext),
+                (partials, executor) -> MappedCSVReader.mergeInFileOrder(partials, executor, context::newCompanyMap));
+    }
+
+    /**
+     * Reads every file into one {@link EnrollmentTable} per company, merged in file order.
+     *
+     * @see #readEnrollees(List, PipelineOptions, ParseContext)
+     */
+    static Map<String, EnrollmentTable> readEnrolleeTables(List<Path> files, PipelineOptions options,
+                                                           ParseContext context) throws IOException {
+        return readAll(files, options, context, (engine, file, fileContext) ->
+                engine.readTables(file.toString(), options, fileContext), MappedCSVReader::mergeTablesInFileOrder);
+    }
+
+    // reads one file of the batch
+    private interface FileParser<T> {
+        T read(ReaderEngine engine, Path file, ParseContext fileContext) throws IOException;
+    }
+
+    // combines the per-file results, given in file order
+    private interface Merger<T> {
+        T merge(List<T> partials, ExecutorService executor) throws IOException;
+    }
+
+    private static <T> T readAll(List<Path> files, PipelineOptions options, ParseContext context,
+                                 FileParser<T> parser, Merger<T> merger) throws IOException {
+        if (files.isEmpty()) {
+            throw new IOException("No input files found");
+        }
+        // files are the unit of parallelism, so each one is read by a single thread
+        ReaderEngine engine = options.readerEngine() == ReaderEngine.PARALLEL ? ReaderEngine.MAPPED
+                : options.readerEngine();
+        logger.info("Reading " + files.size() + " files, " + options.parallelism() + " at a time");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.parallelism(), files.size()));
+        try {
+            List<ParseContext> fileContexts = new ArrayList<>(files.size());
+            List<Future<T>> parsed = new ArrayList<>(files.size());
+            for (Path file : files) {
+                // every file numbers its own lines, so its rejects can go to the side file directly
+                ParseContext fileContext = context.forFile(file.toString());
+                fileContexts.add(fileContext);
+                parsed.add(executor.submit(() -> parser.read(engine, file, fileContext)));
+            }
+            List<T> partials = new ArrayList<>(parsed.size());
+            for (Future<T> future : parsed) {
+                partials.add(MappedCSVReader.await(future));
+            }
+            for (ParseContext fileContext : fileContexts) {
+                context.rejects().mergeChunk(fileContext.rejects(), 0);
+            }
+            context.rejects().logSummary(logger);
+
+            long mergeStart = System.nanoTime();
+            T merged = merger.merge(partials, executor);
+            context.mergeNanos(System.nanoTime() - mergeStart);
+            return merged;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
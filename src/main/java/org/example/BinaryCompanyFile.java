@@ -0,0 +1,359 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * One company's enrollees in a compact binary file that is read by memory-mapping it
+ * instead of parsing text.
+ * <p>
+ * Layout, all integers big-endian:
+ * <pre>
+ *   int   magic "ENRB"
+ *   short format version, currently 1
+ *   short flags, bit 0 set when the rows are sorted by name
+ *   int   row count
+ *   int   string count S
+ *   int[S + 1] start of every string in the string data, then its end
+ *   byte[]     string data: every distinct string once, UTF-8, padded to a multiple of 4
+ *   int[5 * rows] per row: user ID, first name, last name, version, insurance company
+ * </pre>
+ * String columns hold an index into the string table, or -1 for {@code null}. Repeated
+ * names and the company are stored once, and every row has the same width, so any row can
+ * be read directly. Strings are decoded once and then shared by all rows that use them.
+ * <p>
+ * An open file is safe to read from several threads.
+ */
+public final class BinaryCompanyFile implements Iterable<Enrolled> {
+
+    private static final Logger logger = Logger.getLogger(BinaryCompanyFile.class.getName());
+
+    static final String SUFFIX = ".bin";
+
+    private static final int MAGIC = 0x454E5242;
+    private static final short FORMAT_VERSION = 1;
+    private static final short SORTED_BY_NAME = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int ROW_INTS = 5;
+    private static final int NULL = -1;
+
+    private final ByteBuffer data;
+    private final boolean sortedByName;
+    private final int size;
+    private final int stringCount;
+    private final int stringsStart;
+    private final int rowsStart;
+    // decoded on first use; a race only decodes a string twice
+    private final String[] strings;
+
+    private BinaryCompanyFile(ByteBuffer data, Path file) throws IOException {
+        this.data = data;
+        if (data.limit() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary company file: " + file);
+        }
+        if (data.getShort(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + data.getShort(4) + " in " + file);
+        }
+        sortedByName = (data.getShort(6) & SORTED_BY_NAME) != 0;
+        size = data.getInt(8);
+        stringCount = data.getInt(12);
+        stringsStart = HEADER_BYTES + 4 * (stringCount + 1);
+        if (size < 0 || stringCount < 0 || stringsStart > data.limit()) {
+            throw new IOException("Corrupt binary company file: " + file);
+        }
+        rowsStart = stringsStart + padded(data.getInt(stringsStart - 4));
+        if ((long) rowsStart + (long) size * ROW_INTS * 4 != data.limit()) {
+            throw new IOException("Corrupt binary company file: " + file);
+        }
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Maps a binary company file for reading. The mapping stays valid after the file is
+     * closed and is released with this object.
+     *
+     * @param file a file written by {@link #write}
+     * @return the opened file
+     * @throws IOException if the file cannot be read or is not in this format
+     */
+    public static BinaryCompanyFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary company file too large to map: " + file);
+            }
+            return new BinaryCompanyFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file);
+        }
+    }
+
+    /**
+     * Number of rows in the file.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether the writer declared the rows sorted by last and first name.
+     */
+    public boolean sortedByName() {
+        return sortedByName;
+    }
+
+    public String userId(int row) {
+        return string(column(row, 0));
+    }
+
+    public String firstName(int row) {
+        return string(column(row, 1));
+    }
+
+    public String lastName(int row) {
+        return string(column(row, 2));
+    }
+
+    public int version(int row) {
+        return column(row, 3);
+    }
+
+    public String insuranceCompany(int row) {
+        return string(column(row, 4));
+    }
+
+    /**
+     * Returns row {@code row} as an {@link Enrolled}.
+     */
+    public Enrolled get(int row) {
+        return new Enrolled(userId(row), firstName(row), lastName(row), version(row), insuranceCompany(row));
+    }
+
+    /**
+     * Iterates the rows in file order.
+     */
+    @Override
+    public Iterator<Enrolled> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Enrolled next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    private int column(int row, int column) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+        return data.getInt(rowsStart + (row * ROW_INTS + column) * 4);
+    }
+
+    private String string(int index) {
+        if (index == NULL) {
+            return null;
+        }
+        String s = strings[index];
+        if (s == null) {
+            int from = data.getInt(HEADER_BYTES + 4 * index);
+            int to = data.getInt(HEADER_BYTES + 4 * (index + 1));
+            byte[] bytes = new byte[to - from];
+            data.get(stringsStart + from, bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = s;
+        }
+        return s;
+    }
+
+    private static int padded(int length) {
+        return (length + 3) & ~3;
+    }
+
+    /**
+     * Writes enrollees, in the order given, as a binary company file.
+     *
+     * @param file         the file to create or replace
+     * @param enrollees    the rows of the file
+     * @param sortedByName whether the rows are sorted by last and first name
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Iterator<Enrolled> enrollees, boolean sortedByName) throws IOException {
+        StringTable table = new StringTable();
+        int[] rows = new int[ROW_INTS * 16];
+        int size = 0;
+        while (enrollees.hasNext()) {
+            Enrolled e = enrollees.next();
+            if (ROW_INTS * (size + 1) > rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            int at = ROW_INTS * size++;
+            rows[at] = table.indexOf(e.userId());
+            rows[at + 1] = table.indexOf(e.firstName());
+            rows[at + 2] = table.indexOf(e.lastName());
+            rows[at + 3] = e.version();
+            rows[at + 4] = table.indexOf(e.insuranceCompany());
+        }
+        long bytes = HEADER_BYTES + 4L * (table.count + 1) + padded(table.bytes.size()) + 4L * ROW_INTS * size;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Company too large for a binary company file: " + file);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file),
+                CompanyFileWriter.BLOCK_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeShort(sortedByName ? SORTED_BY_NAME : 0);
+            out.writeInt(size);
+            out.writeInt(table.count);
+            out.writeInt(0);
+            for (int i = 0; i < table.count; i++) {
+                out.writeInt(table.ends[i]);
+            }
+            table.bytes.writeTo(out);
+            out.write(new byte[padded(table.bytes.size()) - table.bytes.size()]);
+            for (int i = 0; i < ROW_INTS * size; i++) {
+                out.writeInt(rows[i]);
+            }
+        }
+    }
+
+    // every distinct string once, in order of first use
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int[] ends = new int[16];
+        private int count;
+
+        int indexOf(String s) {
+            if (s == null) {
+                return NULL;
+            }
+            Integer index = indexes.get(s);
+            if (index != null) {
+                return index;
+            }
+            bytes.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            ends[count] = bytes.size();
+            indexes.put(s, count);
+            return count++;
+        }
+    }
+
+    /**
+     * Writes every company of a sorted map to its own binary file, one file after another.
+     * File names are the CSV file names with {@value #SUFFIX} instead of {@code .csv}.
+     *
+     * @param sorted          Map of company → (userId → enrollee), each company sorted by name
+     * @param outputDirectory directory receiving one binary file per company
+     * @throws CompanyWriteException if one or more company files could not be written
+     * @throws IOException           if directory creation fails
+     */
+    public static void writeByCompany(Map<String, Map<String, Enrolled>> sorted, Path outputDirectory)
+            throws IOException {
+        CSVWriter.createOutputDirectory(outputDirectory);
+        Map<String, IOException> failures = new LinkedHashMap<>();
+        sorted.forEach((company, enrollees) -> {
+            Path file = outputDirectory.resolve(fileNameFor(company));
+            try {
+                write(file, enrollees.values().iterator(), true);
+                logger.info("Wrote file: " + file.toAbsolutePath());
+            } catch (IOException e) {
+                failures.put(company, e);
+            }
+        });
+        if (!failures.isEmpty()) {
+            throw new CompanyWriteException(failures);
+        }
+    }
+
+    /**
+     * Returns the binary file name used for a company.
+     */
+    static String fileNameFor(String company) {
+        return CSVWriter.baseNameFor(company) + SUFFIX;
+    }
+
+    /**
+     * Converts a company CSV file written by {@link CSVWriter}, plain or gzip compressed,
+     * into a binary company file. Rows are parsed the way the readers parse input, so the
+     * binary file holds what a downstream job re-reading the CSV would get. The file is
+     * flagged as sorted if its rows are in name order.
+     *
+     * @param csvFile    the company CSV file, with a header row
+     * @param binaryFile the binary file to create or replace
+     * @return the number of rows converted
+     * @throws IOException if either file cannot be read or written
+     */
+    public static int convert(Path csvFile, Path binaryFile) throws IOException {
+        List<Enrolled> rows = new java.util.ArrayList<>();
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(null);
+        try (Stream<String> lines = GzipFiles.lines(csvFile)) {
+            Iterator<String> it = lines.skip(1).iterator();
+            while (it.hasNext()) {
+                tokenizer.tokenize(it.next());
+                Enrolled e = tokenizer.toEnrollee(logger);
+                if (e != null) {
+                    rows.add(e);
+                }
+            }
+        }
+        boolean sortedByName = true;
+        for (int i = 1; i < rows.size() && sortedByName; i++) {
+            sortedByName = Sorting.BY_NAME.compare(rows.get(i - 1), rows.get(i)) <= 0;
+        }
+        write(binaryFile, rows.iterator(), sortedByName);
+        return rows.size();
+    }
+
+    /**
+     * Converts every company CSV file of {@code csvDirectory} into a binary file of the
+     * same base name in {@code binaryDirectory}.
+     *
+     * @return the number of files converted
+     * @throws IOException if a file cannot be read or written
+     */
+    public static int convertDirectory(Path csvDirectory, Path binaryDirectory) throws IOException {
+        CSVWriter.createOutputDirectory(binaryDirectory);
+        List<Path> csvFiles;
+        try (Stream<Path> files = Files.list(csvDirectory)) {
+            csvFiles = files.filter(f -> {
+                String name = f.getFileName().toString().toLowerCase(Locale.ROOT);
+                return name.endsWith(".csv") || name.endsWith(".csv.gz");
+            }).sorted().toList();
+        }
+        for (Path csv : csvFiles) {
+            String name = csv.getFileName().toString();
+            String base = name.substring(0, name.toLowerCase(Locale.ROOT).lastIndexOf(".csv"));
+            convert(csv, binaryDirectory.resolve(base + SUFFIX));
+        }
+        return csvFiles.size();
+    }
+}
@@ -10,6 +10,7 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.function.Function;
 import java.util.logging.Logger;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,67 +22,70 @@ public class CSVReader {
         throw new IllegalStateException("Utility class");
     }
 
-    // safely splitting line
-    private static String[] safeSplit(String line) {
-        List<String> tokens = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder sb = new StringBuilder();
-        for (char c : line.toCharArray()) {
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                tokens.add(sb.toString());
-                sb.setLength(0);
-            } else {
-                sb.append(c);
-            }
-        }
-        tokens.add(sb.toString());
-        return tokens.toArray(new String[0]);
-    }
     /**
      * Reads enrollee data from a CSV file and organizes it into a map where each
      * insurance company is mapped to its corresponding enrollees. Each enrollee is uniquely
      * identified by a combination of user ID and insurance company. In case of duplicates,
      * the enrollee with the highest version is retained.
      *
-     * @param filePath the path to the CSV file containing enrollee data. The file should have
-     *                 a header row and follow the format:
+     * @param filePath the path to the CSV file containing enrollee data, plain or gzip
+     *                 compressed. The file should have a header row and follow the format:
      *                 UserId, FullName, Version, InsuranceCompany
      * @return a map containing insurance companies as keys, where each key maps
      *         to another map. This inner map has user IDs as keys and the corresponding
      *         {@link Enrolled} objects as values.
      */
     public static Map<String, Map<String, Enrolled>> readEnrollees(String filePath) throws IOException {
+        return readEnrollees(filePath, new ParseContext());
+    }
+
+    /**
+     * Reads enrollee data like {@link #readEnrollees(String)}, interning repeated values
+     * into the dictionaries of {@code context}. Skipped rows are collected by the context's
+     * {@link RejectCollector} and logged as one summary at the end.
+     *
+     * @param filePath the path to the CSV file containing enrollee data, with a header row
+     * @param context  the per-read state; must not be shared with another thread
+     * @return a map of lower-cased insurance company → (user ID → enrollee)
+     */
+    public static Map<String, Map<String, Enrolled>> readEnrollees(String filePath, ParseContext context)
+            throws IOException {
+        // rows are parsed on this thread, so its tokenizer interns into the context
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(context);
+        context.startAtLine(1);
+        // transform each company's rows into a map
+        // key = userID
+        // value = enroll
+        // merge => if there are duplicates with the same userID, keep the highest version number;
+        // a UserIdMap applies the same rule on packed keys
+        Collector<Enrolled, ?, Map<String, Enrolled>> members = context.packedUserIds()
+                ? UserIdMap.collector()
+                : Collectors.toMap(
+                        Enrolled::userId,
+                        Function.identity(),
+                        Enrolled::latest
+                );
         // open file as stream
-        try (Stream<String> lines = Files.lines(Paths.get(filePath))) {
-            return
+        try (Stream<String> lines = GzipFiles.lines(Paths.get(filePath))) {
+            Map<String, Map<String, Enrolled>> grouped =
                     // skip header
                     lines.skip(1)
-                            // split each line
-                            .map(CSVReader::safeSplit)
-                            // skip lines without all 4 fields
-                            .filter(values -> values.length >= 4)
-                            // Convert each line into enrolled record
-                            .map(CSVReader::getEnrollee)
-                            // skip invalid rows
+                            // split each line and convert it into enrolled record
+                            .map(CSVReader::parseLine)
+                            // skip invalid rows and lines without all 4 fields
                             .filter(Objects::nonNull)
                             // group by insurance company
                             .collect(Collectors.groupingBy(
-                                    e -> e.insuranceCompany().toLowerCase(Locale.ROOT),
-                                    // transform inner list into a map
-                                    // key = userID
-                                    // value = enroll
-                                    // merge => if there are duplicates with the same userID, keep the highest version number
-                                    Collectors.toMap(
-                                            Enrolled::userId,
-                                            Function.identity(),
-                                            (e1, e2) -> e1.version() >= e2.version() ? e1 : e2
-                                    )
+                                    e -> context.companyKey(e.insuranceCompany()),
+                                    members
                             ));
+            context.rejects().logSummary(logger);
+            return grouped;
         } catch (IOException e) {
             logger.severe("Error reading file: " + filePath + ": " + e.getMessage());
             throw e;
+        } finally {
+            tokenizer.bind(null);
         }
     }
 //        // Key: Insurance company name
@@ -121,54 +125,50 @@ public class CSVReader {
 
 
     /**
-     * Parses a line's values into an {@link Enrolled} object.
+     * Reads enrollee data like {@link #readEnrollees(String, ParseContext)}, but into one
+     * {@link EnrollmentTable} per company instead of enrollee maps.
+     *
+     * @param filePath the path to the CSV file containing enrollee data, with a header row
+     * @param context  the per-read state; must not be shared with another thread
+     * @return a map of lower-cased insurance company → table of its enrollees
+     */
+    public static Map<String, EnrollmentTable> readEnrolleeTables(String filePath, ParseContext context)
+            throws IOException {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(context);
+        Map<String, EnrollmentTable> tables = new HashMap<>();
+        context.startAtLine(1);
+        try (Stream<String> lines = GzipFiles.lines(Paths.get(filePath))) {
+            // skip header
+            lines.skip(1).forEach(line -> {
+                tokenizer.tokenize(line);
+                tokenizer.addTo(tables, logger);
+            });
+            context.rejects().logSummary(logger);
+            return tables;
+        } catch (IOException e) {
+            logger.severe("Error reading file: " + filePath + ": " + e.getMessage());
+            throw e;
+        } finally {
+            tokenizer.bind(null);
+        }
+    }
+
+    /**
+     * Parses one CSV line into an {@link Enrolled} object.
      * <p>
      * Splits the full name into first and last names if applicable.
      * If only one name is provided, it is stored as the first name.
+     * Lines with fewer than four fields are skipped, and so are rows that cannot be used;
+     * they are reported to the {@link ParseContext} bound to this thread's tokenizer, or
+     * logged one by one when none is bound.
      *
-     * @param values an array containing CSV fields in the order:
-     *               [UserId, FullName, Version, InsuranceCompany]
-     * @return a constructed {@link Enrolled} object.
+     * @param line a CSV line with fields in the order:
+     *             UserId, FullName, Version, InsuranceCompany
+     * @return a constructed {@link Enrolled} object, or {@code null} if the row is skipped.
      */
-    private static Enrolled getEnrollee(String[] values) {
-        try {
-            if (values == null || values.length < 4) {
-                logger.warning(() -> "Skipping row due to invalid number of fields: "
-                        + (values == null ? "null" : String.join(",", values)));
-                return null;
-            }
-
-            String userId = values[0].trim();
-            if (userId.isEmpty()) {
-                logger.warning("Skipping row due to missing User Id: " + String.join(",", values));
-                return null;
-            }
-            String fullName = values[1].trim().replaceAll("\\s+", " ");
-            int version = Integer.parseInt(values[2].trim());
-            String insuranceCompany = values[3].trim();
-            if (insuranceCompany.isEmpty()) {
-                logger.warning("Skipping row due to missing Insurance Company: " + String.join(",", values));
-                return null;
-            }
-
-            String[] nameParts = fullName.split(" ");
-            String firstName = nameParts.length >= 1 ? nameParts[0] : "";
-            String lastName = nameParts.length >= 2 ? nameParts[1] : "";
-
-            return new Enrolled(userId, firstName, lastName, version, insuranceCompany);
-        } catch (NumberFormatException e) {
-            logger.warning(() -> "Skipping row due to invalid version number: "
-                    + String.join(",", values) + " | Error: " + e.getMessage());
-            return null;
-        } catch (ArrayIndexOutOfBoundsException e) {
-            logger.warning(() -> "Skipping row due to invalid number of fields: "
-                    + String.join(",", values) + " | Error: " + e.getMessage());
-            return null;
-        } catch (Exception e) {
-            logger.severe(() -> "Unexpected error parsing row: "
-                    + String.join(",", values) + " | Exception: "
-                    + e.getClass().getSimpleName() + " - " + e.getMessage());
-            return null;
-        }
+    static Enrolled parseLine(String line) {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread();
+        tokenizer.tokenize(line);
+        return tokenizer.toEnrollee(logger);
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,19 @@
 package org.example;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Utility class that writes enrollee data to separate CSV files per insurance company.
@@ -24,6 +31,11 @@ public class CSVWriter {
         throw new IllegalStateException("Utility class");
     }
 
+    // default location of the per-company files
+    static final Path DEFAULT_OUTPUT_DIRECTORY = Paths.get("src/main/resources/output");
+
+    static final String HEADER = "User ID,Full Name,Version,Insurance Company";
+
     /**
      * Writes each insurance company's enrollees to a separate CSV file.
      * Creates the output directory if it does not exist.
@@ -32,50 +44,248 @@ public class CSVWriter {
      * @throws IOException if directory creation fails
      */
     public static void writeByCompany(Map<String, Map<String, Enrolled>> grouped) throws IOException {
-        Path outputDirectory = Paths.get("src/main/resources/output");
-
-        // Create output directory if missing
-        if (!Files.exists(outputDirectory)) {
-            Files.createDirectories(outputDirectory);
-            logger.info("Created output directory: " + outputDirectory.toAbsolutePath());
-        }
+        writeByCompany(grouped, DEFAULT_OUTPUT_DIRECTORY);
+    }
 
-        grouped.forEach((company, enrolleeMap) -> {
-            String fileName = company
-                    // sanitise invalid chars
-                    // replace spaces with _
-                    .replaceAll("[^a-zA-Z0-9\\-_ ]", "_")
-                    .replaceAll(" +", "_") + ".csv";
+    /**
+     * Writes each insurance company's enrollees to a separate CSV file in the given directory.
+     * Creates the output directory if it does not exist.
+     *
+     * @param grouped         Map of company → (userId → enrollee)
+     * @param outputDirectory directory receiving one CSV file per company
+     * @throws IOException if directory creation fails
+     */
+    public static void writeByCompany(Map<String, Map<String, Enrolled>> grouped, Path outputDirectory)
+            throws IOException {
+        writeByCompany(grouped, outputDirectory, CsvFormat.PLAIN);
+    }
 
-            Path filePath = outputDirectory.resolve(fileName);
+    /**
+     * Writes each insurance company's enrollees to a separate CSV file in the given directory,
+     * in the given format.
+     *
+     * @param grouped         Map of company → (userId → enrollee)
+     * @param outputDirectory directory receiving one CSV file per company
+     * @param format          how the files are written
+     * @throws IOException if directory creation fails
+     */
+    public static void writeByCompany(Map<String, Map<String, Enrolled>> grouped, Path outputDirectory,
+                                      CsvFormat format) throws IOException {
+        createOutputDirectory(outputDirectory);
 
+        grouped.forEach((company, enrolleeMap) -> {
             try {
+                writeCompany(company, enrolleeMap, outputDirectory, format);
+            } catch (IOException e) {
+                logger.severe("Failed to write file for company: " + company + " - " + e.getMessage());
+            }
+        });
+    }
 
-                Stream<String> lines = Stream.concat(
-                        Stream.of("User ID,Full Name,Version,Insurance Company"), // header
-                        enrolleeMap.values().stream()
-                                .map(e -> String.join(",",
-                                        e.userId(),
-                                        e.firstName() + " " + e.lastName(),
-                                        e.version().toString(),
-                                        e.insuranceCompany()
-                                ))
-                );
-
-                // Write to file
-                Files.writeString(
-                        filePath,
-                        lines.collect(Collectors.joining(System.lineSeparator())),
-                        StandardCharsets.UTF_8,
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.TRUNCATE_EXISTING
-                );
-
-                logger.info("Wrote file: " + filePath.toAbsolutePath());
+    /**
+     * Writes each company table to a separate CSV file, in row order and straight from the
+     * columns. Produces the same files as {@link #writeByCompany(Map, Path)} does for the
+     * equivalent maps.
+     *
+     * @param tables          Map of company → table of its enrollees, already sorted
+     * @param outputDirectory directory receiving one CSV file per company
+     * @throws IOException if directory creation fails
+     */
+    public static void writeTables(Map<String, EnrollmentTable> tables, Path outputDirectory) throws IOException {
+        writeTables(tables, outputDirectory, CsvFormat.PLAIN);
+    }
+
+    /**
+     * Writes each company table like {@link #writeTables(Map, Path)}, in the given format.
+     *
+     * @param tables          Map of company → table of its enrollees, already sorted
+     * @param outputDirectory directory receiving one CSV file per company
+     * @param format          how the files are written
+     * @throws IOException if directory creation fails
+     */
+    public static void writeTables(Map<String, EnrollmentTable> tables, Path outputDirectory, CsvFormat format)
+            throws IOException {
+        createOutputDirectory(outputDirectory);
 
+        tables.forEach((company, table) -> {
+            Path filePath = outputDirectory.resolve(format.fileNameFor(company));
+            try (CompanyFileWriter writer = new CompanyFileWriter(filePath, format.indexed())) {
+                for (int row = 0; row < table.size(); row++) {
+                    writer.write(table, row);
+                }
+                writer.finish();
             } catch (IOException e) {
                 logger.severe("Failed to write file for company: " + company + " - " + e.getMessage());
+                return;
             }
+            logger.info("Wrote file: " + filePath.toAbsolutePath());
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes each insurance company's enrollees to a separate CSV file like
+     * {@link #writeByCompany(Map, Path)}, but writes up to {@code parallelism} companies at
+     * the same time.
+     * <p>
+     * File names and contents are exactly the ones the sequential writer produces. Companies
+     * whose names sanitise to the same file are written one after another in map order, so
+     * the last one still wins. Instead of only being logged, the failures of all companies
+     * are collected and thrown together once every company has been attempted.
+     *
+     * @param grouped         Map of company → (userId → enrollee)
+     * @param outputDirectory directory receiving one CSV file per company
+     * @param parallelism     maximum number of files written at once
+     * @throws CompanyWriteException if one or more company files could not be written
+     * @throws IOException           if directory creation fails
+     */
+    public static void writeByCompanyConcurrent(Map<String, Map<String, Enrolled>> grouped, Path outputDirectory,
+                                                int parallelism) throws IOException {
+        writeByCompanyConcurrent(grouped, outputDirectory, parallelism, CsvFormat.PLAIN);
+    }
+
+    /**
+     * Writes up to {@code parallelism} companies at the same time like
+     * {@link #writeByCompanyConcurrent(Map, Path, int)}, in the given format.
+     *
+     * @param grouped         Map of company → (userId → enrollee)
+     * @param outputDirectory directory receiving one CSV file per company
+     * @param parallelism     maximum number of files written at once
+     * @param format          how the files are written
+     * @throws CompanyWriteException if one or more company files could not be written
+     * @throws IOException           if directory creation fails
+     */
+    public static void writeByCompanyConcurrent(Map<String, Map<String, Enrolled>> grouped, Path outputDirectory,
+                                                int parallelism, CsvFormat format) throws IOException {
+        forEachCompanyConcurrent(grouped.keySet(), outputDirectory, parallelism, format,
+                (company, file) -> writeCompany(file, grouped.get(company).values().iterator(), format.indexed()));
+    }
+
+    /**
+     * Writes one company to its file, for {@link #forEachCompanyConcurrent}.
+     */
+    interface CompanyWrite {
+        void write(String company, Path file) throws IOException;
+    }
+
+    /**
+     * Runs {@code write} for every company on up to {@code parallelism} threads. Companies
+     * whose names share a file are written one after another, in the given order, so the
+     * last one wins as in a sequential write. A failing company does not stop the others;
+     * all failures are thrown together at the end.
+     *
+     * @param companies       the companies to write, in the order failures are reported
+     * @param outputDirectory directory receiving the company files; created if missing
+     * @param parallelism     maximum number of files written at once, at least 1
+     * @param format          names the company files
+     * @param write           writes one company to the given file
+     * @throws CompanyWriteException if one or more company files could not be written
+     * @throws IOException           if directory creation fails
+     */
+    static void forEachCompanyConcurrent(Collection<String> companies, Path outputDirectory, int parallelism,
+                                         CsvFormat format, CompanyWrite write) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1 but was " + parallelism);
+        }
+        createOutputDirectory(outputDirectory);
+
+        // companies sharing a file name stay on one task, in the given order
+        Map<String, List<String>> byFileName = new LinkedHashMap<>();
+        companies.forEach(company ->
+                byFileName.computeIfAbsent(format.fileNameFor(company), k -> new ArrayList<>()).add(company));
+
+        Map<String, IOException> failures = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, byFileName.size())));
+        try {
+            List<Future<?>> tasks = new ArrayList<>(byFileName.size());
+            byFileName.forEach((fileName, sharing) -> tasks.add(executor.submit(() -> {
+                Path file = outputDirectory.resolve(fileName);
+                for (String company : sharing) {
+                    try {
+                        write.write(company, file);
+                    } catch (IOException e) {
+                        failures.put(company, e);
+                    } catch (RuntimeException e) {
+                        failures.put(company, new IOException(e.getClass().getSimpleName() + ": " + e.getMessage(), e));
+                    }
+                }
+            })));
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing company files", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Unexpected failure while writing company files", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            // report in the order the companies were given
+            Map<String, IOException> ordered = new LinkedHashMap<>();
+            companies.stream().filter(failures::containsKey).forEach(c -> ordered.put(c, failures.get(c)));
+            throw new CompanyWriteException(ordered);
+        }
+    }
+
+    private static void writeCompany(String company, Map<String, Enrolled> enrolleeMap, Path outputDirectory,
+                                     CsvFormat format) throws IOException {
+        writeCompany(outputDirectory.resolve(format.fileNameFor(company)), enrolleeMap.values().iterator(),
+                format.indexed());
+    }
+
+    /**
+     * Writes one company file from enrollees that are already in output order. Rows are
+     * streamed through a fixed-size block buffer, so memory use does not grow with the
+     * size of the company. A name ending in {@code .gz} makes a gzip compressed file.
+     *
+     * @param filePath  the company file to create or replace
+     * @param enrollees the company's enrollees in the order they should appear
+     * @throws IOException if the file cannot be written
+     */
+    static void writeCompany(Path filePath, Iterator<Enrolled> enrollees) throws IOException {
+        writeCompany(filePath, enrollees, false);
+    }
+
+    /**
+     * Writes one company file like {@link #writeCompany(Path, Iterator)}, together with its
+     * {@link CompanyIndex} if {@code indexed} is set.
+     */
+    static void writeCompany(Path filePath, Iterator<Enrolled> enrollees, boolean indexed) throws IOException {
+        try (CompanyFileWriter writer = new CompanyFileWriter(filePath, indexed)) {
+            while (enrollees.hasNext()) {
+                writer.write(enrollees.next());
+            }
+            writer.finish();
+        }
+        logger.info("Wrote file: " + filePath.toAbsolutePath());
+    }
+
+    /**
+     * Returns the file name used for a company: invalid characters become {@code _}
+     * and runs of spaces become a single {@code _}.
+     */
+    static String fileNameFor(String company) {
+        return baseNameFor(company) + ".csv";
+    }
+
+    /**
+     * Returns the file name used for a company without its extension.
+     */
+    static String baseNameFor(String company) {
+        return company
+                // sanitise invalid chars
+                // replace spaces with _
+                .replaceAll("[^a-zA-Z0-9\\-_ ]", "_")
+                .replaceAll(" +", "_");
+    }
+
+    static void createOutputDirectory(Path outputDirectory) throws IOException {
+        // Create output directory if missing
+        if (!Files.exists(outputDirectory)) {
+            Files.createDirectories(outputDirectory);
+            logger.info("Created output directory: " + outputDirectory.toAbsolutePath());
+        }
+    }
+}
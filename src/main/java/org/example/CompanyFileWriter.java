@@ -0,0 +1,283 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * Streams one company CSV file to disk.
+ * <p>
+ * Rows are encoded as UTF-8 straight into a fixed-size block buffer of the writer's own,
+ * and each full block is flushed to the file channel. A closed writer hands its block to
+ * the next writer its thread opens, so peak memory is one block per open writer, however
+ * many members a company has. The bytes are the same the original writer produced: the
+ * header, then every row preceded by the platform line separator, with no trailing
+ * separator. Text that is not valid UTF-16, such as a lone surrogate, fails the write with
+ * a {@link java.nio.charset.CharacterCodingException}, as it did there.
+ * <p>
+ * A file whose name ends in {@code .gz} is gzip compressed on the way out by a
+ * {@link ParallelGzipChannel}.
+ * <p>
+ * An indexed file is written to a temporary file and moved into place together with its
+ * {@link CompanyIndex} when it is closed after {@link #finish()}; closed without it, for
+ * example after a failure, the file is discarded and the previous pair stays in place.
+ */
+final class CompanyFileWriter implements Closeable {
+
+    static final int BLOCK_BYTES = 1 << 16;
+
+    static final String GZIP_SUFFIX = ".gz";
+
+    private static final byte[] HEADER = CSVWriter.HEADER.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    // blocks of the thread's closed writers; a writer opened while another one is still open
+    // on the same thread gets a block of its own
+    private static final ThreadLocal<ArrayDeque<ByteBuffer>> FREE_BLOCKS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer block;
+    // reports malformed text instead of replacing it with '?'
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final Path filePath;
+    private final Path writtenPath;
+    private final CompanyIndex.Builder index;
+    private long flushed;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * Creates or truncates {@code filePath} and writes the header row.
+     */
+    CompanyFileWriter(Path filePath) throws IOException {
+        this(filePath, false);
+    }
+
+    /**
+     * Creates {@code filePath} and writes the header row, building its {@link CompanyIndex}
+     * if {@code indexed} is set.
+     */
+    CompanyFileWriter(Path filePath, boolean indexed) throws IOException {
+        this.filePath = filePath;
+        writtenPath = indexed ? temporaryFile(filePath) : filePath;
+        index = indexed ? new CompanyIndex.Builder() : null;
+        FileChannel file = FileChannel.open(writtenPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        channel = filePath.getFileName().toString().endsWith(GZIP_SUFFIX) ? new ParallelGzipChannel(file) : file;
+        ByteBuffer free = FREE_BLOCKS.get().poll();
+        block = free != null ? free : ByteBuffer.allocateDirect(BLOCK_BYTES);
+        block.clear();
+        put(HEADER);
+    }
+
+    /**
+     * Appends one row: {@code userId,first last,version,company}.
+     */
+    void write(Enrolled e) throws IOException {
+        put(LINE_SEPARATOR);
+        if (index != null) {
+            index.add(e.userId(), position());
+        }
+        put(e.userId());
+        put((byte) ',');
+        put(e.firstName());
+        put((byte) ' ');
+        put(e.lastName());
+        put((byte) ',');
+        putInt(e.version());
+        put((byte) ',');
+        put(e.insuranceCompany());
+    }
+
+    /**
+     * Appends row {@code row} of {@code table}, straight from its columns.
+     */
+    void write(EnrollmentTable table, int row) throws IOException {
+        write(table.text(), table.userIdStart(row), table.firstNameStart(row), table.lastNameStart(row),
+                table.rowEnd(row), table.firstNameIsNull(row), table.lastNameIsNull(row), table.version(row),
+                table.insuranceCompany(row));
+    }
+
+    /**
+     * Appends one row whose user ID, first and last name are the consecutive ranges of
+     * {@code text} that start at {@code userIdFrom}, {@code firstFrom} and {@code lastFrom}
+     * and end at {@code to}.
+     */
+    void write(char[] text, int userIdFrom, int firstFrom, int lastFrom, int to, boolean firstNameNull,
+               boolean lastNameNull, int version, String company) throws IOException {
+        put(LINE_SEPARATOR);
+        if (index != null) {
+            index.add(new String(text, userIdFrom, firstFrom - userIdFrom), position());
+        }
+        put(text, userIdFrom, firstFrom);
+        put((byte) ',');
+        if (firstNameNull) {
+            put((String) null);
+        } else {
+            put(text, firstFrom, lastFrom);
+        }
+        put((byte) ' ');
+        if (lastNameNull) {
+            put((String) null);
+        } else {
+            put(text, lastFrom, to);
+        }
+        put((byte) ',');
+        putInt(version);
+        put((byte) ',');
+        put(company);
+    }
+
+    /**
+     * Returns the number of uncompressed bytes written to the file so far, including
+     * buffered ones.
+     */
+    long position() {
+        return flushed + block.position();
+    }
+
+    /**
+     * Marks the file as complete, so that closing publishes an indexed file.
+     */
+    void finish() {
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            block.clear();
+            FREE_BLOCKS.get().push(block);
+            channel.close();
+        }
+        if (index != null && finished) {
+            publishWithIndex();
+        } else if (index != null) {
+            Files.deleteIfExists(writtenPath);
+        }
+    }
+
+    private static Path temporaryFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    // the index is built for the finished temporary file, whose time survives the move
+    private void publishWithIndex() throws IOException {
+        Path indexFile = CompanyIndex.indexFileFor(filePath);
+        Path writtenIndex = temporaryFile(indexFile);
+        try {
+            index.write(writtenIndex, writtenPath);
+            Files.move(writtenPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(writtenIndex, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(writtenPath);
+            Files.deleteIfExists(writtenIndex);
+        }
+    }
+
+    private void flush() throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            flushed += channel.write(block);
+        }
+        block.clear();
+    }
+
+    private void put(byte b) throws IOException {
+        if (!block.hasRemaining()) {
+            flush();
+        }
+        block.put(b);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!block.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(block.remaining(), bytes.length - offset);
+            block.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    private void put(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!block.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(block.remaining(), bytes.remaining());
+            block.put(block.position(), bytes, bytes.position(), n);
+            block.position(block.position() + n);
+            bytes.position(bytes.position() + n);
+        }
+    }
+
+    // ASCII is copied char by char; anything else is encoded by the JDK, as String.join did
+    private void put(String s) throws IOException {
+        String value = String.valueOf(s);
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            if (value.charAt(i) >= 0x80) {
+                put(encoder.encode(CharBuffer.wrap(value)));
+                return;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (!block.hasRemaining()) {
+                flush();
+            }
+            block.put((byte) value.charAt(i));
+        }
+    }
+
+    private void put(char[] chars, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            if (chars[i] >= 0x80) {
+                put(encoder.encode(CharBuffer.wrap(chars, from, to - from)));
+                return;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            if (!block.hasRemaining()) {
+                flush();
+            }
+            block.put((byte) chars[i]);
+        }
+    }
+
+    private void putInt(int value) throws IOException {
+        if (value == Integer.MIN_VALUE) {
+            put(Integer.toString(value));
+            return;
+        }
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+}
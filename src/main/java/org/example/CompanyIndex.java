@@ -0,0 +1,274 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Sidecar index of one company CSV file: its user IDs, sorted, each with the byte offset of
+ * its row. A lookup binary-searches the memory-mapped index and reads the one row from the
+ * CSV file, so answering "what is member X at carrier Y" does not scan the file.
+ * <p>
+ * Layout of {@code <company>.csv.idx}, all integers big-endian:
+ * <pre>
+ *   int   magic "ENRI"
+ *   short format version, currently 1
+ *   short unused
+ *   long  length of the CSV file
+ *   long  last-modified time of the CSV file, in milliseconds
+ *   int   entry count N
+ *   int   length of the key data
+ *   int[N + 1] start of every user ID in the key data, then its end
+ *   long[N]    byte offset of every user ID's row in the CSV file
+ *   byte[]     key data: the user IDs in UTF-8, in unsigned byte order
+ * </pre>
+ * The CSV file and its index are written to temporary files and then moved into place, the
+ * CSV file first. The index records the length and time of the CSV file it was built for,
+ * so an index that does not belong to the CSV file next to it, for example between the two
+ * moves, is refused instead of pointing at the wrong rows.
+ */
+public final class CompanyIndex implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(CompanyIndex.class.getName());
+
+    static final String SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x454E5249;
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ROW_BYTES = 256;
+
+    private final ByteBuffer index;
+    private final FileChannel csv;
+    private final int size;
+    private final int offsetsStart;
+    private final int keysStart;
+
+    private CompanyIndex(ByteBuffer index, FileChannel csv, Path csvFile) throws IOException {
+        this.index = index;
+        this.csv = csv;
+        if (index.limit() < HEADER_BYTES || index.getInt(0) != MAGIC || index.getShort(4) != FORMAT_VERSION) {
+            throw new IOException("Not a company index: " + indexFileFor(csvFile));
+        }
+        BasicFileAttributes attributes = Files.readAttributes(csvFile, BasicFileAttributes.class);
+        if (index.getLong(8) != attributes.size() || index.getLong(16) != attributes.lastModifiedTime().toMillis()) {
+            throw new IOException("Stale company index, rebuild it with " + csvFile.getFileName() + ": "
+                    + indexFileFor(csvFile));
+        }
+        size = index.getInt(24);
+        offsetsStart = HEADER_BYTES + 4 * (size + 1);
+        keysStart = offsetsStart + 8 * size;
+        if (size < 0 || (long) keysStart + index.getInt(28) != index.limit()) {
+            throw new IOException("Corrupt company index: " + indexFileFor(csvFile));
+        }
+    }
+
+    /**
+     * Returns the index file that belongs to {@code csvFile}.
+     */
+    static Path indexFileFor(Path csvFile) {
+        return csvFile.resolveSibling(csvFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Maps the index of {@code csvFile} and opens the CSV file for reading rows.
+     *
+     * @param csvFile a company CSV file written with an index
+     * @return the open index; close it to release the CSV file
+     * @throws IOException if either file cannot be read, or the index is not the one built
+     *                     for the CSV file as it is now
+     */
+    public static CompanyIndex open(Path csvFile) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(indexFileFor(csvFile), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Company index too large to map: " + indexFileFor(csvFile));
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        FileChannel csv = FileChannel.open(csvFile, StandardOpenOption.READ);
+        try {
+            return new CompanyIndex(mapped, csv, csvFile);
+        } catch (IOException | RuntimeException e) {
+            csv.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up one member in the output of a run.
+     *
+     * @param outputDirectory the directory the company files were written to
+     * @param company         the insurance company, in any case
+     * @param userId          the member's user ID
+     * @return the member's current row, or {@code null} if the company has no such member
+     * @throws IOException if the company has no indexed file
+     */
+    public static Enrolled lookup(Path outputDirectory, String company, String userId) throws IOException {
+        Path csvFile = outputDirectory.resolve(CSVWriter.fileNameFor(company.toLowerCase(Locale.ROOT)));
+        try (CompanyIndex index = open(csvFile)) {
+            return index.lookup(userId);
+        }
+    }
+
+    /**
+     * Number of user IDs in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the byte offset of the row of {@code userId} in the CSV file, or -1 if it has
+     * none.
+     */
+    public long offsetOf(String userId) {
+        byte[] key = userId.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return index.getLong(offsetsStart + 8 * mid);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the row of {@code userId}, read from the CSV file, or {@code null} if it has
+     * none.
+     *
+     * @throws IOException if the row cannot be read
+     */
+    public Enrolled lookup(String userId) throws IOException {
+        long offset = offsetOf(userId);
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer row = readRow(offset);
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(null);
+        tokenizer.tokenize(row, 0, row.limit());
+        return tokenizer.toEnrollee(logger);
+    }
+
+    // reads from offset up to the end of the line, growing the buffer for long rows
+    private ByteBuffer readRow(long offset) throws IOException {
+        ByteBuffer row = ByteBuffer.allocate(ROW_BYTES);
+        int scanned = 0;
+        while (true) {
+            int read = csv.read(row, offset + row.position());
+            for (int i = scanned; i < row.position(); i++) {
+                byte b = row.get(i);
+                if (b == '\n' || b == '\r') {
+                    return row.limit(i).position(0);
+                }
+            }
+            scanned = row.position();
+            if (read < 0) {
+                return row.flip();
+            }
+            if (!row.hasRemaining()) {
+                row = ByteBuffer.allocate(row.capacity() * 2).put(row.flip());
+            }
+        }
+    }
+
+    private int compareKey(int entry, byte[] key) {
+        int from = keysStart + index.getInt(HEADER_BYTES + 4 * entry);
+        int to = keysStart + index.getInt(HEADER_BYTES + 4 * (entry + 1));
+        int n = Math.min(to - from, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Byte.compareUnsigned(index.get(from + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(to - from, key.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        csv.close();
+    }
+
+    /**
+     * Collects the user IDs of a CSV file while it is written.
+     */
+    static final class Builder {
+
+        private byte[][] keys = new byte[16][];
+        private long[] offsets = new long[16];
+        private int size;
+
+        /**
+         * Adds the row of {@code userId} that starts at byte {@code offset}.
+         */
+        void add(String userId, long offset) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            keys[size] = String.valueOf(userId).getBytes(StandardCharsets.UTF_8);
+            offsets[size++] = offset;
+        }
+
+        /**
+         * Writes the index of the finished CSV file {@code csvFile} to {@code indexFile}.
+         */
+        void write(Path indexFile, Path csvFile) throws IOException {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+            long keyBytes = 0;
+            for (int i = 0; i < size; i++) {
+                keyBytes += keys[i].length;
+            }
+            if (HEADER_BYTES + 12L * size + 4 + keyBytes > Integer.MAX_VALUE) {
+                throw new IOException("Company too large for an index: " + csvFile);
+            }
+
+            BasicFileAttributes attributes = Files.readAttributes(csvFile, BasicFileAttributes.class);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile),
+                    CompanyFileWriter.BLOCK_BYTES))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT_VERSION);
+                out.writeShort(0);
+                out.writeLong(attributes.size());
+                out.writeLong(attributes.lastModifiedTime().toMillis());
+                out.writeInt(size);
+                out.writeInt((int) keyBytes);
+                int end = 0;
+                out.writeInt(end);
+                for (Integer i : order) {
+                    end += keys[i].length;
+                    out.writeInt(end);
+                }
+                for (Integer i : order) {
+                    out.writeLong(offsets[i]);
+                }
+                for (Integer i : order) {
+                    out.write(keys[i]);
+                }
+            }
+        }
+    }
+}
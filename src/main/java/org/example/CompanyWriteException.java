@@ -0,0 +1,33 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thrown when one or more company files could not be written. Carries the failure of
+ * every affected company; each one is also attached as a suppressed exception.
+ */
+public class CompanyWriteException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Map<String, IOException> failures;
+
+    /**
+     * @param failures company → the error that stopped its file from being written
+     */
+    public CompanyWriteException(Map<String, IOException> failures) {
+        super("Failed to write " + failures.size() + " company file(s): " + String.join(", ", failures.keySet()));
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+        failures.values().forEach(this::addSuppressed);
+    }
+
+    /**
+     * Returns company → failure, in the order the companies were written.
+     */
+    public Map<String, IOException> failures() {
+        return failures;
+    }
+}
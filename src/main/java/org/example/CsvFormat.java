@@ -0,0 +1,27 @@
+package org.example;
+
+/**
+ * How the company CSV files of a run are written.
+ *
+ * @param gzip    whether the files are gzip compressed into {@code <company>.csv.gz}
+ * @param indexed whether every file gets a {@link CompanyIndex} of its user IDs next to it
+ */
+public record CsvFormat(boolean gzip, boolean indexed) {
+
+    /** Plain CSV files without an index, as the writer always produced. */
+    public static final CsvFormat PLAIN = new CsvFormat(false, false);
+
+    public CsvFormat {
+        if (gzip && indexed) {
+            // offsets into a compressed stream cannot be seeked to
+            throw new IllegalArgumentException("A user ID index needs uncompressed CSV files");
+        }
+    }
+
+    /**
+     * Returns the file name used for a company in this format.
+     */
+    public String fileNameFor(String company) {
+        return gzip ? CSVWriter.fileNameFor(company) + CompanyFileWriter.GZIP_SUFFIX : CSVWriter.fileNameFor(company);
+    }
+}
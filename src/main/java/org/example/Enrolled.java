@@ -5,6 +5,29 @@ package org.example;
  * This class is used to store and manage information about an enrollee.
  */
 public record Enrolled(String userId, String firstName, String lastName, Integer version, String insuranceCompany) {
+
+    /**
+     * The deduplication rule of every reader and store: a row replaces the kept row of the
+     * same member only if its version is higher, so on equal versions the row seen first stays.
+     *
+     * @param version     version of the row just read
+     * @param keptVersion version of the row kept so far
+     */
+    static boolean supersedes(int version, int keptVersion) {
+        return version > keptVersion;
+    }
+
+    /**
+     * Returns the row {@link #supersedes} keeps of two rows of the same member, for use as a
+     * map merge function.
+     *
+     * @param kept the row seen first
+     * @param e    the row seen later
+     */
+    static Enrolled latest(Enrolled kept, Enrolled e) {
+        return supersedes(e.version(), kept.version()) ? e : kept;
+    }
+
     @Override
     public String toString() {
         return "Enrollee{" +
@@ -0,0 +1,198 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Publishes the rows of an enrollment file, plain or gzip compressed, one {@link Enrolled}
+ * at a time, for consumers that filter, count or forward rows and do not need the grouped,
+ * deduplicated map of {@link CSVReader#readEnrollees(String)}.
+ * <p>
+ * Rows are emitted in file order and exactly as parsed: duplicates are not removed, and
+ * rows that cannot be used are skipped and reported like in the other readers. Nothing is
+ * read ahead of demand, so a slow subscriber holds the file where it is and memory stays
+ * constant whatever the file size.
+ * <p>
+ * Every subscription reads the file on its own. Its signals are delivered on the
+ * publisher's executor, one at a time, and requesting more from inside {@code onNext} does
+ * not recurse.
+ */
+public final class EnrolleePublisher implements Flow.Publisher<Enrolled> {
+
+    private static final Logger logger = Logger.getLogger(EnrolleePublisher.class.getName());
+
+    private final Path file;
+    private final PipelineOptions options;
+    private final Executor executor;
+
+    /**
+     * Publishes {@code file} with default options on the common fork/join pool.
+     */
+    public EnrolleePublisher(Path file) {
+        this(file, PipelineOptions.parse(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param file     the CSV file to publish, with a header row
+     * @param options  supply the per-subscription {@link ParseContext}, including where
+     *                 rejected rows go
+     * @param executor runs the reading and delivers the signals
+     */
+    public EnrolleePublisher(Path file, PipelineOptions options, Executor executor) {
+        this.file = Objects.requireNonNull(file);
+        this.options = Objects.requireNonNull(options);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Enrolled> subscriber) {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new RowSubscription(subscriber));
+    }
+
+    private final class RowSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super Enrolled> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        // number of drains asked for; only the caller that raises it from 0 runs them
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+
+        // only touched while draining, which never happens on two threads at once
+        private Stream<String> lines;
+        private Iterator<String> rows;
+        private ParseContext context;
+        private boolean done;
+
+        RowSubscription(Flow.Subscriber<? super Enrolled> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("request must be positive but was " + n);
+            } else {
+                requested.getAndUpdate(r -> Long.MAX_VALUE - r < n ? Long.MAX_VALUE : r + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread();
+            try {
+                int missed = 1;
+                do {
+                    drain(tokenizer);
+                    missed = pending.addAndGet(-missed);
+                } while (missed != 0);
+            } finally {
+                tokenizer.bind(null);
+            }
+        }
+
+        private void drain(FieldTokenizer tokenizer) {
+            if (done) {
+                return;
+            }
+            if (cancelled) {
+                finish(null, false);
+                return;
+            }
+            if (badRequest != null) {
+                finish(badRequest, false);
+                return;
+            }
+            try {
+                if (rows == null) {
+                    open();
+                }
+                tokenizer.bind(context);
+                while (requested.get() > 0 && !cancelled) {
+                    if (!rows.hasNext()) {
+                        break;
+                    }
+                    tokenizer.tokenize(rows.next());
+                    Enrolled e = tokenizer.toEnrollee(logger);
+                    if (e != null) {
+                        if (requested.get() != Long.MAX_VALUE) {
+                            requested.decrementAndGet();
+                        }
+                        subscriber.onNext(e);
+                    }
+                }
+                // completion needs no demand
+                if (!cancelled && !rows.hasNext()) {
+                    context.rejects().logSummary(logger);
+                    finish(null, true);
+                }
+            } catch (IOException e) {
+                finish(e, false);
+            } catch (UncheckedIOException e) {
+                finish(e.getCause(), false);
+            } catch (RuntimeException e) {
+                // a subscriber that throws is treated as cancelled
+                logger.log(Level.WARNING, "Subscriber failed, cancelling the subscription", e);
+                cancelled = true;
+                finish(null, false);
+            }
+        }
+
+        private void open() throws IOException {
+            context = options.newParseContext();
+            context.startAtLine(1);
+            lines = GzipFiles.lines(file);
+            rows = lines.iterator();
+            // skip header
+            if (rows.hasNext()) {
+                rows.next();
+            }
+        }
+
+        // releases the file and sends the terminal signal, if any
+        private void finish(Throwable error, boolean complete) {
+            done = true;
+            try {
+                if (lines != null) {
+                    lines.close();
+                }
+                if (context != null) {
+                    context.close();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.warning("Error closing " + file + ": " + e.getMessage());
+            }
+            if (error != null) {
+                logger.severe("Error reading file: " + file + ": " + error.getMessage());
+                subscriber.onError(error);
+            } else if (complete) {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
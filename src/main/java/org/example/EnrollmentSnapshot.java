@@ -0,0 +1,179 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk copy of the deduplicated company → (userId → enrollee) state, used by
+ * {@link IncrementalRun} to apply daily deltas without re-reading the full history.
+ * <p>
+ * Every company is stored in its own file named after the hex encoding of its key, so a
+ * run only loads and rewrites the companies its delta touches. A file holds a small table
+ * of the company spellings used by its rows, then every enrollee with variable-length
+ * integers and length-prefixed UTF-8 strings. Files are replaced atomically.
+ */
+public class EnrollmentSnapshot {
+
+    private static final int MAGIC = 0x454E5253; // "ENRS"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".snap";
+
+    private EnrollmentSnapshot() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Loads one company's enrollees from the snapshot.
+     *
+     * @param directory the snapshot directory
+     * @param company   the lower-cased company key
+     * @return userId → enrollee, empty if the snapshot does not know the company yet
+     * @throws IOException if the company file exists but cannot be read
+     */
+    public static Map<String, Enrolled> load(Path directory, String company) throws IOException {
+        Path file = fileFor(directory, company);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not an enrollment snapshot: " + file);
+            }
+            String storedCompany = readString(in);
+            if (!storedCompany.equals(company)) {
+                throw new IOException("Snapshot " + file + " belongs to " + storedCompany + ", not " + company);
+            }
+            String[] spellings = new String[readVarInt(in)];
+            for (int i = 0; i < spellings.length; i++) {
+                spellings[i] = readString(in);
+            }
+            int count = readVarInt(in);
+            Map<String, Enrolled> enrollees = new HashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+            for (int i = 0; i < count; i++) {
+                String userId = readString(in);
+                String firstName = readString(in);
+                String lastName = readString(in);
+                int version = unzigzag(readVarInt(in));
+                enrollees.put(userId, new Enrolled(userId, firstName, lastName, version, spellings[readVarInt(in)]));
+            }
+            return enrollees;
+        } catch (NoSuchFileException e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Replaces one company's enrollees in the snapshot.
+     *
+     * @param directory the snapshot directory, created if missing
+     * @param company   the lower-cased company key
+     * @param enrollees userId → enrollee
+     * @throws IOException if the company file cannot be written
+     */
+    public static void save(Path directory, String company, Map<String, Enrolled> enrollees) throws IOException {
+        Files.createDirectories(directory);
+        Path file = fileFor(directory, company);
+        Path partial = Files.createTempFile(directory, "partial", SUFFIX + ".tmp");
+        try {
+            Map<String, Integer> spellings = new LinkedHashMap<>();
+            for (Enrolled e : enrollees.values()) {
+                spellings.putIfAbsent(e.insuranceCompany(), spellings.size());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, company);
+                writeVarInt(out, spellings.size());
+                for (String spelling : spellings.keySet()) {
+                    writeString(out, spelling);
+                }
+                writeVarInt(out, enrollees.size());
+                for (Enrolled e : enrollees.values()) {
+                    writeString(out, e.userId());
+                    writeString(out, e.firstName());
+                    writeString(out, e.lastName());
+                    writeVarInt(out, zigzag(e.version()));
+                    writeVarInt(out, spellings.get(e.insuranceCompany()));
+                }
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Lists the company keys stored in the snapshot.
+     */
+    public static List<String> companies(Path directory) throws IOException {
+        List<String> companies = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return companies;
+        }
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX) && !name.startsWith("partial")) {
+                    byte[] key = HexFormat.of().parseHex(name, 0, name.length() - SUFFIX.length());
+                    companies.add(new String(key, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return companies;
+    }
+
+    private static Path fileFor(Path directory, String company) {
+        return directory.resolve(HexFormat.of().formatHex(company.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed snapshot: variable-length integer too long");
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
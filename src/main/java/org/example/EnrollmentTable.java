@@ -0,0 +1,617 @@
+package org.example;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Column-oriented store for the enrollees of one insurance company.
+ * <p>
+ * A {@code Map<String, Enrolled>} costs an entry node, a record, a boxed version and a
+ * String per field for every member. A table keeps the same data in a handful of arrays:
+ * the user ID and names of all rows share one {@code char[]}, and every row is only a few
+ * offsets into it, an {@code int} version and the index of its company spelling. A row
+ * takes roughly a quarter of the heap its object form needs.
+ * <p>
+ * Rows are deduplicated on user ID as they are added, with the rule the readers use: the
+ * highest version wins and on equal versions the row added first stays. {@link #sortByName()}
+ * sorts the columns in place in {@link Sorting#BY_NAME} order, and
+ * {@link CSVWriter#writeTables(Map, java.nio.file.Path)} writes them without creating any
+ * {@link Enrolled}. Existing callers can read a table through {@link #get(int)},
+ * {@link #iterator()} or the {@link #asMap()} view.
+ * <p>
+ * User IDs and versions must not be {@code null}; names and companies may be.
+ * Not thread safe.
+ */
+public final class EnrollmentTable implements Iterable<Enrolled> {
+
+    private static final byte NULL_FIRST_NAME = 1;
+    private static final byte NULL_LAST_NAME = 2;
+
+    // shared text of all rows; a row's user ID, first and last name are stored back to back
+    private char[] text = new char[256];
+    private int textLength;
+    // chars no longer referenced by any row, reclaimed when the text has to grow
+    private int garbage;
+
+    private int size;
+    private int[] userIdStart = new int[16];
+    private int[] firstNameStart = new int[16];
+    private int[] lastNameStart = new int[16];
+    private int[] rowEnd = new int[16];
+    private int[] versions = new int[16];
+    private int[] companies = new int[16];
+    private int[] userIdHashes = new int[16];
+    private byte[] nulls = new byte[16];
+
+    // distinct spellings of the company name, usually just one
+    private final List<String> spellings = new ArrayList<>();
+    private final Map<String, Integer> spellingIndex = new HashMap<>();
+    private String lastSpelling;
+    private int lastSpellingIndex = -1;
+
+    // open-addressing index on user ID: row + 1, 0 marks a free slot
+    private int[] index = new int[32];
+
+    // user ID and names of Enrolled objects are copied here before being added
+    private char[] scratch = new char[64];
+
+    /**
+     * Adds an enrollee unless a row with the same user ID and an equal or higher version is
+     * already present.
+     *
+     * @param e the enrollee to add
+     * @return {@code true} if the table changed
+     * @throws NullPointerException if the user ID or the version is {@code null}
+     */
+    public boolean add(Enrolled e) {
+        String userId = Objects.requireNonNull(e.userId(), "userId");
+        int version = Objects.requireNonNull(e.version(), "version");
+        String first = e.firstName() == null ? "" : e.firstName();
+        String last = e.lastName() == null ? "" : e.lastName();
+        int firstFrom = userId.length();
+        int lastFrom = firstFrom + first.length();
+        int end = lastFrom + last.length();
+        if (scratch.length < end) {
+            scratch = new char[Math.max(end, scratch.length * 2)];
+        }
+        userId.getChars(0, firstFrom, scratch, 0);
+        first.getChars(0, first.length(), scratch, firstFrom);
+        last.getChars(0, last.length(), scratch, lastFrom);
+        byte nullMask = (byte) ((e.firstName() == null ? NULL_FIRST_NAME : 0) | (e.lastName() == null ? NULL_LAST_NAME : 0));
+        return add(scratch, 0, firstFrom, firstFrom, lastFrom, lastFrom, end, nullMask, version, e.insuranceCompany());
+    }
+
+    /**
+     * Adds a row whose user ID and names are ranges of {@code source}, with the same rule
+     * as {@link #add(Enrolled)}. Nothing is allocated unless the columns have to grow.
+     */
+    boolean add(char[] source, int userIdFrom, int userIdTo, int firstFrom, int firstTo, int lastFrom, int lastTo,
+                int version, String company) {
+        return add(source, userIdFrom, userIdTo, firstFrom, firstTo, lastFrom, lastTo, (byte) 0, version, company);
+    }
+
+    /**
+     * Adds every row of {@code other}, in its row order, with the same rule as
+     * {@link #add(Enrolled)}.
+     */
+    public void addAll(EnrollmentTable other) {
+        for (int row = 0; row < other.size; row++) {
+            add(other.text, other.userIdStart[row], other.firstNameStart[row],
+                    other.firstNameStart[row], other.lastNameStart[row],
+                    other.lastNameStart[row], other.rowEnd[row],
+                    other.nulls[row], other.versions[row], other.insuranceCompany(row));
+        }
+    }
+
+    private boolean add(char[] source, int userIdFrom, int userIdTo, int firstFrom, int firstTo, int lastFrom,
+                        int lastTo, byte nullMask, int version, String company) {
+        int hash = hash(source, userIdFrom, userIdTo);
+        int mask = index.length - 1;
+        int slot = spread(hash) & mask;
+        for (; index[slot] != 0; slot = (slot + 1) & mask) {
+            int row = index[slot] - 1;
+            if (userIdHashes[row] == hash && userIdEquals(row, source, userIdFrom, userIdTo)) {
+                if (!Enrolled.supersedes(version, versions[row])) {
+                    return false;
+                }
+                int oldLength = rowEnd[row] - userIdStart[row];
+                store(row, source, userIdFrom, userIdTo, firstFrom, firstTo, lastFrom, lastTo, nullMask, version, company);
+                garbage += oldLength;
+                return true;
+            }
+        }
+        if (size == versions.length) {
+            growRows();
+        }
+        int row = size;
+        store(row, source, userIdFrom, userIdTo, firstFrom, firstTo, lastFrom, lastTo, nullMask, version, company);
+        size++;
+        userIdHashes[row] = hash;
+        index[slot] = row + 1;
+        // keep the index at most half full
+        if (size * 2 > index.length) {
+            rebuildIndex(index.length * 2);
+        }
+        return true;
+    }
+
+    private void store(int row, char[] source, int userIdFrom, int userIdTo, int firstFrom, int firstTo,
+                       int lastFrom, int lastTo, byte nullMask, int version, String company) {
+        int userIdLength = userIdTo - userIdFrom;
+        int firstLength = firstTo - firstFrom;
+        int lastLength = lastTo - lastFrom;
+        ensureText((long) userIdLength + firstLength + lastLength);
+        int at = textLength;
+        userIdStart[row] = at;
+        System.arraycopy(source, userIdFrom, text, at, userIdLength);
+        at += userIdLength;
+        firstNameStart[row] = at;
+        System.arraycopy(source, firstFrom, text, at, firstLength);
+        at += firstLength;
+        lastNameStart[row] = at;
+        System.arraycopy(source, lastFrom, text, at, lastLength);
+        at += lastLength;
+        rowEnd[row] = at;
+        textLength = at;
+        nulls[row] = nullMask;
+        versions[row] = version;
+        companies[row] = spelling(company);
+    }
+
+    private int spelling(String company) {
+        if (company == lastSpelling && lastSpellingIndex >= 0) {
+            return lastSpellingIndex;
+        }
+        Integer known = spellingIndex.get(company);
+        if (known == null) {
+            known = spellings.size();
+            spellings.add(company);
+            spellingIndex.put(company, known);
+        }
+        lastSpelling = company;
+        lastSpellingIndex = known;
+        return known;
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the row holding {@code userId}, or -1.
+     */
+    public int rowOf(String userId) {
+        int hash = userId.hashCode();
+        int mask = index.length - 1;
+        for (int slot = spread(hash) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int row = index[slot] - 1;
+            if (userIdHashes[row] == hash && userIdEquals(row, userId)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a new {@link Enrolled} holding the values of {@code row}.
+     */
+    public Enrolled get(int row) {
+        checkRow(row);
+        return new Enrolled(userId(row), firstName(row), lastName(row), versions[row], insuranceCompany(row));
+    }
+
+    /**
+     * Returns the enrollee with the given user ID, or {@code null}.
+     */
+    public Enrolled get(String userId) {
+        int row = rowOf(userId);
+        return row < 0 ? null : get(row);
+    }
+
+    public String userId(int row) {
+        checkRow(row);
+        return new String(text, userIdStart[row], firstNameStart[row] - userIdStart[row]);
+    }
+
+    public String firstName(int row) {
+        checkRow(row);
+        return (nulls[row] & NULL_FIRST_NAME) != 0 ? null
+                : new String(text, firstNameStart[row], lastNameStart[row] - firstNameStart[row]);
+    }
+
+    public String lastName(int row) {
+        checkRow(row);
+        return (nulls[row] & NULL_LAST_NAME) != 0 ? null
+                : new String(text, lastNameStart[row], rowEnd[row] - lastNameStart[row]);
+    }
+
+    public int version(int row) {
+        checkRow(row);
+        return versions[row];
+    }
+
+    public String insuranceCompany(int row) {
+        checkRow(row);
+        return spellings.get(companies[row]);
+    }
+
+    /**
+     * Iterates over the rows in row order, creating one {@link Enrolled} per row.
+     */
+    @Override
+    public Iterator<Enrolled> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Enrolled next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Returns a read-only user ID → enrollee view in row order, for code written against
+     * the map representation. Values are created on access.
+     */
+    public Map<String, Enrolled> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public Set<Entry<String, Enrolled>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, Enrolled>> iterator() {
+                        Iterator<Enrolled> rows = EnrollmentTable.this.iterator();
+                        return new Iterator<>() {
+                            @Override
+                            public boolean hasNext() {
+                                return rows.hasNext();
+                            }
+
+                            @Override
+                            public Entry<String, Enrolled> next() {
+                                Enrolled e = rows.next();
+                                return Map.entry(e.userId(), e);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String userId && rowOf(userId) >= 0;
+            }
+
+            @Override
+            public Enrolled get(Object key) {
+                return key instanceof String userId ? EnrollmentTable.this.get(userId) : null;
+            }
+        };
+    }
+
+    /**
+     * Returns company → {@link #asMap()} views of {@code tables}, in the same order.
+     */
+    public static Map<String, Map<String, Enrolled>> asMaps(Map<String, EnrollmentTable> tables) {
+        Map<String, Map<String, Enrolled>> views = new LinkedHashMap<>();
+        tables.forEach((company, table) -> views.put(company, table.asMap()));
+        return views;
+    }
+
+    /**
+     * Reorders the rows by last name, then first name, ignoring case, then user ID, which is
+     * the order of {@link Sorting#BY_NAME}. The text is rewritten in the new order, which
+     * also drops the text of replaced rows.
+     */
+    public void sortByName() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size);
+        permute(order);
+    }
+
+    // stable top-down merge sort of row numbers; the order is total, so stability only
+    // matters for identical rows
+    private void mergeSort(int[] rows, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from && compareByName(rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(rows, buffer, from, mid);
+        mergeSort(rows, buffer, mid, to);
+        if (compareByName(rows[mid - 1], rows[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compareByName(buffer[left], buffer[right]) <= 0)) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Compares two rows like {@link Sorting#BY_NAME} compares their {@link Enrolled} forms.
+     */
+    int compareByName(int a, int b) {
+        int c = compareName(a, b, NULL_LAST_NAME, lastNameStart, rowEnd);
+        if (c != 0) {
+            return c;
+        }
+        c = compareName(a, b, NULL_FIRST_NAME, firstNameStart, lastNameStart);
+        if (c != 0) {
+            return c;
+        }
+        return compare(userIdStart[a], firstNameStart[a], userIdStart[b], firstNameStart[b]);
+    }
+
+    // nulls last, then compareToIgnoreCase
+    private int compareName(int a, int b, byte nullBit, int[] from, int[] to) {
+        boolean aNull = (nulls[a] & nullBit) != 0;
+        boolean bNull = (nulls[b] & nullBit) != 0;
+        if (aNull || bNull) {
+            return aNull == bNull ? 0 : aNull ? 1 : -1;
+        }
+        return compareIgnoreCase(from[a], to[a], from[b], to[b]);
+    }
+
+    // String.compareTo on two text ranges
+    private int compare(int aFrom, int aTo, int bFrom, int bTo) {
+        int n = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < n; i++) {
+            char ca = text[aFrom + i];
+            char cb = text[bFrom + i];
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+
+    // String.compareToIgnoreCase on two text ranges; the JDK compares surrogate pairs as
+    // code points, so ranges that differ at a surrogate are compared as Strings
+    private int compareIgnoreCase(int aFrom, int aTo, int bFrom, int bTo) {
+        int n = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < n; i++) {
+            char ca = text[aFrom + i];
+            char cb = text[bFrom + i];
+            if (ca == cb) {
+                continue;
+            }
+            if (Character.isSurrogate(ca) || Character.isSurrogate(cb)) {
+                return new String(text, aFrom, aTo - aFrom).compareToIgnoreCase(new String(text, bFrom, bTo - bFrom));
+            }
+            ca = Character.toUpperCase(ca);
+            cb = Character.toUpperCase(cb);
+            if (ca != cb) {
+                ca = Character.toLowerCase(ca);
+                cb = Character.toLowerCase(cb);
+                if (ca != cb) {
+                    return ca - cb;
+                }
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+
+    // rewrites every column so that row i holds what row order[i] held
+    private void permute(int[] order) {
+        char[] newText = new char[Math.max(256, textLength - garbage)];
+        int[] newUserIdStart = new int[versions.length];
+        int[] newFirstNameStart = new int[versions.length];
+        int[] newLastNameStart = new int[versions.length];
+        int[] newRowEnd = new int[versions.length];
+        int[] newVersions = new int[versions.length];
+        int[] newCompanies = new int[versions.length];
+        int[] newUserIdHashes = new int[versions.length];
+        byte[] newNulls = new byte[versions.length];
+        int at = 0;
+        for (int i = 0; i < size; i++) {
+            int row = order[i];
+            int length = rowEnd[row] - userIdStart[row];
+            System.arraycopy(text, userIdStart[row], newText, at, length);
+            int shift = at - userIdStart[row];
+            newUserIdStart[i] = at;
+            newFirstNameStart[i] = firstNameStart[row] + shift;
+            newLastNameStart[i] = lastNameStart[row] + shift;
+            newRowEnd[i] = rowEnd[row] + shift;
+            newVersions[i] = versions[row];
+            newCompanies[i] = companies[row];
+            newUserIdHashes[i] = userIdHashes[row];
+            newNulls[i] = nulls[row];
+            at += length;
+        }
+        text = newText;
+        textLength = at;
+        garbage = 0;
+        userIdStart = newUserIdStart;
+        firstNameStart = newFirstNameStart;
+        lastNameStart = newLastNameStart;
+        rowEnd = newRowEnd;
+        versions = newVersions;
+        companies = newCompanies;
+        userIdHashes = newUserIdHashes;
+        nulls = newNulls;
+        rebuildIndex(index.length);
+    }
+
+    private void ensureText(long needed) {
+        if (textLength + needed <= text.length) {
+            return;
+        }
+        long live = textLength - garbage + needed;
+        if (live > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Company table text exceeds " + (Integer.MAX_VALUE - 8) + " chars");
+        }
+        // compact instead of growing when most of the text is dead
+        long capacity = garbage * 2L >= textLength ? Math.max(text.length, live) : Math.max(text.length * 2L, live);
+        char[] grown = new char[(int) Math.min(capacity, Integer.MAX_VALUE - 8)];
+        if (garbage == 0) {
+            System.arraycopy(text, 0, grown, 0, textLength);
+        } else {
+            int at = 0;
+            for (int row = 0; row < size; row++) {
+                int length = rowEnd[row] - userIdStart[row];
+                System.arraycopy(text, userIdStart[row], grown, at, length);
+                int shift = at - userIdStart[row];
+                userIdStart[row] += shift;
+                firstNameStart[row] += shift;
+                lastNameStart[row] += shift;
+                rowEnd[row] += shift;
+                at += length;
+            }
+            textLength = at;
+            garbage = 0;
+        }
+        text = grown;
+    }
+
+    private void growRows() {
+        int capacity = versions.length * 2;
+        userIdStart = Arrays.copyOf(userIdStart, capacity);
+        firstNameStart = Arrays.copyOf(firstNameStart, capacity);
+        lastNameStart = Arrays.copyOf(lastNameStart, capacity);
+        rowEnd = Arrays.copyOf(rowEnd, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        companies = Arrays.copyOf(companies, capacity);
+        userIdHashes = Arrays.copyOf(userIdHashes, capacity);
+        nulls = Arrays.copyOf(nulls, capacity);
+    }
+
+    private void rebuildIndex(int capacity) {
+        index = new int[capacity];
+        int mask = capacity - 1;
+        for (int row = 0; row < size; row++) {
+            int slot = spread(userIdHashes[row]) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = row + 1;
+        }
+    }
+
+    private boolean userIdEquals(int row, char[] source, int from, int to) {
+        int start = userIdStart[row];
+        if (firstNameStart[row] - start != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (text[start + i - from] != source[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean userIdEquals(int row, String userId) {
+        int start = userIdStart[row];
+        if (firstNameStart[row] - start != userId.length()) {
+            return false;
+        }
+        for (int i = 0; i < userId.length(); i++) {
+            if (text[start + i] != userId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+    }
+
+    // same value as String.hashCode, so lookups by String need no copy
+    private static int hash(char[] source, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + source[i];
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // raw column access for CompanyFileWriter
+
+    char[] text() {
+        return text;
+    }
+
+    int userIdStart(int row) {
+        return userIdStart[row];
+    }
+
+    int firstNameStart(int row) {
+        return firstNameStart[row];
+    }
+
+    int lastNameStart(int row) {
+        return lastNameStart[row];
+    }
+
+    int rowEnd(int row) {
+        return rowEnd[row];
+    }
+
+    boolean firstNameIsNull(int row) {
+        return (nulls[row] & NULL_FIRST_NAME) != 0;
+    }
+
+    boolean lastNameIsNull(int row) {
+        return (nulls[row] & NULL_LAST_NAME) != 0;
+    }
+}
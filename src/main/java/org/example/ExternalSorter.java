@@ -0,0 +1,289 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+/**
+ * External merge sort of enrollees per company, used by
+ * {@link Sorting#sortByNameExternal(Map, long, Path)}.
+ * <p>
+ * Enrollees are added in input order. Once the estimated heap use of the buffered
+ * enrollees reaches the budget, every company's buffer is sorted with
+ * {@link Sorting#BY_NAME} and written to a temporary run file. When writing, the runs of a
+ * company (plus whatever is still buffered) are k-way merged into its CSV file. On equal
+ * names the earlier run wins and runs are sorted stably, so the order is the same as a
+ * stable in-memory sort of the input.
+ */
+class ExternalSorter implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ExternalSorter.class.getName());
+
+    private final long memoryBudgetBytes;
+    private final Path tempDirectory;
+    private final Map<String, CompanyRuns> companies = new LinkedHashMap<>();
+    private long bufferedBytes;
+    private int spills;
+    private int runFiles;
+
+    /**
+     * @param memoryBudgetBytes approximate heap the buffered enrollees may use before
+     *                          they are spilled to disk
+     * @throws IOException if the temporary directory cannot be created
+     */
+    ExternalSorter(long memoryBudgetBytes) throws IOException {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("memory budget must be positive but was " + memoryBudgetBytes);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.tempDirectory = Files.createTempDirectory("enrollment-sort");
+    }
+
+    /**
+     * Adds one enrollee of a company, spilling the buffer to disk if it is full.
+     */
+    void add(String company, Enrolled e) throws IOException {
+        companies.computeIfAbsent(company, k -> new CompanyRuns()).buffer.add(e);
+        bufferedBytes += estimateBytes(e);
+        if (bufferedBytes >= memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * Merges every company's runs into one sorted CSV file per company, in the order the
+     * companies were first added.
+     *
+     * @throws CompanyWriteException if one or more company files could not be written, once
+     *                               every company has been attempted
+     */
+    void writeByCompany(Path outputDirectory) throws IOException {
+        writeByCompany(outputDirectory, CsvFormat.PLAIN);
+    }
+
+    /**
+     * Merges every company's runs like {@link #writeByCompany(Path)}, in the given format.
+     */
+    void writeByCompany(Path outputDirectory, CsvFormat format) throws IOException {
+        CSVWriter.createOutputDirectory(outputDirectory);
+        logger.info("Merging " + spills + " spill(s) for " + companies.size() + " companies");
+        Map<String, IOException> failures = new LinkedHashMap<>();
+        for (Map.Entry<String, CompanyRuns> entry : companies.entrySet()) {
+            Path filePath = outputDirectory.resolve(format.fileNameFor(entry.getKey()));
+            CompanyRuns runs = entry.getValue();
+            runs.buffer.sort(Sorting.BY_NAME);
+            List<Iterator<Enrolled>> sources = new ArrayList<>();
+            List<RunReader> readers = new ArrayList<>();
+            try {
+                for (Path run : runs.files) {
+                    RunReader reader = new RunReader(run);
+                    readers.add(reader);
+                    sources.add(reader);
+                }
+                // the unspilled remainder is the newest run
+                sources.add(runs.buffer.iterator());
+                CSVWriter.writeCompany(filePath, merge(sources), format.indexed());
+            } catch (UncheckedIOException e) {
+                failures.put(entry.getKey(), e.getCause());
+            } catch (IOException e) {
+                failures.put(entry.getKey(), e);
+            } finally {
+                for (RunReader reader : readers) {
+                    reader.close();
+                }
+            }
+            // release the company before merging the next one
+            runs.buffer = new ArrayList<>();
+        }
+        if (!failures.isEmpty()) {
+            throw new CompanyWriteException(failures);
+        }
+    }
+
+    /**
+     * Deletes all temporary run files.
+     */
+    @Override
+    public void close() throws IOException {
+        try (var files = Files.list(tempDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(tempDirectory);
+    }
+
+    private void spill() throws IOException {
+        spills++;
+        for (CompanyRuns runs : companies.values()) {
+            if (runs.buffer.isEmpty()) {
+                continue;
+            }
+            runs.buffer.sort(Sorting.BY_NAME);
+            Path run = tempDirectory.resolve("run-" + (++runFiles) + ".bin");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+                for (Enrolled e : runs.buffer) {
+                    writeEnrollee(out, e);
+                }
+            }
+            runs.files.add(run);
+            runs.buffer = new ArrayList<>();
+        }
+        bufferedBytes = 0;
+    }
+
+    // k-way merge; sources are listed oldest first and win ties
+    private static Iterator<Enrolled> merge(List<Iterator<Enrolled>> sources) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(
+                Comparator.comparing((Head h) -> h.value, Sorting.BY_NAME).thenComparingInt(h -> h.source));
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i).hasNext()) {
+                heads.add(new Head(i, sources.get(i).next()));
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Enrolled next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                Enrolled value = head.value;
+                Iterator<Enrolled> source = sources.get(head.source);
+                if (source.hasNext()) {
+                    head.value = source.next();
+                    heads.add(head);
+                }
+                return value;
+            }
+        };
+    }
+
+    // rough heap footprint: record, boxed version, four Strings and their contents
+    static long estimateBytes(Enrolled e) {
+        return 120 + 2L * (length(e.userId()) + length(e.firstName()) + length(e.lastName()) + length(e.insuranceCompany()));
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length() + 24;
+    }
+
+    /**
+     * Writes one enrollee in the run file format that {@link RunReader} reads back.
+     */
+    static void writeEnrollee(DataOutputStream out, Enrolled e) throws IOException {
+        writeString(out, e.userId());
+        writeString(out, e.firstName());
+        writeString(out, e.lastName());
+        out.writeInt(e.version());
+        writeString(out, e.insuranceCompany());
+    }
+
+    /**
+     * Reads one enrollee written by {@link #writeEnrollee}.
+     *
+     * @throws EOFException at the end of the input
+     */
+    static Enrolled readEnrollee(DataInputStream in) throws IOException {
+        String userId = readString(in);
+        return new Enrolled(userId, readString(in), readString(in), in.readInt(), readString(in));
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class CompanyRuns {
+        private List<Enrolled> buffer = new ArrayList<>();
+        private final List<Path> files = new ArrayList<>();
+    }
+
+    private static final class Head {
+        private final int source;
+        private Enrolled value;
+
+        private Head(int source, Enrolled value) {
+            this.source = source;
+            this.value = value;
+        }
+    }
+
+    // streams one run file back, one enrollee at a time
+    private static final class RunReader implements Iterator<Enrolled>, Closeable {
+        private final DataInputStream in;
+        private Enrolled next;
+
+        private RunReader(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+            advance();
+        }
+
+        private void advance() {
+            try {
+                next = readEnrollee(in);
+            } catch (EOFException e) {
+                next = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Enrolled next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Enrolled current = next;
+            advance();
+            return current;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
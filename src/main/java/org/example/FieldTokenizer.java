@@ -0,0 +1,468 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Splits one CSV row into fields without allocating per row.
+ * <p>
+ * The row is copied, minus its quote characters, into a scratch buffer that is reused for
+ * every row the thread parses. While copying, a single pass records for the first four
+ * fields their trimmed start/end offsets and, for the full name field, the offsets of the
+ * first and last name after whitespace collapsing. The rules are the ones the reader always
+ * applied:
+ * <ul>
+ *     <li>{@code "} toggles quoting and is dropped, {@code ,} outside quotes ends a field</li>
+ *     <li>fields are trimmed like {@link String#trim()}</li>
+ *     <li>the full name is split on runs of {@code \s}; the first token is the first name,
+ *         the second token the last name</li>
+ * </ul>
+ * A rejected row therefore costs no allocation at all, and an accepted row allocates only
+ * the Strings of the {@link Enrolled} it becomes.
+ * <p>
+ * Rows can come from Strings or from raw UTF-8 bytes. Every byte of a multi-byte UTF-8
+ * sequence is above {@code 0x7F}, so quotes, commas and whitespace are found the same way
+ * in both.
+ * <p>
+ * While a {@link ParseContext} is bound, companies (and optionally names) are looked up in
+ * its dictionaries straight from the scratch buffer, so repeated values are not allocated
+ * again either. Every tokenized line is counted, and skipped rows go to the context's
+ * {@link RejectCollector} instead of the log.
+ * <p>
+ * Not thread safe; use {@link #forCurrentThread()}.
+ */
+final class FieldTokenizer {
+
+    static final int FIELDS = 4;
+
+    private static final ThreadLocal<FieldTokenizer> PER_THREAD = ThreadLocal.withInitial(FieldTokenizer::new);
+
+    private byte[] bytes = new byte[256];
+    private char[] chars = new char[256];
+    private boolean fromBytes;
+    private int length;
+    private int fieldCount;
+    private boolean inQuotes;
+    // bit i is set when field i contains a byte above 0x7F
+    private int nonAscii;
+    private ParseContext context;
+    // version of the current row once it has been validated
+    private int version;
+    // the current line as given, for reject reports
+    private CharSequence sourceLine;
+    private ByteBuffer sourceBuffer;
+    private int sourceStart;
+    private int sourceEnd;
+    private long lineNumber;
+
+    // trimmed bounds of the first four fields; start is -1 until a non-blank char is seen
+    private final int[] start = new int[FIELDS];
+    private final int[] end = new int[FIELDS];
+
+    // first and last name tokens inside the full name field
+    private int nameTokens;
+    private boolean inToken;
+    private int firstStart;
+    private int firstEnd;
+    private int lastStart;
+    private int lastEnd;
+
+    /**
+     * Returns the tokenizer owned by the calling thread.
+     */
+    static FieldTokenizer forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Binds the context whose dictionaries the following rows are interned into. Readers
+     * bind a context for the duration of one read and unbind it with {@code null} afterwards
+     * so the thread does not keep the dictionaries alive.
+     *
+     * @param context the context of the current read, or {@code null} to intern nothing
+     * @return this tokenizer
+     */
+    FieldTokenizer bind(ParseContext context) {
+        this.context = context;
+        sourceLine = null;
+        sourceBuffer = null;
+        return this;
+    }
+
+    /**
+     * Returns the lower-cased grouping key of a company produced by this tokenizer.
+     */
+    String companyKey(String company) {
+        return context != null ? context.companyKey(company) : company.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Tokenizes a line that has already been decoded into chars.
+     *
+     * @param line the row without its line terminator
+     * @return the number of fields in the row
+     */
+    int tokenize(CharSequence line) {
+        begin(false);
+        sourceLine = line;
+        int n = line.length();
+        if (chars.length < n) {
+            chars = new char[Math.max(n, chars.length * 2)];
+        }
+        for (int i = 0; i < n; i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                inQuotes = !inQuotes;
+                continue;
+            }
+            if (c == ',' && !inQuotes) {
+                closeField();
+            } else {
+                accept(c);
+            }
+            chars[length++] = c;
+        }
+        finish();
+        return fieldCount;
+    }
+
+    /**
+     * Tokenizes the UTF-8 line starting at {@code position}, up to the next line terminator
+     * or {@code limit}.
+     *
+     * @param buffer   the bytes to read; only absolute gets are used
+     * @param position index of the first byte of the line
+     * @param limit    index one past the last readable byte
+     * @return the index of the line terminator, or {@code limit} if the line is unterminated;
+     *         the number of fields is available from {@link #fieldCount()}
+     */
+    int tokenize(ByteBuffer buffer, int position, int limit) {
+        begin(true);
+        sourceBuffer = buffer;
+        sourceStart = position;
+        int i = position;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+            if (b == '"') {
+                inQuotes = !inQuotes;
+                continue;
+            }
+            if (b == ',' && !inQuotes) {
+                closeField();
+            } else {
+                if (b < 0 && fieldCount <= FIELDS) {
+                    nonAscii |= 1 << (fieldCount - 1);
+                }
+                accept(b & 0xFF);
+            }
+            if (length == bytes.length) {
+                byte[] grown = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+            bytes[length++] = b;
+        }
+        sourceEnd = i;
+        finish();
+        return i;
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Turns the current row into an {@link Enrolled}, returning {@code null} when the row
+     * cannot be used. Skipped rows are reported to the bound context, or logged when no
+     * context is bound. Blank lines are skipped without a report.
+     *
+     * @param logger where skipped rows are reported without a context
+     */
+    Enrolled toEnrollee(Logger logger) {
+        try {
+            if (!validate(logger)) {
+                return null;
+            }
+            StringDictionary names = context != null ? context.names() : null;
+            Enrolled enrolled = new Enrolled(
+                    string(start[0], end[0]),
+                    intern(names, 1, firstStart, firstEnd),
+                    intern(names, 1, lastStart, lastEnd),
+                    version,
+                    company());
+            accepted();
+            return enrolled;
+        } catch (RuntimeException e) {
+            logUnexpected(logger, e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the current row to the table of its company, creating the table on first use.
+     * Rows that cannot be used are reported and skipped like in {@link #toEnrollee(Logger)}.
+     *
+     * @param tables lower-cased company → table
+     * @param logger where skipped rows are reported
+     * @return {@code true} if the row was valid
+     */
+    boolean addTo(Map<String, EnrollmentTable> tables, Logger logger) {
+        try {
+            if (!validate(logger)) {
+                return false;
+            }
+            String company = company();
+            EnrollmentTable table = tables.computeIfAbsent(companyKey(company), k -> new EnrollmentTable());
+            if (fromBytes && (nonAscii & 0b11) != 0) {
+                // user ID or name needs decoding
+                table.add(new Enrolled(string(start[0], end[0]), string(firstStart, firstEnd),
+                        string(lastStart, lastEnd), version, company));
+                accepted();
+                return true;
+            }
+            if (fromBytes) {
+                // ASCII bytes widen to the same chars
+                if (chars.length < length) {
+                    chars = new char[Math.max(length, chars.length * 2)];
+                }
+                for (int i = 0; i < length; i++) {
+                    chars[i] = (char) bytes[i];
+                }
+            }
+            table.add(chars, start[0], end[0], firstStart, firstEnd, lastStart, lastEnd, version, company);
+            accepted();
+            return true;
+        } catch (RuntimeException e) {
+            logUnexpected(logger, e);
+            return false;
+        }
+    }
+
+    // reports why the current row is skipped; on success the version is in this.version
+    private boolean validate(Logger logger) {
+        if (fieldCount < FIELDS) {
+            // short rows were always skipped without a log line
+            if (context != null && !(fieldCount == 1 && start[0] == end[0])) {
+                context.rejects().reject(RejectCollector.Reason.FIELD_COUNT, lineNumber, this::rawRow);
+            }
+            return false;
+        }
+        if (start[0] == end[0]) {
+            reject(RejectCollector.Reason.MISSING_USER_ID, logger, () -> "Skipping row due to missing User Id: " + row());
+            return false;
+        }
+        try {
+            version = parseVersion(start[2], end[2]);
+        } catch (NumberFormatException e) {
+            reject(RejectCollector.Reason.BAD_VERSION, logger, () -> "Skipping row due to invalid version number: "
+                    + row() + " | Error: " + e.getMessage());
+            return false;
+        }
+        if (start[3] == end[3]) {
+            reject(RejectCollector.Reason.MISSING_COMPANY, logger,
+                    () -> "Skipping row due to missing Insurance Company: " + row());
+            return false;
+        }
+        return true;
+    }
+
+    private void accepted() {
+        if (context != null) {
+            context.acceptRow();
+        }
+    }
+
+    private void reject(RejectCollector.Reason reason, Logger logger, Supplier<String> message) {
+        if (context != null) {
+            context.rejects().reject(reason, lineNumber, this::rawRow);
+        } else {
+            logger.warning(message);
+        }
+    }
+
+    private String company() {
+        return intern(context != null ? context.companies() : null, 3, start[3], end[3]);
+    }
+
+    private void logUnexpected(Logger logger, RuntimeException e) {
+        if (context != null) {
+            context.rejects().reject(RejectCollector.Reason.UNEXPECTED, lineNumber, this::rawRow);
+            return;
+        }
+        logger.severe(() -> "Unexpected error parsing row: "
+                + row() + " | Exception: "
+                + e.getClass().getSimpleName() + " - " + e.getMessage());
+    }
+
+    /**
+     * Returns the row the way it is reported when skipped: its fields joined by commas,
+     * which is the line without its quote characters.
+     */
+    String row() {
+        return fromBytes ? new String(bytes, 0, length, StandardCharsets.UTF_8) : new String(chars, 0, length);
+    }
+
+    /**
+     * Counts a line that is not tokenized, such as the header.
+     */
+    void skipLine() {
+        if (context != null) {
+            context.nextLine();
+        }
+    }
+
+    /**
+     * Returns the current line exactly as it appeared in the input.
+     */
+    String rawRow() {
+        if (!fromBytes) {
+            return sourceLine.toString();
+        }
+        byte[] raw = new byte[sourceEnd - sourceStart];
+        sourceBuffer.get(sourceStart, raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private void begin(boolean bytesSource) {
+        fromBytes = bytesSource;
+        lineNumber = context != null ? context.nextLine() : 0;
+        length = 0;
+        fieldCount = 1;
+        inQuotes = false;
+        nonAscii = 0;
+        start[0] = -1;
+        nameTokens = 0;
+        inToken = false;
+        firstStart = firstEnd = lastStart = lastEnd = 0;
+    }
+
+    private void accept(int c) {
+        int field = fieldCount - 1;
+        if (field >= FIELDS) {
+            return;
+        }
+        if (c > ' ') {
+            if (start[field] < 0) {
+                start[field] = length;
+            }
+            end[field] = length + 1;
+        }
+        // name tokens begin at the trimmed start of the field
+        if (field == 1 && start[1] >= 0) {
+            if (isRegexSpace(c)) {
+                if (inToken) {
+                    endToken(length);
+                }
+            } else if (!inToken && nameTokens < 2) {
+                inToken = true;
+                nameTokens++;
+                if (nameTokens == 1) {
+                    firstStart = length;
+                } else {
+                    lastStart = length;
+                }
+            }
+        }
+    }
+
+    private void closeField() {
+        int field = fieldCount - 1;
+        if (field < FIELDS) {
+            if (start[field] < 0) {
+                start[field] = end[field] = length;
+            }
+            if (field == 1) {
+                closeName();
+            }
+        }
+        fieldCount++;
+        if (fieldCount <= FIELDS) {
+            start[fieldCount - 1] = -1;
+        }
+    }
+
+    private void finish() {
+        closeField();
+        fieldCount--;
+    }
+
+    private void endToken(int at) {
+        inToken = false;
+        if (nameTokens == 1) {
+            firstEnd = at;
+        } else {
+            lastEnd = at;
+        }
+    }
+
+    // tokens may run into trailing blanks that String.trim() would have removed first
+    private void closeName() {
+        if (inToken) {
+            endToken(length);
+        }
+        int trimmedEnd = end[1];
+        if (nameTokens < 1 || firstStart >= trimmedEnd) {
+            firstStart = firstEnd = 0;
+        } else {
+            firstEnd = Math.min(firstEnd, trimmedEnd);
+        }
+        if (nameTokens < 2 || lastStart >= trimmedEnd) {
+            lastStart = lastEnd = 0;
+        } else {
+            lastEnd = Math.min(lastEnd, trimmedEnd);
+        }
+    }
+
+    // the characters matched by \s
+    private static boolean isRegexSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // ASCII digits are parsed in place; anything else goes through Integer.parseInt so
+    // signs, non-ASCII digits and error messages behave exactly as before
+    private int parseVersion(int from, int to) {
+        if (from < to && to - from <= 9) {
+            int value = 0;
+            int i = from;
+            for (; i < to; i++) {
+                int digit = (fromBytes ? bytes[i] : chars[i]) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+            }
+            if (i == to) {
+                return value;
+            }
+        }
+        return Integer.parseInt(string(from, to));
+    }
+
+    private String intern(StringDictionary dictionary, int field, int from, int to) {
+        if (dictionary == null || from >= to) {
+            return string(from, to);
+        }
+        if (!fromBytes) {
+            return dictionary.intern(chars, from, to);
+        }
+        if ((nonAscii & (1 << field)) == 0) {
+            return dictionary.internAscii(bytes, from, to);
+        }
+        return dictionary.intern(string(from, to));
+    }
+
+    private String string(int from, int to) {
+        if (from >= to) {
+            return "";
+        }
+        return fromBytes ? new String(bytes, from, to - from, StandardCharsets.UTF_8) : new String(chars, from, to - from);
+    }
+}
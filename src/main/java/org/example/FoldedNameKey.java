@@ -0,0 +1,117 @@
+package org.example;
+
+/**
+ * Sort key of one enrollee in {@link Sorting#BY_NAME} order, with the case folding done once.
+ * <p>
+ * {@link String#compareToIgnoreCase} folds both strings on every comparison. For chars
+ * outside the surrogate range it compares {@code toLowerCase(toUpperCase(c))} char by
+ * char and then the lengths, so a name folded that way up front compares with plain
+ * {@link String#compareTo} to the same result. The first four folded chars of the last
+ * name are also packed into a {@code long}, which settles most comparisons without
+ * touching the strings.
+ * <p>
+ * The JDK compares surrogate pairs as code points, so {@link #of(Enrolled)} returns
+ * {@code null} for names containing them and callers fall back to the comparator.
+ */
+final class FoldedNameKey implements Comparable<FoldedNameKey> {
+
+    final Enrolled enrollee;
+    private final long lastPrefix;
+    // folded names, null when the name is null
+    private final String last;
+    private final String first;
+
+    private FoldedNameKey(Enrolled enrollee, String last, String first) {
+        this.enrollee = enrollee;
+        this.last = last;
+        this.first = first;
+        this.lastPrefix = last == null ? 0 : prefix(last);
+    }
+
+    /**
+     * Returns the key of {@code e}, or {@code null} if a name contains surrogates.
+     */
+    static FoldedNameKey of(Enrolled e) {
+        if (hasSurrogate(e.lastName()) || hasSurrogate(e.firstName())) {
+            return null;
+        }
+        return new FoldedNameKey(e, fold(e.lastName()), fold(e.firstName()));
+    }
+
+    @Override
+    public int compareTo(FoldedNameKey o) {
+        int c;
+        if (last != null && o.last != null) {
+            c = lastPrefix != o.lastPrefix ? Long.compareUnsigned(lastPrefix, o.lastPrefix) : last.compareTo(o.last);
+        } else {
+            c = nullsLast(last, o.last);
+        }
+        if (c != 0) {
+            return c;
+        }
+        c = first != null && o.first != null ? first.compareTo(o.first) : nullsLast(first, o.first);
+        if (c != 0) {
+            return c;
+        }
+        String userId = enrollee.userId();
+        String otherUserId = o.enrollee.userId();
+        return userId != null && otherUserId != null ? userId.compareTo(otherUserId) : nullsLast(userId, otherUserId);
+    }
+
+    /**
+     * Returns {@code s} with every char replaced by {@code toLowerCase(toUpperCase(c))}.
+     */
+    static String fold(String s) {
+        if (s == null) {
+            return null;
+        }
+        int n = s.length();
+        int i = 0;
+        // most names are folded from the first lower-case letter on
+        while (i < n && s.charAt(i) < 0x80 && (s.charAt(i) < 'A' || s.charAt(i) > 'Z')) {
+            i++;
+        }
+        if (i == n) {
+            return s;
+        }
+        char[] folded = new char[n];
+        s.getChars(0, n, folded, 0);
+        for (; i < n; i++) {
+            char c = folded[i];
+            if (c < 0x80) {
+                folded[i] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            } else {
+                folded[i] = Character.toLowerCase(Character.toUpperCase(c));
+            }
+        }
+        return new String(folded);
+    }
+
+    // first four chars, big-endian, padded with zeros; a tie falls through to the full compare
+    private static long prefix(String folded) {
+        long prefix = 0;
+        for (int i = 0; i < 4; i++) {
+            prefix = (prefix << 16) | (i < folded.length() ? folded.charAt(i) : 0);
+        }
+        return prefix;
+    }
+
+    private static int nullsLast(Object a, Object b) {
+        if (a == null) {
+            return b == null ? 0 : 1;
+        }
+        return b == null ? -1 : 0;
+    }
+
+    private static boolean hasSurrogate(String s) {
+        if (s == null) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isSurrogate(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
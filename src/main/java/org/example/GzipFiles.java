@@ -0,0 +1,85 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens input files that may be gzip compressed. A file is compressed when it starts with
+ * the gzip magic bytes, whatever its name; files of several gzip members, as written by
+ * {@link ParallelGzipChannel} or {@code pigz}, read as one stream.
+ */
+final class GzipFiles {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private GzipFiles() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Whether {@code path} starts with the gzip magic bytes {@code 1f 8b}.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isGzip(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // keep reading until both bytes are in
+            }
+            return magic.position() == 2 && magic.get(0) == (byte) 0x1f && magic.get(1) == (byte) 0x8b;
+        }
+    }
+
+    /**
+     * Opens the file's content as a channel, decompressing it if it is gzip.
+     */
+    static ReadableByteChannel openChannel(Path path) throws IOException {
+        if (!isGzip(path)) {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        }
+        return Channels.newChannel(newInputStream(path));
+    }
+
+    /**
+     * Returns the file's lines like {@link Files#lines(Path)}, decompressing it if it is
+     * gzip. Malformed UTF-8 fails the stream in both cases.
+     */
+    static Stream<String> lines(Path path) throws IOException {
+        if (!isGzip(path)) {
+            return Files.lines(path);
+        }
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(newInputStream(path), StandardCharsets.UTF_8.newDecoder()), BUFFER_BYTES);
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static InputStream newInputStream(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        try {
+            return new GZIPInputStream(in, BUFFER_BYTES);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Applies a delta file on top of the state saved by the previous run.
+ * <p>
+ * Only the companies that appear in the delta are loaded from the {@link EnrollmentSnapshot}.
+ * Delta rows are merged in with the usual rule: a row replaces the stored enrollee only if
+ * its version is higher, so on equal versions the history wins just as an earlier row
+ * would. Companies whose membership changed are saved back to the snapshot and their CSV
+ * file is rewritten; all other companies are left alone. The work done is proportional to
+ * the delta and the companies it touches, not to the whole history.
+ */
+public class IncrementalRun {
+
+    private static final Logger logger = Logger.getLogger(IncrementalRun.class.getName());
+
+    private IncrementalRun() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Merges a deduplicated delta into the snapshot and rewrites the changed companies.
+     *
+     * @param delta             the delta file's company → (userId → enrollee) map
+     * @param snapshotDirectory where the state of the previous run is kept
+     * @param outputDirectory   directory receiving one CSV file per company
+     * @return the keys of the companies that changed and were rewritten
+     * @throws IOException if the snapshot or an output file cannot be read or written
+     */
+    public static List<String> apply(Map<String, Map<String, Enrolled>> delta, Path snapshotDirectory,
+                                     Path outputDirectory) throws IOException {
+        return apply(delta, snapshotDirectory, outputDirectory, CsvFormat.PLAIN, new PipelineMetrics());
+    }
+
+    /**
+     * Like {@link #apply(Map, Path, Path)}, writing the company files in the given format and
+     * recording every rewritten one in {@code metrics}.
+     */
+    static List<String> apply(Map<String, Map<String, Enrolled>> delta, Path snapshotDirectory,
+                              Path outputDirectory, CsvFormat format, PipelineMetrics metrics) throws IOException {
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Enrolled>> entry : delta.entrySet()) {
+            String company = entry.getKey();
+            Map<String, Enrolled> state = EnrollmentSnapshot.load(snapshotDirectory, company);
+            boolean modified = false;
+            for (Enrolled e : entry.getValue().values()) {
+                Enrolled existing = state.get(e.userId());
+                if (existing == null || Enrolled.supersedes(e.version(), existing.version())) {
+                    state.put(e.userId(), e);
+                    modified = true;
+                }
+            }
+            if (!modified) {
+                continue;
+            }
+            EnrollmentSnapshot.save(snapshotDirectory, company, state);
+            CSVWriter.writeByCompany(Sorting.sortByName(Map.of(company, state)), outputDirectory, format);
+            Path file = outputDirectory.resolve(format.fileNameFor(company));
+            metrics.recordCompanyFile(company, state.size(), Files.exists(file) ? Files.size(file) : 0);
+            changed.add(company);
+        }
+        logger.info("Incremental run changed " + changed.size() + " of " + delta.size() + " companies in the delta");
+        return changed;
+    }
+}
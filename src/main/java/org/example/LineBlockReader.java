@@ -0,0 +1,68 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads a channel in blocks that always end on a line boundary, for inputs that cannot be
+ * memory-mapped, such as a decompressing stream.
+ * <p>
+ * A block holds {@code blockBytes} bytes, less the partial line at its end, which starts the
+ * next block. A line longer than a block grows the block until the line fits.
+ */
+final class LineBlockReader {
+
+    private final ReadableByteChannel channel;
+    private final int blockBytes;
+    private byte[] carry = new byte[0];
+    private boolean eof;
+
+    LineBlockReader(ReadableByteChannel channel, int blockBytes) {
+        this.channel = channel;
+        this.blockBytes = blockBytes;
+    }
+
+    /**
+     * Returns the next block of whole lines, positioned at 0, or {@code null} at the end of
+     * the input. The last block ends where the input does, terminated or not.
+     */
+    ByteBuffer next() throws IOException {
+        while (!eof) {
+            byte[] block = new byte[Math.max(blockBytes, carry.length * 2)];
+            System.arraycopy(carry, 0, block, 0, carry.length);
+            int length = carry.length;
+            while (length < block.length) {
+                int read = channel.read(ByteBuffer.wrap(block, length, block.length - length));
+                if (read < 0) {
+                    eof = true;
+                    break;
+                }
+                length += read;
+            }
+            int cut = eof ? length : lastLineEnd(block, length);
+            carry = new byte[length - cut];
+            System.arraycopy(block, cut, carry, 0, carry.length);
+            if (cut > 0) {
+                return ByteBuffer.wrap(block, 0, cut);
+            }
+            // no complete line yet
+        }
+        return null;
+    }
+
+    /**
+     * Returns the end of the last complete line in {@code block[0, length)}, or 0 if there
+     * is none. A {@code \r} at the very end is not taken as a line end, as a {@code \n}
+     * may follow it in the next read.
+     */
+    static int lastLineEnd(byte[] block, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            // scanning backwards, a \r found here is never followed by \n
+            if (block[i] == '\n' || (block[i] == '\r' && i < length - 1)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -1,33 +1,144 @@
 package org.example;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
-import java.util.Map;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
         System.out.println("=== Enrollment File Processor ===");
             try {
-                // Read file path from stdin
-                java.util.Scanner scanner = new java.util.Scanner(System.in);
-                String inputPath = scanner.nextLine().trim();
-
-                Map<String, Map<String, Enrolled>> grouped = CSVReader.readEnrollees(inputPath);
-                System.out.println("Successfully read and grouped enrollees");
-
-                Map<String, Map<String, Enrolled>> sorted = Sorting.sortByName(grouped);
-                System.out.println("Successfully sorted enrollees");
-
-                CSVWriter.writeByCompany(sorted);
-                System.out.println("Successfully wrote sorted CSV files");
-
+                switch (args.length > 0 ? args[0] : "") {
+                    case "convert" -> convert(args);
+                    case "lookup" -> lookup(args);
+                    case "serve" -> serve(args);
+                    case "submit" -> submit(args);
+                    case "stop" -> stop(args);
+                    case "partition" -> partition(args);
+                    case "merge" -> merge(args);
+                    default -> process(args);
+                }
             } catch (NoSuchFileException e) {
                 System.err.println("Error: " + e.getMessage() + " (no such file)");
             } catch (IOException e) {
                 // fallback for other IO errors
                 System.err.println("Error: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                // bad command line switch
+                System.err.println("Error: " + e.getMessage());
             } catch (Exception e) {
                 System.err.println("Unexpected error: " + e.getMessage());
             }
         }
+
+    // [--option=value ...]: reads the input path from stdin and runs the pipeline on it
+    private static void process(String[] args) throws IOException {
+        PipelineOptions options = PipelineOptions.parse(args);
+
+        // Read file path from stdin; a directory or glob reads a batch of files
+        java.util.Scanner scanner = new java.util.Scanner(System.in);
+        String inputPath = scanner.nextLine().trim();
+
+        PipelineMetrics metrics = Pipeline.run(inputPath, options);
+        if (options.metricsFile() != null) {
+            writeMetrics(metrics, options.metricsFile());
+        }
+    }
+
+    // convert CSV_DIR BINARY_DIR: turns written company CSV files into binary ones
+    private static void convert(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: convert CSV_DIR BINARY_DIR");
+        }
+        int files = BinaryCompanyFile.convertDirectory(Path.of(args[1]), Path.of(args[2]));
+        System.out.println("Converted " + files + " company files");
+    }
+
+    // lookup COMPANY USER_ID [OUTPUT_DIR]: one member's current row, from the company's index
+    private static void lookup(String[] args) throws IOException {
+        if (args.length != 3 && args.length != 4) {
+            throw new IllegalArgumentException("Usage: lookup COMPANY USER_ID [OUTPUT_DIR]");
+        }
+        Path outputDirectory = args.length == 4 ? Path.of(args[3]) : CSVWriter.DEFAULT_OUTPUT_DIRECTORY;
+        Enrolled e = CompanyIndex.lookup(outputDirectory, args[1], args[2]);
+        if (e == null) {
+            System.out.println("No member " + args[2] + " at " + args[1]);
+        } else {
+            System.out.println(String.join(",", e.userId(), e.firstName() + " " + e.lastName(),
+                    e.version().toString(), e.insuranceCompany()));
+        }
+    }
+
+    // serve SOCKET [JOBS]: stays resident and runs jobs sent to SOCKET until stopped
+    private static void serve(String[] args) throws IOException, InterruptedException {
+        if (args.length != 2 && args.length != 3) {
+            throw new IllegalArgumentException("Usage: serve SOCKET [JOBS]");
+        }
+        int jobs = args.length == 3 ? Integer.parseInt(args[2].trim()) : Runtime.getRuntime().availableProcessors();
+        PipelineServer.start(Path.of(args[1]), jobs).awaitShutdown();
+    }
+
+    // submit SOCKET INPUT OUTPUT_DIR [--option=value ...]: runs one job on a resident server
+    private static void submit(String[] args) throws IOException {
+        if (args.length < 4) {
+            throw new IllegalArgumentException("Usage: submit SOCKET INPUT OUTPUT_DIR [--option=value ...]");
+        }
+        System.out.println(PipelineServer.submit(Path.of(args[1]), args[2], Path.of(args[3]),
+                java.util.Arrays.copyOfRange(args, 4, args.length)));
+    }
+
+    // stop SOCKET: shuts a resident server down once its running jobs are done
+    private static void stop(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: stop SOCKET");
+        }
+        PipelineServer.shutdown(Path.of(args[1]));
+    }
+
+    // partition INPUT SHARD_DIR SHARDS: splits the input into shard files for separate runs
+    private static void partition(String[] args) throws IOException {
+        if (args.length != 4) {
+            throw new IllegalArgumentException("Usage: partition INPUT SHARD_DIR SHARDS");
+        }
+        int shards;
+        try {
+            shards = Integer.parseInt(args[3].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Usage: partition INPUT SHARD_DIR SHARDS");
+        }
+        List<Path> files = ShardedRun.partition(args[1], Path.of(args[2]), shards);
+        System.out.println("Wrote " + files.size() + " shard files");
+    }
+
+    // merge OUTPUT_DIR SHARD_OUTPUT_DIR... [--option=value ...]: combines the binary company
+    // files of the shard runs into CSV files written with the --compress and --index options
+    private static void merge(String[] args) throws IOException {
+        List<Path> shardOutputs = new ArrayList<>();
+        List<String> options = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                options.add(args[i]);
+            } else {
+                shardOutputs.add(Path.of(args[i]));
+            }
+        }
+        if (args.length < 3 || shardOutputs.isEmpty()) {
+            throw new IllegalArgumentException("Usage: merge OUTPUT_DIR SHARD_OUTPUT_DIR... [--option=value ...]");
+        }
+        CsvFormat format = PipelineOptions.parse(options.toArray(new String[0])).csvFormat();
+        int files = ShardedRun.merge(shardOutputs, Path.of(args[1]), format);
+        System.out.println("Merged " + files + " company files");
+    }
+
+    // "-" prints the summary to stdout
+    private static void writeMetrics(PipelineMetrics metrics, Path target) throws IOException {
+        if (target.toString().equals("-")) {
+            System.out.println(metrics.toJson());
+        } else {
+            Files.writeString(target, metrics.toJson());
+        }
+    }
     }
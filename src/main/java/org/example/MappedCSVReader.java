@@ -0,0 +1,544 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Alternative ingestion engine for {@link CSVReader#readEnrollees(String)}.
+ * <p>
+ * Instead of decoding every line into a String and splitting it again, the input file is
+ * memory-mapped and scanned as raw UTF-8 bytes. Only the fields of accepted rows are turned
+ * into Strings. The result is the same map {@link CSVReader} builds; the only difference is
+ * that malformed UTF-8 is replaced instead of failing the whole read.
+ * <p>
+ * Gzip files cannot be mapped; they are decompressed as a stream and parsed in blocks of
+ * whole lines with the same byte-level parser.
+ */
+public class MappedCSVReader {
+
+    private static final Logger logger = Logger.getLogger(MappedCSVReader.class.getName());
+
+    // largest slice of the file mapped at once; slices always end on a line boundary
+    static final long REGION_BYTES = 1L << 28;
+
+    // smallest byte range worth handing to a parallel worker
+    static final long MIN_CHUNK_BYTES = 1L << 20;
+
+    private MappedCSVReader() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Reads enrollee data from a CSV file by memory-mapping it, grouping enrollees by
+     * insurance company and keeping the highest version of every user ID.
+     *
+     * @param filePath the path to the CSV file containing enrollee data, with a header row
+     * @return a map of lower-cased insurance company → (user ID → enrollee), equal to
+     *         what {@link CSVReader#readEnrollees(String)} returns for the same file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static Map<String, Map<String, Enrolled>> readEnrollees(String filePath) throws IOException {
+        return readEnrollees(filePath, new ParseContext());
+    }
+
+    /**
+     * Reads enrollee data like {@link #readEnrollees(String)}, interning repeated values
+     * into the dictionaries of {@code context} and collecting skipped rows in its
+     * {@link RejectCollector}.
+     *
+     * @param filePath the path to the CSV file containing enrollee data, with a header row
+     * @param context  the per-read state; must not be shared with another thread
+     * @return a map of lower-cased insurance company → (user ID → enrollee)
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static Map<String, Map<String, Enrolled>> readEnrollees(String filePath, ParseContext context)
+            throws IOException {
+        return readEnrollees(filePath, context, REGION_BYTES);
+    }
+
+    static Map<String, Map<String, Enrolled>> readEnrollees(String filePath, long regionBytes) throws IOException {
+        return readEnrollees(filePath, new ParseContext(), regionBytes);
+    }
+
+    private static Map<String, Map<String, Enrolled>> readEnrollees(String filePath, ParseContext context,
+                                                                     long regionBytes) throws IOException {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(context);
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            Map<String, Map<String, Enrolled>> grouped = new HashMap<>();
+            if (GzipFiles.isGzip(Paths.get(filePath))) {
+                forEachBlock(filePath, (block, first) ->
+                        parseRegion(block, first, tokenizer, grouped, context::newCompanyMap));
+            } else {
+                for (long[] region : splitIntoChunks(channel, channel.size(), regionBytes)) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, region[0], region[1] - region[0]);
+                    parseRegion(mapped, region[0] == 0, tokenizer, grouped, context::newCompanyMap);
+                }
+            }
+            context.rejects().logSummary(logger);
+            return grouped;
+        } catch (IOException e) {
+            logger.severe("Error reading file: " + filePath + ": " + e.getMessage());
+            throw e;
+        } finally {
+            tokenizer.bind(null);
+        }
+    }
+
+    /**
+     * Reads enrollee data like {@link #readEnrollees(String)}, but parses the file on
+     * {@code parallelism} threads.
+     * <p>
+     * The file is cut into byte ranges that start and end on line boundaries. Every range is
+     * parsed and deduplicated on its own into a partial map, and the partial maps are then
+     * merged in file order with the highest-version rule, so on equal versions the row that
+     * comes first in the file still wins and the result equals the sequential one. Quotes
+     * never span lines in this format, so a line terminator is always a safe place to cut.
+     * Gzip input is decompressed on one thread and parsed in parallel by
+     * {@link OverlappedPipeline}.
+     *
+     * @param filePath    the path to the CSV file containing enrollee data, with a header row
+     * @param parallelism number of worker threads, at least 1
+     * @return a map of lower-cased insurance company → (user ID → enrollee)
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static Map<String, Map<String, Enrolled>> readEnrolleesParallel(String filePath, int parallelism)
+            throws IOException {
+        return readEnrolleesParallel(filePath, parallelism, new ParseContext(), 0);
+    }
+
+    /**
+     * Reads enrollee data like {@link #readEnrolleesParallel(String, int)}. Every chunk is
+     * interned into its own {@link ParseContext#forWorker(boolean) copy} of {@code context},
+     * so workers never share a dictionary. Rejected rows are counted in the context's
+     * collector and its sample is filled in file order, with the same line numbers a
+     * sequential read reports.
+     *
+     * @param filePath    the path to the CSV file containing enrollee data, with a header row
+     * @param parallelism number of worker threads, at least 1
+     * @param context     supplies the interning settings of the workers and collects rejects
+     * @return a map of lower-cased insurance company → (user ID → enrollee)
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static Map<String, Map<String, Enrolled>> readEnrolleesParallel(String filePath, int parallelism,
+                                                                          ParseContext context) throws IOException {
+        return readEnrolleesParallel(filePath, parallelism, context, 0);
+    }
+
+    static Map<String, Map<String, Enrolled>> readEnrolleesParallel(String filePath, int parallelism, long chunkBytes)
+            throws IOException {
+        return readEnrolleesParallel(filePath, parallelism, new ParseContext(), chunkBytes);
+    }
+
+    static Map<String, Map<String, Enrolled>> readEnrolleesParallel(String filePath, int parallelism,
+                                                                   ParseContext context, long chunkBytes)
+            throws IOException {
+        if (GzipFiles.isGzip(Paths.get(filePath))) {
+            return OverlappedPipeline.readEnrollees(filePath, parallelism, context);
+        }
+        return parseParallel(filePath, parallelism, context, chunkBytes, (region, first, chunkContext) -> {
+            Map<String, Map<String, Enrolled>> partial = new LinkedHashMap<>();
+            FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(chunkContext);
+            try {
+                parseRegion(region, first, tokenizer, partial, LinkedHashMap::new);
+            } finally {
+                tokenizer.bind(null);
+            }
+            return partial;
+        }, (partials, executor) -> mergeInFileOrder(partials, executor, context::newCompanyMap));
+    }
+
+    /**
+     * Reads enrollee data like {@link #readEnrollees(String, ParseContext)}, but into one
+     * {@link EnrollmentTable} per company instead of enrollee maps.
+     *
+     * @param filePath the path to the CSV file containing enrollee data, with a header row
+     * @param context  the per-read state; must not be shared with another thread
+     * @return a map of lower-cased insurance company → table of its enrollees
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static Map<String, EnrollmentTable> readEnrolleeTables(String filePath, ParseContext context)
+            throws IOException {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(context);
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            Map<String, EnrollmentTable> tables = new HashMap<>();
+            if (GzipFiles.isGzip(Paths.get(filePath))) {
+                forEachBlock(filePath, (block, first) ->
+                        forEachRow(block, first, tokenizer, () -> tokenizer.addTo(tables, logger)));
+            } else {
+                for (long[] region : splitIntoChunks(channel, channel.size(), REGION_BYTES)) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, region[0], region[1] - region[0]);
+                    forEachRow(mapped, region[0] == 0, tokenizer, () -> tokenizer.addTo(tables, logger));
+                }
+            }
+            context.rejects().logSummary(logger);
+            return tables;
+        } catch (IOException e) {
+            logger.severe("Error reading file: " + filePath + ": " + e.getMessage());
+            throw e;
+        } finally {
+            tokenizer.bind(null);
+        }
+    }
+
+    /**
+     * Reads enrollee data like {@link #readEnrolleesParallel(String, int, ParseContext)}, but
+     * into one {@link EnrollmentTable} per company. Chunk tables are merged in file order,
+     * so ties resolve exactly as in the sequential read. Gzip input is read on the calling
+     * thread like {@link #readEnrolleeTables(String, ParseContext)}.
+     *
+     * @param filePath    the path to the CSV file containing enrollee data, with a header row
+     * @param parallelism number of worker threads, at least 1
+     * @param context     supplies the interning settings of the workers and collects rejects
+     * @return a map of lower-cased insurance company → table of its enrollees
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static Map<String, EnrollmentTable> readEnrolleeTablesParallel(String filePath, int parallelism,
+                                                                          ParseContext context) throws IOException {
+        return readEnrolleeTablesParallel(filePath, parallelism, context, 0);
+    }
+
+    static Map<String, EnrollmentTable> readEnrolleeTablesParallel(String filePath, int parallelism,
+                                                                   ParseContext context, long chunkBytes)
+            throws IOException {
+        if (GzipFiles.isGzip(Paths.get(filePath))) {
+            return readEnrolleeTables(filePath, context);
+        }
+        return parseParallel(filePath, parallelism, context, chunkBytes, (region, first, chunkContext) -> {
+            Map<String, EnrollmentTable> partial = new LinkedHashMap<>();
+            FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(chunkContext);
+            try {
+                forEachRow(region, first, tokenizer, () -> tokenizer.addTo(partial, logger));
+            } finally {
+                tokenizer.bind(null);
+            }
+            return partial;
+        }, MappedCSVReader::mergeTablesInFileOrder);
+    }
+
+    // handles one block of a decompressed file
+    private interface BlockHandler {
+        void accept(ByteBuffer block, boolean firstBlock);
+    }
+
+    // decompresses a gzip file and hands it over in blocks of whole lines
+    private static void forEachBlock(String filePath, BlockHandler handler) throws IOException {
+        try (ReadableByteChannel channel = GzipFiles.openChannel(Paths.get(filePath))) {
+            LineBlockReader reader = new LineBlockReader(channel, OverlappedPipeline.BLOCK_BYTES);
+            boolean first = true;
+            for (ByteBuffer block = reader.next(); block != null; block = reader.next()) {
+                handler.accept(block, first);
+                first = false;
+            }
+        }
+    }
+
+    // parses one mapped chunk into a partial result
+    private interface ChunkParser<T> {
+        T parse(ByteBuffer region, boolean firstChunk, ParseContext chunkContext);
+    }
+
+    // combines the partial results, given in file order
+    private interface PartialMerger<T> {
+        T merge(List<T> partials, ExecutorService executor) throws IOException;
+    }
+
+    private static <T> T parseParallel(String filePath, int parallelism, ParseContext context, long chunkBytes,
+                                       ChunkParser<T> parser, PartialMerger<T> merger) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1 but was " + parallelism);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (chunkBytes <= 0) {
+                // a few chunks per thread so one slow range does not hold up the others
+                chunkBytes = Math.min(REGION_BYTES, Math.max(MIN_CHUNK_BYTES, size / (parallelism * 4L) + 1));
+            }
+            List<long[]> chunks = splitIntoChunks(channel, size, chunkBytes);
+
+            // the side file is written as rows are rejected, so it needs real line numbers up
+            // front; otherwise chunks count from 0 and their samples are shifted afterwards
+            boolean absoluteLines = context.rejects().writesSideFile();
+            long[] firstLines = absoluteLines ? firstLineOfChunks(channel, chunks, executor) : null;
+            List<ParseContext> chunkContexts = new ArrayList<>(chunks.size());
+            List<Future<T>> parsed = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                long[] chunk = chunks.get(i);
+                ParseContext chunkContext = context.forWorker(absoluteLines);
+                if (absoluteLines) {
+                    chunkContext.startAtLine(firstLines[i]);
+                }
+                chunkContexts.add(chunkContext);
+                parsed.add(executor.submit(() -> parser.parse(
+                        channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]), chunk[0] == 0,
+                        chunkContext)));
+            }
+            List<T> partials = new ArrayList<>(parsed.size());
+            for (Future<T> future : parsed) {
+                partials.add(await(future));
+            }
+
+            long lineOffset = 0;
+            for (ParseContext chunkContext : chunkContexts) {
+                context.rejects().mergeChunk(chunkContext.rejects(), absoluteLines ? 0 : lineOffset);
+                lineOffset += chunkContext.line();
+            }
+            context.rejects().logSummary(logger);
+            long mergeStart = System.nanoTime();
+            T merged = merger.merge(partials, executor);
+            context.mergeNanos(System.nanoTime() - mergeStart);
+            return merged;
+        } catch (IOException e) {
+            logger.severe("Error reading file: " + filePath + ": " + e.getMessage());
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // number of lines before each chunk, counted on the workers
+    private static long[] firstLineOfChunks(FileChannel channel, List<long[]> chunks, ExecutorService executor)
+            throws IOException {
+        List<Future<Long>> counted = new ArrayList<>(chunks.size());
+        for (long[] chunk : chunks) {
+            counted.add(executor.submit(() -> countLines(
+                    channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]))));
+        }
+        long[] firstLines = new long[chunks.size()];
+        long lines = 0;
+        for (int i = 0; i < firstLines.length; i++) {
+            firstLines[i] = lines;
+            lines += await(counted.get(i));
+        }
+        return firstLines;
+    }
+
+    /**
+     * Returns the number of lines in {@code region}, counted the way the readers step
+     * through them.
+     */
+    static long countLines(ByteBuffer region) {
+        int limit = region.limit();
+        int position = 0;
+        long lines = 0;
+        while (position < limit) {
+            position = nextLineStart(region, skipLine(region, position, limit), limit);
+            lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * Cuts {@code [0, size)} into consecutive ranges of roughly {@code chunkBytes} bytes,
+     * each starting on a line boundary.
+     */
+    static List<long[]> splitIntoChunks(FileChannel channel, long size, long chunkBytes) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = alignToLineStart(channel, Math.min(size, start + chunkBytes), size);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line too long to map near offset " + start);
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Merges partial results given in file order with the highest-version rule; on equal
+     * versions the earlier partial wins. Companies are merged in parallel on {@code executor},
+     * each into a new map from {@code companyMapFactory}.
+     */
+    // partial maps keep first-seen order so the merged map is built in the same order as
+    // the sequential reader builds it
+    static Map<String, Map<String, Enrolled>> mergeInFileOrder(
+            List<Map<String, Map<String, Enrolled>>> partials, ExecutorService executor,
+            Supplier<Map<String, Enrolled>> companyMapFactory) throws IOException {
+        // companies in order of first appearance
+        Map<String, List<Map<String, Enrolled>>> byCompany = new LinkedHashMap<>();
+        for (Map<String, Map<String, Enrolled>> partial : partials) {
+            partial.forEach((company, enrollees) ->
+                    byCompany.computeIfAbsent(company, k -> new ArrayList<>()).add(enrollees));
+        }
+
+        // companies are independent, so each one is merged on its own worker
+        Map<String, Future<Map<String, Enrolled>>> merged = new LinkedHashMap<>();
+        byCompany.forEach((company, pieces) -> merged.put(company, executor.submit(() -> {
+            Map<String, Enrolled> result = companyMapFactory.get();
+            for (Map<String, Enrolled> piece : pieces) {
+                piece.forEach((userId, e) -> result.merge(userId, e, Enrolled::latest));
+            }
+            return result;
+        })));
+
+        Map<String, Map<String, Enrolled>> grouped = new HashMap<>();
+        for (Map.Entry<String, Future<Map<String, Enrolled>>> entry : merged.entrySet()) {
+            grouped.put(entry.getKey(), await(entry.getValue()));
+        }
+        return grouped;
+    }
+
+    /**
+     * Merges partial tables given in file order like {@link #mergeInFileOrder}. The tables
+     * of the first partial are reused.
+     */
+    static Map<String, EnrollmentTable> mergeTablesInFileOrder(
+            List<Map<String, EnrollmentTable>> partials, ExecutorService executor) throws IOException {
+        Map<String, List<EnrollmentTable>> byCompany = new LinkedHashMap<>();
+        for (Map<String, EnrollmentTable> partial : partials) {
+            partial.forEach((company, table) ->
+                    byCompany.computeIfAbsent(company, k -> new ArrayList<>()).add(table));
+        }
+
+        // the earliest chunk's table becomes the result, later ones are added to it
+        Map<String, Future<EnrollmentTable>> merged = new LinkedHashMap<>();
+        byCompany.forEach((company, pieces) -> merged.put(company, executor.submit(() -> {
+            EnrollmentTable result = pieces.get(0);
+            for (int i = 1; i < pieces.size(); i++) {
+                result.addAll(pieces.get(i));
+            }
+            return result;
+        })));
+
+        Map<String, EnrollmentTable> tables = new HashMap<>();
+        for (Map.Entry<String, Future<EnrollmentTable>> entry : merged.entrySet()) {
+            tables.put(entry.getKey(), await(entry.getValue()));
+        }
+        return tables;
+    }
+
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Parses every line of {@code region} into {@code grouped} with the given tokenizer, keeping the highest version
+     * per user ID; on equal versions the row seen first wins.
+     *
+     * @param skipHeader        whether the first line of the region is the file's header row
+     * @param companyMapFactory creates the map of a company the region adds first
+     */
+    static void parseRegion(ByteBuffer region, boolean skipHeader, FieldTokenizer tokenizer,
+                            Map<String, Map<String, Enrolled>> grouped,
+                            Supplier<Map<String, Enrolled>> companyMapFactory) {
+        forEachRow(region, skipHeader, tokenizer, () -> {
+            Enrolled e = tokenizer.toEnrollee(logger);
+            if (e != null) {
+                grouped.computeIfAbsent(tokenizer.companyKey(e.insuranceCompany()), k -> companyMapFactory.get())
+                        .merge(e.userId(), e, Enrolled::latest);
+            }
+        });
+    }
+
+    // tokenizes every line of the region and calls onRow for each
+    private static void forEachRow(ByteBuffer region, boolean skipHeader, FieldTokenizer tokenizer, Runnable onRow) {
+        int limit = region.limit();
+        int position = 0;
+        if (skipHeader && limit > 0) {
+            position = nextLineStart(region, skipLine(region, 0, limit), limit);
+            tokenizer.skipLine();
+        }
+        while (position < limit) {
+            int end = tokenizer.tokenize(region, position, limit);
+            onRow.run();
+            position = nextLineStart(region, end, limit);
+        }
+    }
+
+    /**
+     * Returns the index of the line terminator of the line starting at {@code position},
+     * or {@code limit} if the line is unterminated.
+     */
+    static int skipLine(ByteBuffer buffer, int position, int limit) {
+        int i = position;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index of the first byte of the line following the terminator at
+     * {@code terminator}, treating {@code \r\n} as a single terminator.
+     */
+    static int nextLineStart(ByteBuffer buffer, int terminator, int limit) {
+        if (terminator >= limit) {
+            return limit;
+        }
+        if (buffer.get(terminator) == '\r' && terminator + 1 < limit && buffer.get(terminator + 1) == '\n') {
+            return terminator + 2;
+        }
+        return terminator + 1;
+    }
+
+    /**
+     * Returns the first offset at or after {@code offset} where a line starts, or
+     * {@code size} if there is none. {@code \r\n} counts as one terminator, so a boundary
+     * never falls between the two bytes.
+     */
+    static long alignToLineStart(FileChannel channel, long offset, long size) throws IOException {
+        if (offset <= 0 || offset >= size) {
+            return Math.max(0, Math.min(offset, size));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        // look one byte back so an offset right after a terminator stays where it is
+        long position = offset - 1;
+        boolean afterCarriageReturn = false;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (afterCarriageReturn) {
+                    return b == '\n' ? position + i + 1 : position + i;
+                }
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                if (b == '\r') {
+                    afterCarriageReturn = true;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
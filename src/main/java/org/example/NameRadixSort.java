@@ -0,0 +1,170 @@
+package org.example;
+
+import java.util.Collection;
+
+/**
+ * Multikey quicksort of enrollees in {@link Sorting#BY_NAME} order, for ASCII data.
+ * <p>
+ * Every enrollee gets a byte key: the case-folded last name, the case-folded first name and
+ * the user ID, each followed by a terminator. Chars are stored as {@code c + 1} so the
+ * terminator {@code 0} sorts below every char, which puts shorter strings first like
+ * {@link String#compareToIgnoreCase} and {@link String#compareTo} do. A {@code null} value is
+ * the single byte {@code 0xFF}, which sorts above every ASCII char, so missing values still
+ * come last. The keys are then sorted with three-way radix quicksort (Bentley and
+ * Sedgewick): a partition on the byte at the current depth, recursing one byte deeper only
+ * into the equal part. A shared surname prefix is therefore examined once per partition
+ * instead of once per comparison, and members sharing a full name need no comparator to
+ * be ordered by user ID.
+ */
+final class NameRadixSort {
+
+    // below this size a partition is finished with insertion sort
+    private static final int INSERTION_CUTOFF = 12;
+
+    private static final byte TERMINATOR = 0;
+    private static final byte NULL_VALUE = (byte) 0xFF;
+
+    private NameRadixSort() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns {@code enrollees} in {@link Sorting#BY_NAME} order, or {@code null} if a name
+     * or user ID contains a non-ASCII char and the comparator has to be used instead.
+     */
+    static Enrolled[] sort(Collection<Enrolled> enrollees) {
+        Enrolled[] rows = enrollees.toArray(new Enrolled[0]);
+        byte[][] keys = new byte[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            keys[i] = key(rows[i]);
+            if (keys[i] == null) {
+                return null;
+            }
+        }
+        sort(keys, rows, 0, rows.length, 0);
+        return rows;
+    }
+
+    /**
+     * Returns the sort key of {@code e}, or {@code null} if it is not all ASCII.
+     */
+    static byte[] key(Enrolled e) {
+        String last = e.lastName();
+        String first = e.firstName();
+        String userId = e.userId();
+        byte[] key = new byte[encodedLength(last) + encodedLength(first) + encodedLength(userId)];
+        int at = encode(last, true, key, 0);
+        if (at >= 0) {
+            at = encode(first, true, key, at);
+        }
+        if (at >= 0) {
+            at = encode(userId, false, key, at);
+        }
+        return at < 0 ? null : key;
+    }
+
+    private static int encodedLength(String value) {
+        return (value == null ? 1 : value.length()) + 1;
+    }
+
+    // writes value and its terminator at key[at]; returns the next position, or -1 for non-ASCII
+    private static int encode(String value, boolean fold, byte[] key, int at) {
+        if (value == null) {
+            key[at] = NULL_VALUE;
+            key[at + 1] = TERMINATOR;
+            return at + 2;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return -1;
+            }
+            // toLowerCase(toUpperCase(c)) is plain lower-casing for ASCII
+            if (fold && c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            key[at + i] = (byte) (c + 1);
+        }
+        key[at + value.length()] = TERMINATOR;
+        return at + value.length() + 1;
+    }
+
+    // sorts [lo, hi) whose keys agree on their first d bytes
+    private static void sort(byte[][] keys, Enrolled[] rows, int lo, int hi, int d) {
+        while (hi - lo > INSERTION_CUTOFF) {
+            swap(keys, rows, lo, medianOfThree(keys, lo, lo + (hi - lo) / 2, hi - 1, d));
+            int pivot = at(keys[lo], d);
+            int lt = lo;
+            int gt = hi - 1;
+            int i = lo + 1;
+            while (i <= gt) {
+                int b = at(keys[i], d);
+                if (b < pivot) {
+                    swap(keys, rows, lt++, i++);
+                } else if (b > pivot) {
+                    swap(keys, rows, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            // [lo, lt) < pivot, [lt, gt] == pivot, (gt, hi) > pivot
+            sort(keys, rows, lo, lt, d);
+            // past the end the keys are equal, which needs a repeated user ID
+            if (pivot >= 0) {
+                sort(keys, rows, lt, gt + 1, d + 1);
+            }
+            lo = gt + 1;
+        }
+        insertionSort(keys, rows, lo, hi, d);
+    }
+
+    private static void insertionSort(byte[][] keys, Enrolled[] rows, int lo, int hi, int d) {
+        for (int i = lo + 1; i < hi; i++) {
+            byte[] key = keys[i];
+            Enrolled row = rows[i];
+            int j = i - 1;
+            while (j >= lo && compare(keys[j], key, d) > 0) {
+                keys[j + 1] = keys[j];
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            rows[j + 1] = row;
+        }
+    }
+
+    private static int compare(byte[] a, byte[] b, int d) {
+        int n = Math.min(a.length, b.length);
+        for (int i = d; i < n; i++) {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static int medianOfThree(byte[][] keys, int i, int j, int k, int d) {
+        int a = at(keys[i], d);
+        int b = at(keys[j], d);
+        int c = at(keys[k], d);
+        if (a < b) {
+            return b < c ? j : a < c ? k : i;
+        }
+        return a < c ? i : b < c ? k : j;
+    }
+
+    // byte at depth d, or -1 past the end of the key
+    private static int at(byte[] key, int d) {
+        return d < key.length ? key[d] & 0xFF : -1;
+    }
+
+    private static void swap(byte[][] keys, Enrolled[] rows, int i, int j) {
+        byte[] key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        Enrolled row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+}
@@ -0,0 +1,740 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the deduplicated enrollees of all companies outside the Java heap.
+ * <p>
+ * Rows live in direct buffers allocated in pages: fixed-size row records holding the
+ * offsets of a row's text, its version and the ids of its company and company spelling,
+ * the UTF-16 text of the user IDs and names, and an open-addressing hash on (company,
+ * user ID) that deduplicates rows as they are added. The heap only holds the page
+ * buffers, the few distinct company names and, once sorted, one order buffer per
+ * company, so the garbage collector sees a few hundred objects whatever the number of
+ * members.
+ * <p>
+ * Rows are deduplicated with the rule the readers use, {@link Enrolled#supersedes}. A
+ * replaced row's old text stays in its page until the store is closed.
+ * {@link #sortByName(int)} orders every company like {@link Sorting#BY_NAME} and
+ * {@link #writeByCompany(Path, CsvFormat)} writes the files {@link CSVWriter} writes for
+ * the same members, without creating any {@link Enrolled}.
+ * <p>
+ * Every page starts at a few KiB and doubles until it reaches the page size, so small
+ * inputs reserve little native memory. The memory counts against
+ * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size; running out of
+ * it fails with an {@link IOException}. Full-size pages the store no longer needs, such as
+ * those of a resized index, are kept and reused for up to {@link #SPARE_PAGES} pages; any
+ * other buffer, and every page once the store is closed, is released to the garbage
+ * collector, which the JDK runs before it reports direct memory as exhausted.
+ * Not thread safe, except that the companies are sorted on several threads.
+ */
+final class OffHeapEnrollmentStore implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(OffHeapEnrollmentStore.class.getName());
+
+    static final int DEFAULT_PAGE_BYTES = 1 << 26;
+    // released full-size pages kept for reuse
+    static final int SPARE_PAGES = 4;
+    // size a page starts at before it doubles
+    private static final int FIRST_PAGE_BYTES = 1 << 12;
+    private static final long FIRST_INDEX_SLOTS = 64;
+
+    // row record layout
+    private static final int ROW_BYTES = 32;
+    // page << 32 | byte offset of the user ID; first and last name follow it
+    private static final int TEXT = 0;
+    private static final int USER_ID_LENGTH = 8;
+    // -1 for a null name
+    private static final int FIRST_NAME_LENGTH = 12;
+    private static final int LAST_NAME_LENGTH = 16;
+    private static final int VERSION = 20;
+    private static final int COMPANY = 24;
+    private static final int SPELLING = 28;
+
+    private final int pageBytes;
+    private final int rowsPerPage;
+    private final int slotsPerPage;
+
+    private final List<ByteBuffer> rowPages = new ArrayList<>();
+    private final List<ByteBuffer> textPages = new ArrayList<>();
+    private int textPosition;
+    private int size;
+
+    // open-addressing index on (company, user ID): row + 1, 0 marks a free slot; created
+    // by the first add
+    private ByteBuffer[] indexPages;
+    private long indexCapacity;
+
+    // lower-cased company keys in first-seen order, and the spellings of their rows
+    private final List<String> companies = new ArrayList<>();
+    private final Map<String, Integer> companyIds = new HashMap<>();
+    private int[] companySizes = new int[8];
+    private final List<String> spellings = new ArrayList<>();
+    private final Map<String, Integer> spellingIds = new HashMap<>();
+
+    // released full-size pages, reused before new native memory is reserved
+    private final ArrayDeque<ByteBuffer> spare = new ArrayDeque<>();
+
+    // row numbers of every company in name order, set by sortByName
+    private ByteBuffer[] orders;
+    private boolean closed;
+
+    // user ID of an added row, copied here before it is compared
+    private char[] scratch = new char[64];
+
+    OffHeapEnrollmentStore() {
+        this(DEFAULT_PAGE_BYTES);
+    }
+
+    /**
+     * @param pageBytes size every native page grows to; a power of two of at least 1 KiB,
+     *                  and larger than the text of any single row
+     */
+    OffHeapEnrollmentStore(int pageBytes) {
+        if (pageBytes < 1024 || Integer.bitCount(pageBytes) != 1) {
+            throw new IllegalArgumentException("page size must be a power of two of at least 1024 but was "
+                    + pageBytes);
+        }
+        this.pageBytes = pageBytes;
+        this.rowsPerPage = pageBytes / ROW_BYTES;
+        this.slotsPerPage = pageBytes / Integer.BYTES;
+    }
+
+    /**
+     * Adds an enrollee of a company unless the company already holds a row with the same
+     * user ID and an equal or higher version.
+     *
+     * @param company the lower-cased company key
+     * @return {@code true} if the store changed
+     * @throws NullPointerException if the user ID or the version is {@code null}
+     * @throws IOException          if the native memory for the row cannot be reserved
+     */
+    boolean add(String company, Enrolled e) throws IOException {
+        checkOpen();
+        String userId = Objects.requireNonNull(e.userId(), "userId");
+        int version = Objects.requireNonNull(e.version(), "version");
+        if (indexPages == null) {
+            resizeIndex(FIRST_INDEX_SLOTS);
+        }
+        int companyId = companyId(company);
+        long mask = indexCapacity - 1;
+        long slot = spread(userId.hashCode() * 31 + companyId) & mask;
+        for (int entry = slot(slot); entry != 0; slot = (slot + 1) & mask, entry = slot(slot)) {
+            int row = entry - 1;
+            if (rowInt(row, COMPANY) == companyId && userIdEquals(row, userId)) {
+                if (!Enrolled.supersedes(version, rowInt(row, VERSION))) {
+                    return false;
+                }
+                store(row, e, companyId);
+                return true;
+            }
+        }
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Off-heap store holds " + size + " rows");
+        }
+        int row = size;
+        int page = row / rowsPerPage;
+        if (page == rowPages.size()) {
+            rowPages.add(newPage());
+        } else if (rowOffset(row) + ROW_BYTES > rowPages.get(page).capacity()) {
+            rowPages.set(page, grow(rowPages.get(page), rowOffset(row) + ROW_BYTES));
+        }
+        store(row, e, companyId);
+        size++;
+        setSlot(slot, row + 1);
+        companySizes[companyId]++;
+        freeOrders();
+        // keep the index at most half full
+        if (size * 2L > indexCapacity) {
+            resizeIndex(indexCapacity * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Reads every row of {@code filePath}, plain or gzip compressed, into this store.
+     * Skipped rows are reported to {@code context} like in {@link CSVReader}.
+     *
+     * @param filePath the CSV file, with a header row
+     * @param context  the per-read state; must not be shared with another thread
+     * @throws IOException if the file cannot be read
+     */
+    void addFile(String filePath, ParseContext context) throws IOException {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(context);
+        context.startAtLine(1);
+        try (Stream<String> lines = GzipFiles.lines(Paths.get(filePath))) {
+            // skip header
+            Iterator<String> rows = lines.skip(1).iterator();
+            while (rows.hasNext()) {
+                tokenizer.tokenize(rows.next());
+                Enrolled e = tokenizer.toEnrollee(logger);
+                if (e != null) {
+                    add(context.companyKey(e.insuranceCompany()), e);
+                }
+            }
+            context.rejects().logSummary(logger);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            tokenizer.bind(null);
+        }
+    }
+
+    /**
+     * Returns the number of rows of all companies.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns company → number of members, in the order the companies were first added.
+     */
+    Map<String, Integer> companySizes() {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (int company = 0; company < companies.size(); company++) {
+            sizes.put(companies.get(company), companySizes[company]);
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the members of {@code company} as enrollees, in name order once sorted and
+     * in no particular order before. Meant for tests and small companies.
+     */
+    List<Enrolled> get(String company) {
+        checkOpen();
+        Integer companyId = companyIds.get(company);
+        List<Enrolled> members = new ArrayList<>();
+        if (companyId == null) {
+            return members;
+        }
+        if (orders != null) {
+            for (int i = 0; i < companySizes[companyId]; i++) {
+                members.add(get(orders[companyId].getInt(i * Integer.BYTES)));
+            }
+            return members;
+        }
+        for (int row = 0; row < size; row++) {
+            if (rowInt(row, COMPANY) == companyId) {
+                members.add(get(row));
+            }
+        }
+        return members;
+    }
+
+    private Enrolled get(int row) {
+        ByteBuffer page = textPage(row);
+        int at = textOffset(row);
+        int userIdLength = rowInt(row, USER_ID_LENGTH);
+        int firstLength = rowInt(row, FIRST_NAME_LENGTH);
+        int lastLength = rowInt(row, LAST_NAME_LENGTH);
+        String userId = string(page, at, userIdLength);
+        at += userIdLength * Character.BYTES;
+        String first = firstLength < 0 ? null : string(page, at, firstLength);
+        at += Math.max(firstLength, 0) * Character.BYTES;
+        String last = lastLength < 0 ? null : string(page, at, lastLength);
+        return new Enrolled(userId, first, last, rowInt(row, VERSION), spellings.get(rowInt(row, SPELLING)));
+    }
+
+    /**
+     * Orders the members of every company by last name, then first name, ignoring case,
+     * then user ID, which is the order of {@link Sorting#BY_NAME}. Up to
+     * {@code parallelism} companies are sorted at the same time; the rows stay where they
+     * are and only per-company order buffers are written.
+     *
+     * @param parallelism maximum number of companies sorted at once, at least 1
+     * @throws IOException if the native memory for the order buffers cannot be reserved
+     */
+    void sortByName(int parallelism) throws IOException {
+        checkOpen();
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1 but was " + parallelism);
+        }
+        freeOrders();
+        ByteBuffer[] sorted = new ByteBuffer[companies.size()];
+        ByteBuffer[] buffers = new ByteBuffer[companies.size()];
+        try {
+            for (int company = 0; company < sorted.length; company++) {
+                sorted[company] = allocate(Math.max(1, companySizes[company]) * Integer.BYTES);
+                buffers[company] = allocate(Math.max(1, companySizes[company]) * Integer.BYTES);
+            }
+            int[] filled = new int[companies.size()];
+            for (int row = 0; row < size; row++) {
+                int company = rowInt(row, COMPANY);
+                sorted[company].putInt(filled[company]++ * Integer.BYTES, row);
+            }
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                for (int company = 0; company < sorted.length; company++) {
+                    ByteBuffer order = sorted[company];
+                    ByteBuffer buffer = buffers[company];
+                    int n = companySizes[company];
+                    tasks.add(pool.submit(() -> mergeSort(order, buffer, 0, n)));
+                }
+                tasks.forEach(ForkJoinTask::join);
+            } finally {
+                pool.shutdown();
+            }
+            orders = sorted;
+        } finally {
+            for (ByteBuffer buffer : buffers) {
+                free(buffer);
+            }
+            if (orders != sorted) {
+                for (ByteBuffer order : sorted) {
+                    free(order);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes one CSV file per company in name order, in the given format, straight from
+     * native memory. Companies whose names sanitise to the same file are written in the
+     * order they were first added, so the last one wins. A company that fails does not stop
+     * the others; the failures are thrown together at the end.
+     *
+     * @throws IllegalStateException if the store has not been sorted since the last add
+     * @throws CompanyWriteException if one or more company files could not be written
+     * @throws IOException           if the output directory cannot be created
+     */
+    void writeByCompany(Path outputDirectory, CsvFormat format) throws IOException {
+        checkOpen();
+        if (orders == null) {
+            throw new IllegalStateException("sortByName must be called before writing");
+        }
+        CSVWriter.createOutputDirectory(outputDirectory);
+        // collected like CSVWriter.writeByCompanyConcurrent collects them
+        Map<String, IOException> failures = new LinkedHashMap<>();
+        char[] text = new char[64];
+        for (int company = 0; company < companies.size(); company++) {
+            Path filePath = outputDirectory.resolve(format.fileNameFor(companies.get(company)));
+            try (CompanyFileWriter writer = new CompanyFileWriter(filePath, format.indexed())) {
+                for (int i = 0; i < companySizes[company]; i++) {
+                    int row = orders[company].getInt(i * Integer.BYTES);
+                    int userIdLength = rowInt(row, USER_ID_LENGTH);
+                    int firstLength = rowInt(row, FIRST_NAME_LENGTH);
+                    int lastLength = rowInt(row, LAST_NAME_LENGTH);
+                    int firstFrom = userIdLength;
+                    int lastFrom = firstFrom + Math.max(firstLength, 0);
+                    int end = lastFrom + Math.max(lastLength, 0);
+                    if (text.length < end) {
+                        text = new char[Math.max(end, text.length * 2)];
+                    }
+                    copyChars(textPage(row), textOffset(row), text, 0, end);
+                    writer.write(text, 0, firstFrom, lastFrom, end, firstLength < 0, lastLength < 0,
+                            rowInt(row, VERSION), spellings.get(rowInt(row, SPELLING)));
+                }
+                writer.finish();
+            } catch (IOException e) {
+                failures.put(companies.get(company), e);
+                continue;
+            }
+            logger.info("Wrote file: " + filePath.toAbsolutePath());
+        }
+        if (!failures.isEmpty()) {
+            throw new CompanyWriteException(failures);
+        }
+    }
+
+    /**
+     * Returns the native memory the store has reserved, in bytes, spare pages included.
+     */
+    long nativeBytes() {
+        long bytes = (long) spare.size() * pageBytes;
+        for (ByteBuffer page : rowPages) {
+            bytes += page.capacity();
+        }
+        for (ByteBuffer page : textPages) {
+            bytes += page.capacity();
+        }
+        if (indexPages != null) {
+            for (ByteBuffer page : indexPages) {
+                bytes += page.capacity();
+            }
+        }
+        if (orders != null) {
+            for (ByteBuffer order : orders) {
+                bytes += order.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Releases every page to the garbage collector. The store cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        rowPages.clear();
+        textPages.clear();
+        indexPages = null;
+        orders = null;
+        spare.clear();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Off-heap store is closed");
+        }
+    }
+
+    private int companyId(String company) {
+        Integer id = companyIds.get(company);
+        if (id == null) {
+            id = companies.size();
+            companies.add(company);
+            companyIds.put(company, id);
+            if (id == companySizes.length) {
+                companySizes = Arrays.copyOf(companySizes, id * 2);
+            }
+        }
+        return id;
+    }
+
+    private int spellingId(String spelling) {
+        Integer id = spellingIds.get(spelling);
+        if (id == null) {
+            id = spellings.size();
+            spellings.add(spelling);
+            spellingIds.put(spelling, id);
+        }
+        return id;
+    }
+
+    // appends the row's text and points the row record at it
+    private void store(int row, Enrolled e, int companyId) throws IOException {
+        String userId = e.userId();
+        String first = e.firstName();
+        String last = e.lastName();
+        int chars = userId.length() + (first == null ? 0 : first.length()) + (last == null ? 0 : last.length());
+        long bytes = (long) chars * Character.BYTES;
+        if (bytes > pageBytes) {
+            throw new IllegalArgumentException("Row of " + bytes + " bytes does not fit a " + pageBytes + " byte page");
+        }
+        if (textPages.isEmpty() || textPosition + bytes > pageBytes) {
+            textPages.add(newPage());
+            textPosition = 0;
+        }
+        int page = textPages.size() - 1;
+        ByteBuffer text = textPages.get(page);
+        if (textPosition + bytes > text.capacity()) {
+            text = grow(text, (int) (textPosition + bytes));
+            textPages.set(page, text);
+        }
+        long address = (long) page << 32 | textPosition;
+        textPosition = putChars(text, textPosition, userId);
+        textPosition = putChars(text, textPosition, first);
+        textPosition = putChars(text, textPosition, last);
+
+        ByteBuffer rows = rowPage(row);
+        int at = rowOffset(row);
+        rows.putLong(at + TEXT, address);
+        rows.putInt(at + USER_ID_LENGTH, userId.length());
+        rows.putInt(at + FIRST_NAME_LENGTH, first == null ? -1 : first.length());
+        rows.putInt(at + LAST_NAME_LENGTH, last == null ? -1 : last.length());
+        rows.putInt(at + VERSION, e.version());
+        rows.putInt(at + COMPANY, companyId);
+        rows.putInt(at + SPELLING, spellingId(e.insuranceCompany()));
+    }
+
+    private static int putChars(ByteBuffer page, int at, String s) {
+        if (s == null) {
+            return at;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            page.putChar(at, s.charAt(i));
+            at += Character.BYTES;
+        }
+        return at;
+    }
+
+    private static void copyChars(ByteBuffer page, int at, char[] into, int from, int to) {
+        for (int i = from; i < to; i++) {
+            into[i] = page.getChar(at);
+            at += Character.BYTES;
+        }
+    }
+
+    private static String string(ByteBuffer page, int at, int length) {
+        char[] chars = new char[length];
+        copyChars(page, at, chars, 0, length);
+        return new String(chars);
+    }
+
+    private boolean userIdEquals(int row, String userId) {
+        if (rowInt(row, USER_ID_LENGTH) != userId.length()) {
+            return false;
+        }
+        if (scratch.length < userId.length()) {
+            scratch = new char[Math.max(userId.length(), scratch.length * 2)];
+        }
+        copyChars(textPage(row), textOffset(row), scratch, 0, userId.length());
+        for (int i = 0; i < userId.length(); i++) {
+            if (scratch[i] != userId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer rowPage(int row) {
+        return rowPages.get(row / rowsPerPage);
+    }
+
+    private int rowOffset(int row) {
+        return (row % rowsPerPage) * ROW_BYTES;
+    }
+
+    private int rowInt(int row, int field) {
+        return rowPage(row).getInt(rowOffset(row) + field);
+    }
+
+    private ByteBuffer textPage(int row) {
+        return textPages.get((int) (rowPage(row).getLong(rowOffset(row) + TEXT) >>> 32));
+    }
+
+    private int textOffset(int row) {
+        return (int) rowPage(row).getLong(rowOffset(row) + TEXT);
+    }
+
+    private int slot(long slot) {
+        return indexPages[(int) (slot / slotsPerPage)].getInt((int) (slot % slotsPerPage) * Integer.BYTES);
+    }
+
+    private void setSlot(long slot, int value) {
+        indexPages[(int) (slot / slotsPerPage)].putInt((int) (slot % slotsPerPage) * Integer.BYTES, value);
+    }
+
+    // the rows are hashed again, so the old index is freed first
+    private void resizeIndex(long capacity) throws IOException {
+        freeIndex();
+        int pages = (int) Math.max(1, capacity / slotsPerPage);
+        int bytes = (int) Math.min(capacity, slotsPerPage) * Integer.BYTES;
+        indexPages = new ByteBuffer[pages];
+        for (int i = 0; i < pages; i++) {
+            indexPages[i] = allocate(bytes);
+        }
+        indexCapacity = capacity;
+        long mask = capacity - 1;
+        for (int row = 0; row < size; row++) {
+            long slot = spread(userIdHash(row) * 31 + rowInt(row, COMPANY)) & mask;
+            while (slot(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            setSlot(slot, row + 1);
+        }
+    }
+
+    private void freeIndex() {
+        if (indexPages != null) {
+            for (ByteBuffer page : indexPages) {
+                free(page);
+            }
+            indexPages = null;
+        }
+    }
+
+    private void freeOrders() {
+        if (orders != null) {
+            for (ByteBuffer order : orders) {
+                free(order);
+            }
+            orders = null;
+        }
+    }
+
+    // a copy of the page with room for at least `needed` bytes, doubling up to the page size
+    private ByteBuffer grow(ByteBuffer page, int needed) throws IOException {
+        int capacity = page.capacity();
+        while (capacity < needed) {
+            capacity = Math.min(pageBytes, capacity * 2);
+        }
+        ByteBuffer grown = allocate(capacity);
+        grown.put(0, page, 0, page.capacity());
+        free(page);
+        return grown;
+    }
+
+    // a row or text page; it starts small and grows unless a spare full page is at hand
+    private ByteBuffer newPage() throws IOException {
+        return allocate(spare.isEmpty() ? Math.min(FIRST_PAGE_BYTES, pageBytes) : pageBytes);
+    }
+
+    // a zeroed buffer of `bytes`, a spare page if a full one is asked for
+    private ByteBuffer allocate(int bytes) throws IOException {
+        if (bytes == pageBytes && !spare.isEmpty()) {
+            ByteBuffer page = spare.pop();
+            // the index relies on free slots being 0, like in a new buffer
+            for (int i = 0; i < pageBytes; i += Long.BYTES) {
+                page.putLong(i, 0L);
+            }
+            return page;
+        }
+        try {
+            return ByteBuffer.allocateDirect(bytes);
+        } catch (OutOfMemoryError e) {
+            throw new IOException("Cannot reserve " + bytes + " bytes of native memory for the off-heap store;"
+                    + " raise -XX:MaxDirectMemorySize or use --store=objects", e);
+        }
+    }
+
+    // keeps a full-size page the store no longer uses while there is room; the collector
+    // frees anything else
+    private void free(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == pageBytes && spare.size() < SPARE_PAGES) {
+            spare.push(buffer);
+        }
+    }
+
+    // same value as String.hashCode of the user ID
+    private int userIdHash(int row) {
+        ByteBuffer page = textPage(row);
+        int at = textOffset(row);
+        int hash = 0;
+        for (int i = rowInt(row, USER_ID_LENGTH); i > 0; i--) {
+            hash = 31 * hash + page.getChar(at);
+            at += Character.BYTES;
+        }
+        return hash;
+    }
+
+    private static long spread(int hash) {
+        return (hash ^ (hash >>> 16)) & 0xFFFFFFFFL;
+    }
+
+    // stable top-down merge sort of the row numbers in order[from, to)
+    private void mergeSort(ByteBuffer order, ByteBuffer buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int row = order.getInt(i * Integer.BYTES);
+                int j = i - 1;
+                while (j >= from && compareByName(order.getInt(j * Integer.BYTES), row) > 0) {
+                    order.putInt((j + 1) * Integer.BYTES, order.getInt(j * Integer.BYTES));
+                    j--;
+                }
+                order.putInt((j + 1) * Integer.BYTES, row);
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid);
+        mergeSort(order, buffer, mid, to);
+        if (compareByName(order.getInt((mid - 1) * Integer.BYTES), order.getInt(mid * Integer.BYTES)) <= 0) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            buffer.putInt(i * Integer.BYTES, order.getInt(i * Integer.BYTES));
+        }
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compareByName(buffer.getInt(left * Integer.BYTES),
+                    buffer.getInt(right * Integer.BYTES)) <= 0)) {
+                order.putInt(i * Integer.BYTES, buffer.getInt(left++ * Integer.BYTES));
+            } else {
+                order.putInt(i * Integer.BYTES, buffer.getInt(right++ * Integer.BYTES));
+            }
+        }
+    }
+
+    /**
+     * Compares two rows like {@link Sorting#BY_NAME} compares their {@link Enrolled} forms.
+     */
+    int compareByName(int a, int b) {
+        ByteBuffer pageA = textPage(a);
+        ByteBuffer pageB = textPage(b);
+        int userIdA = rowInt(a, USER_ID_LENGTH);
+        int userIdB = rowInt(b, USER_ID_LENGTH);
+        int firstA = rowInt(a, FIRST_NAME_LENGTH);
+        int firstB = rowInt(b, FIRST_NAME_LENGTH);
+        int firstAtA = textOffset(a) + userIdA * Character.BYTES;
+        int firstAtB = textOffset(b) + userIdB * Character.BYTES;
+        int lastAtA = firstAtA + Math.max(firstA, 0) * Character.BYTES;
+        int lastAtB = firstAtB + Math.max(firstB, 0) * Character.BYTES;
+        int c = compareName(pageA, lastAtA, rowInt(a, LAST_NAME_LENGTH), pageB, lastAtB, rowInt(b, LAST_NAME_LENGTH));
+        if (c != 0) {
+            return c;
+        }
+        c = compareName(pageA, firstAtA, firstA, pageB, firstAtB, firstB);
+        if (c != 0) {
+            return c;
+        }
+        return compare(pageA, textOffset(a), userIdA, pageB, textOffset(b), userIdB);
+    }
+
+    // nulls, stored as length -1, last; then compareToIgnoreCase
+    private static int compareName(ByteBuffer pageA, int atA, int lengthA, ByteBuffer pageB, int atB, int lengthB) {
+        if (lengthA < 0 || lengthB < 0) {
+            return (lengthA < 0) == (lengthB < 0) ? 0 : lengthA < 0 ? 1 : -1;
+        }
+        return compareIgnoreCase(pageA, atA, lengthA, pageB, atB, lengthB);
+    }
+
+    // String.compareTo on two text ranges
+    private static int compare(ByteBuffer pageA, int atA, int lengthA, ByteBuffer pageB, int atB, int lengthB) {
+        int n = Math.min(lengthA, lengthB);
+        for (int i = 0; i < n; i++) {
+            char ca = pageA.getChar(atA + i * Character.BYTES);
+            char cb = pageB.getChar(atB + i * Character.BYTES);
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    // String.compareToIgnoreCase on two text ranges; the JDK compares surrogate pairs as
+    // code points, so ranges that differ at a surrogate are compared as Strings
+    private static int compareIgnoreCase(ByteBuffer pageA, int atA, int lengthA, ByteBuffer pageB, int atB,
+                                         int lengthB) {
+        int n = Math.min(lengthA, lengthB);
+        for (int i = 0; i < n; i++) {
+            char ca = pageA.getChar(atA + i * Character.BYTES);
+            char cb = pageB.getChar(atB + i * Character.BYTES);
+            if (ca == cb) {
+                continue;
+            }
+            if (Character.isSurrogate(ca) || Character.isSurrogate(cb)) {
+                return string(pageA, atA, lengthA).compareToIgnoreCase(string(pageB, atB, lengthB));
+            }
+            ca = Character.toUpperCase(ca);
+            cb = Character.toUpperCase(cb);
+            if (ca != cb) {
+                ca = Character.toLowerCase(ca);
+                cb = Character.toLowerCase(cb);
+                if (ca != cb) {
+                    return ca - cb;
+                }
+            }
+        }
+        return lengthA - lengthB;
+    }
+}
@@ -0,0 +1,275 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.logging.Logger;
+
+/**
+ * Runs the stages of the pipeline at the same time instead of one after another.
+ * <p>
+ * A reader thread cuts the file into blocks of whole lines and hands them to a pool of
+ * parser workers through a bounded queue. The workers parse and deduplicate each block on
+ * its own, and a single aggregator merges the blocks back into the company map in file
+ * order, so on equal versions the row that comes first still wins. At most
+ * {@code 2 * parallelism} blocks are in flight between reading and merging; once that many
+ * are waiting the reader blocks, so a slow stage holds back the faster ones instead of
+ * filling the heap.
+ * <p>
+ * Once the input is merged, every company is sorted and written as its own task, so some
+ * files are already being written while other companies are still sorting.
+ * <p>
+ * The first failure of any stage stops all the others and is rethrown to the caller.
+ */
+public class OverlappedPipeline {
+
+    private static final Logger logger = Logger.getLogger(OverlappedPipeline.class.getName());
+
+    // bytes read per block; longer lines grow their block
+    static final int BLOCK_BYTES = 1 << 22;
+
+    private OverlappedPipeline() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    // a run of whole lines; END marks the end of the input
+    private record Block(long sequence, ByteBuffer bytes, long firstLine) {
+    }
+
+    // the deduplicated rows of one block, or the number of blocks once reading is done
+    private record Parsed(long sequence, Map<String, Map<String, Enrolled>> partial, ParseContext context) {
+    }
+
+    private static final Block END = new Block(-1, ByteBuffer.allocate(0), 0);
+    private static final Parsed FAILED = new Parsed(-1, null, null);
+
+    /**
+     * Reads and deduplicates {@code filePath} with overlapping read, parse and merge stages.
+     * The result equals what {@link MappedCSVReader#readEnrollees(String, ParseContext)}
+     * returns. Gzip input is decompressed by the reader thread.
+     *
+     * @param filePath    the path to the CSV file containing enrollee data, with a header row
+     * @param parallelism number of parser workers, at least 1
+     * @param context     the per-read state; blocks are parsed with worker copies of it
+     * @return a map of lower-cased insurance company → (user ID → enrollee)
+     * @throws IOException if the file cannot be read
+     */
+    public static Map<String, Map<String, Enrolled>> readEnrollees(String filePath, int parallelism,
+                                                                   ParseContext context) throws IOException {
+        return readEnrollees(filePath, parallelism, context, BLOCK_BYTES);
+    }
+
+    static Map<String, Map<String, Enrolled>> readEnrollees(String filePath, int parallelism, ParseContext context,
+                                                            int blockBytes) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1 but was " + parallelism);
+        }
+        int inFlightBlocks = 2 * parallelism;
+        Semaphore inFlight = new Semaphore(inFlightBlocks);
+        BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(parallelism);
+        // every block holds a permit until it is merged, so puts never block beyond the permits
+        BlockingQueue<Parsed> parsed = new ArrayBlockingQueue<>(inFlightBlocks + 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        boolean absoluteLines = context.rejects().writesSideFile();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism + 1);
+        try (ReadableByteChannel channel = GzipFiles.openChannel(Paths.get(filePath))) {
+            executor.submit(() -> {
+                try {
+                    long count = readBlocks(channel, blockBytes, absoluteLines, inFlight, blocks);
+                    parsed.put(new Parsed(count, null, null));
+                    for (int i = 0; i < parallelism; i++) {
+                        blocks.put(END);
+                    }
+                } catch (Throwable t) {
+                    fail(failure, t, parsed);
+                }
+            });
+            for (int i = 0; i < parallelism; i++) {
+                executor.submit(() -> {
+                    try {
+                        parseBlocks(blocks, parsed, context, absoluteLines);
+                    } catch (Throwable t) {
+                        fail(failure, t, parsed);
+                    }
+                });
+            }
+            Map<String, Map<String, Enrolled>> grouped = merge(parsed, inFlight, context, absoluteLines, failure);
+            context.rejects().logSummary(logger);
+            return grouped;
+        } catch (IOException e) {
+            logger.severe("Error reading file: " + filePath + ": " + e.getMessage());
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void fail(AtomicReference<Throwable> failure, Throwable t, BlockingQueue<Parsed> parsed) {
+        if (failure.compareAndSet(null, t)) {
+            // wakes the aggregator; if the queue is full it sees the failure after its next block
+            parsed.offer(FAILED);
+        }
+    }
+
+    // returns the number of blocks handed out
+    private static long readBlocks(ReadableByteChannel channel, int blockBytes, boolean absoluteLines,
+                                   Semaphore inFlight, BlockingQueue<Block> blocks)
+            throws IOException, InterruptedException {
+        LineBlockReader reader = new LineBlockReader(channel, blockBytes);
+        long sequence = 0;
+        long line = 0;
+        for (ByteBuffer block = reader.next(); block != null; block = reader.next()) {
+            long firstLine = line;
+            if (absoluteLines) {
+                line += MappedCSVReader.countLines(block);
+            }
+            inFlight.acquire();
+            blocks.put(new Block(sequence++, block, firstLine));
+        }
+        return sequence;
+    }
+
+    private static void parseBlocks(BlockingQueue<Block> blocks, BlockingQueue<Parsed> parsed, ParseContext context,
+                                    boolean absoluteLines) throws InterruptedException {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread();
+        try {
+            while (true) {
+                Block block = blocks.take();
+                if (block == END) {
+                    return;
+                }
+                ParseContext blockContext = context.forWorker(absoluteLines);
+                if (absoluteLines) {
+                    blockContext.startAtLine(block.firstLine());
+                }
+                // first-seen order, so the merge adds the members in file order
+                Map<String, Map<String, Enrolled>> partial = new LinkedHashMap<>();
+                tokenizer.bind(blockContext);
+                MappedCSVReader.parseRegion(block.bytes(), block.sequence() == 0, tokenizer, partial,
+                        LinkedHashMap::new);
+                parsed.put(new Parsed(block.sequence(), partial, blockContext));
+            }
+        } finally {
+            tokenizer.bind(null);
+        }
+    }
+
+    // merges the parsed blocks in file order as they arrive
+    private static Map<String, Map<String, Enrolled>> merge(BlockingQueue<Parsed> parsed, Semaphore inFlight,
+                                                            ParseContext context, boolean absoluteLines,
+                                                            AtomicReference<Throwable> failure) throws IOException {
+        Map<String, Map<String, Enrolled>> grouped = new HashMap<>();
+        Map<Long, Parsed> waiting = new HashMap<>();
+        long next = 0;
+        long total = -1;
+        long lineOffset = 0;
+        long mergeNanos = 0;
+        try {
+            while (total < 0 || next < total) {
+                Parsed result = parsed.take();
+                rethrow(failure.get());
+                if (result.partial() == null) {
+                    total = result.sequence();
+                    continue;
+                }
+                waiting.put(result.sequence(), result);
+                for (Parsed block = waiting.remove(next); block != null; block = waiting.remove(++next)) {
+                    long start = System.nanoTime();
+                    block.partial().forEach((company, enrollees) -> {
+                        Map<String, Enrolled> merged = grouped.computeIfAbsent(company,
+                                k -> context.newCompanyMap());
+                        enrollees.forEach((userId, e) -> merged.merge(userId, e, Enrolled::latest));
+                    });
+                    mergeNanos += System.nanoTime() - start;
+                    context.rejects().mergeChunk(block.context().rejects(), absoluteLines ? 0 : lineOffset);
+                    lineOffset += block.context().line();
+                    inFlight.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading", e);
+        }
+        context.mergeNanos(mergeNanos);
+        return grouped;
+    }
+
+    private static void rethrow(Throwable t) throws IOException {
+        if (t == null) {
+            return;
+        }
+        if (t instanceof IOException io) {
+            throw io;
+        }
+        if (t instanceof RuntimeException re) {
+            throw re;
+        }
+        if (t instanceof Error error) {
+            throw error;
+        }
+        throw new IOException(t);
+    }
+
+    /**
+     * Sorts and writes every company as its own task on {@code parallelism} threads, so
+     * writing starts as soon as the first company is sorted. The files are the ones
+     * {@link CSVWriter#writeByCompanyConcurrent} writes for the sorted map; companies whose
+     * names share a file are handled one after another in map order.
+     *
+     * @param grouped         the deduplicated company → (userId → enrollee) map
+     * @param strategy        how each company is sorted
+     * @param parallelism     number of companies sorted and written at once, at least 1
+     * @param outputDirectory directory receiving one CSV file per company
+     * @param metrics         receives the sort time and every written file
+     * @throws CompanyWriteException if one or more company files could not be written
+     * @throws IOException           if the output directory cannot be created
+     */
+    public static void sortAndWrite(Map<String, Map<String, Enrolled>> grouped, Sorting.Strategy strategy,
+                                    int parallelism, Path outputDirectory, PipelineMetrics metrics)
+            throws IOException {
+        sortAndWrite(grouped, strategy, parallelism, outputDirectory, CsvFormat.PLAIN, metrics);
+    }
+
+    /**
+     * Sorts and writes like {@link #sortAndWrite(Map, Sorting.Strategy, int, Path, PipelineMetrics)},
+     * writing the company files in the given format.
+     */
+    static void sortAndWrite(Map<String, Map<String, Enrolled>> grouped, Sorting.Strategy strategy, int parallelism,
+                             Path outputDirectory, CsvFormat format, PipelineMetrics metrics) throws IOException {
+        // the sorts overlap, so the stage lasts from the first sort started to the last one done
+        LongAccumulator firstStart = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        LongAccumulator lastEnd = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        try {
+            CSVWriter.forEachCompanyConcurrent(grouped.keySet(), outputDirectory, parallelism, format,
+                    (company, file) -> {
+                        long start = System.nanoTime();
+                        firstStart.accumulate(start);
+                        Map<String, Enrolled> sorted = Sorting.sortCompany(grouped.get(company).values(), strategy);
+                        long end = System.nanoTime();
+                        lastEnd.accumulate(end);
+                        metrics.addWorkerNanos(PipelineMetrics.Stage.SORT, end - start);
+                        metrics.addRows(PipelineMetrics.Stage.SORT, sorted.size());
+                        CSVWriter.writeCompany(file, sorted.values().iterator(), format.indexed());
+                        metrics.recordCompanyFile(company, sorted.size(), Files.size(file));
+                    });
+        } finally {
+            if (lastEnd.get() != Long.MIN_VALUE) {
+                metrics.addNanos(PipelineMetrics.Stage.SORT, lastEnd.get() - firstStart.get());
+            }
+        }
+    }
+}
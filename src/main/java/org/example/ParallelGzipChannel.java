@@ -0,0 +1,162 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses everything written to it into gzip on several cores, pigz style.
+ * <p>
+ * The input is cut into blocks of {@link #BLOCK_BYTES}. Every block is compressed on its
+ * own into a complete gzip member (header, deflate data, CRC-32 and length) by the
+ * executor, and the members are written to the target in input order. A file of
+ * concatenated members is a valid gzip file that {@code gunzip} and
+ * {@link java.util.zip.GZIPInputStream} read as one stream. Blocks do not share a
+ * dictionary, which costs a little compression for the parallelism.
+ * <p>
+ * At most {@code 2 *} the executor's parallelism blocks are pending at once; a writer that
+ * gets ahead waits for the oldest block to be written.
+ */
+final class ParallelGzipChannel implements WritableByteChannel {
+
+    static final int BLOCK_BYTES = 1 << 19;
+
+    // member header: magic, deflate, no flags, no mtime, no extra flags, unknown OS
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final WritableByteChannel target;
+    private final Executor executor;
+    private final int maxPending;
+    private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private byte[] block = new byte[BLOCK_BYTES];
+    private int length;
+    private boolean wroteMember;
+    private boolean closed;
+
+    /**
+     * Compresses on the common fork/join pool.
+     *
+     * @param target receives the gzip members; closed with this channel
+     */
+    ParallelGzipChannel(WritableByteChannel target) {
+        this(target, ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    ParallelGzipChannel(WritableByteChannel target, Executor executor, int maxPending) {
+        this.target = target;
+        this.executor = executor;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), block.length - length);
+            src.get(block, length, n);
+            length += n;
+            if (length == block.length) {
+                submitBlock();
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (target) {
+            // an empty input still needs one member to be a gzip file
+            if (length > 0 || !wroteMember) {
+                submitBlock();
+            }
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int size = length;
+        pending.add(CompletableFuture.supplyAsync(() -> member(data, size), executor));
+        wroteMember = true;
+        block = new byte[BLOCK_BYTES];
+        length = 0;
+        while (pending.size() > maxPending) {
+            writeOldest();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        byte[] member;
+        try {
+            member = pending.removeFirst().join();
+        } catch (CompletionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+        ByteBuffer out = ByteBuffer.wrap(member);
+        while (out.hasRemaining()) {
+            target.write(out);
+        }
+    }
+
+    /**
+     * Compresses {@code data[0, length)} into one complete gzip member.
+     */
+    static byte[] member(byte[] data, int length) {
+        // a deflater per block, ended here, so no native zlib state outlives the block on
+        // the executor's threads; setting one up is cheap next to compressing a block
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        // stored blocks bound the worst case at a few bytes per 16 KiB
+        byte[] out = new byte[HEADER.length + length + length / 1000 + 64 + 8];
+        System.arraycopy(HEADER, 0, out, 0, HEADER.length);
+        int size = HEADER.length;
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (size == out.length - 8) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                size += deflater.deflate(out, size, out.length - 8 - size);
+            }
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        size = putIntLE(out, size, (int) crc.getValue());
+        size = putIntLE(out, size, length);
+        return Arrays.copyOf(out, size);
+    }
+
+    private static int putIntLE(byte[] out, int at, int value) {
+        out[at] = (byte) value;
+        out[at + 1] = (byte) (value >>> 8);
+        out[at + 2] = (byte) (value >>> 16);
+        out[at + 3] = (byte) (value >>> 24);
+        return at + 4;
+    }
+}
@@ -0,0 +1,186 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * State shared by all rows of one read.
+ * <p>
+ * Holds the dictionaries that give every repeated insurance company (and, when enabled,
+ * every repeated first and last name) one canonical String instance, together with the
+ * precomputed lower-case grouping key of each company. Without them every row allocates
+ * its own copy of strings that repeat millions of times, and the result map keeps all of
+ * those copies alive.
+ * <p>
+ * With packed user IDs, the readers deduplicate every company into a {@link UserIdMap}
+ * instead of a {@code HashMap}, see {@link #newCompanyMap()}.
+ * <p>
+ * The context also numbers the lines of the file and hands skipped rows to its
+ * {@link RejectCollector}, and counts the rows it accepts. Closing it closes the collector.
+ * <p>
+ * A context belongs to one thread; parallel readers give each chunk its own through
+ * {@link #forWorker(boolean)}.
+ */
+public class ParseContext implements Closeable {
+
+    // companies are few; the cap only guards against garbage input
+    static final int MAX_COMPANIES = 1 << 20;
+    // names follow a long tail, so only the most common ones seen first are kept
+    static final int MAX_NAMES = 1 << 16;
+
+    private final boolean internNames;
+    private final boolean packedUserIds;
+    private final StringDictionary companies = new StringDictionary(MAX_COMPANIES);
+    private final StringDictionary names;
+    private final RejectCollector rejects;
+    // shared with the worker contexts
+    private final LongAdder accepted;
+    private volatile long mergeNanos;
+    // number of the line last tokenized or skipped
+    private long line;
+
+    /**
+     * Creates a context that interns insurance companies only.
+     */
+    public ParseContext() {
+        this(false);
+    }
+
+    /**
+     * @param internNames whether first and last names are interned as well
+     */
+    public ParseContext(boolean internNames) {
+        this(internNames, new RejectCollector());
+    }
+
+    /**
+     * @param internNames whether first and last names are interned as well
+     * @param rejects     receives the rows the read skips
+     */
+    public ParseContext(boolean internNames, RejectCollector rejects) {
+        this(internNames, false, rejects);
+    }
+
+    /**
+     * @param internNames   whether first and last names are interned as well
+     * @param packedUserIds whether companies are deduplicated into {@link UserIdMap}s
+     * @param rejects       receives the rows the read skips
+     */
+    public ParseContext(boolean internNames, boolean packedUserIds, RejectCollector rejects) {
+        this(internNames, packedUserIds, rejects, new LongAdder());
+    }
+
+    private ParseContext(boolean internNames, boolean packedUserIds, RejectCollector rejects, LongAdder accepted) {
+        this.internNames = internNames;
+        this.packedUserIds = packedUserIds;
+        this.names = internNames ? new StringDictionary(MAX_NAMES) : null;
+        this.rejects = rejects;
+        this.accepted = accepted;
+    }
+
+    /**
+     * Returns a context with the same settings and fresh dictionaries for one chunk of a
+     * parallel read. Its lines are numbered from 0, relative to the chunk start, unless
+     * {@code absoluteLines} is set and the reader moves it to the chunk's real first line.
+     */
+    ParseContext forWorker(boolean absoluteLines) {
+        return new ParseContext(internNames, packedUserIds, rejects.forChunk(absoluteLines), accepted);
+    }
+
+    /**
+     * Returns a context with the same settings and fresh dictionaries for one file of a
+     * batch, whose rejects are located in {@code file}.
+     */
+    ParseContext forFile(String file) {
+        return new ParseContext(internNames, packedUserIds, rejects.forFile(file), accepted);
+    }
+
+    RejectCollector rejects() {
+        return rejects;
+    }
+
+    void acceptRow() {
+        accepted.increment();
+    }
+
+    /**
+     * Returns the number of rows that passed validation, before duplicates are dropped.
+     */
+    long accepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * Records how long a parallel read spent merging its chunk results.
+     */
+    void mergeNanos(long nanos) {
+        mergeNanos = nanos;
+    }
+
+    /**
+     * Returns the time spent merging chunk results, or 0 when rows were deduplicated while
+     * they were read.
+     */
+    long mergeNanos() {
+        return mergeNanos;
+    }
+
+    /**
+     * Sets the number of the line read last, e.g. 1 after skipping a file's header.
+     */
+    void startAtLine(long line) {
+        this.line = line;
+    }
+
+    /**
+     * Counts one more line and returns its number.
+     */
+    long nextLine() {
+        return ++line;
+    }
+
+    long line() {
+        return line;
+    }
+
+    StringDictionary companies() {
+        return companies;
+    }
+
+    /**
+     * Returns the name dictionary, or {@code null} when names are not interned.
+     */
+    StringDictionary names() {
+        return names;
+    }
+
+    /**
+     * Whether companies are deduplicated into {@link UserIdMap}s.
+     */
+    boolean packedUserIds() {
+        return packedUserIds;
+    }
+
+    /**
+     * Returns an empty user ID → enrollee map for the members of one company.
+     */
+    Map<String, Enrolled> newCompanyMap() {
+        return packedUserIds ? new UserIdMap() : new HashMap<>();
+    }
+
+    /**
+     * Returns the grouping key of a company: its lower-cased form, computed once per
+     * distinct company.
+     */
+    String companyKey(String company) {
+        return companies.lowerCase(company);
+    }
+
+    @Override
+    public void close() throws IOException {
+        rejects.close();
+    }
+}
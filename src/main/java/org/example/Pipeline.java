@@ -0,0 +1,292 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * One run of the processor: read and deduplicate the input, sort every company by name
+ * and write one file per company, the way {@link PipelineOptions} select. The input is a
+ * single file, or a directory or glob whose files are read as one batch by
+ * {@link BatchReader}. With {@code --pipeline=overlapped} the stages run at the same time,
+ * see {@link OverlappedPipeline}; their times then overlap, and the sort time is summed
+ * over the workers.
+ * <p>
+ * Every stage is timed and counted into a {@link PipelineMetrics}. Deduplication happens
+ * while rows are read, so its time is part of the read; only the merge of a parallel read
+ * is timed as a separate dedupe stage. In incremental and external-sort runs the files are
+ * written while sorting, so their time is reported as the write stage.
+ * <p>
+ * Gzip input is detected and decompressed by the readers; with {@code --compress=gzip} the
+ * company files are written as {@code .csv.gz} and their metrics count compressed bytes;
+ * with {@code --format=binary} they are {@link BinaryCompanyFile}s. With {@code --index=true}
+ * every CSV file gets a {@link CompanyIndex} for point lookups. With {@code --dedupe-memory}
+ * rows are deduplicated and sorted through disk by {@link SpillingDeduplicator} and the
+ * external sort, so memory use is set by the budgets instead of the input. With
+ * {@code --store=offheap} the deduplicated members are kept, sorted and written from an
+ * {@link OffHeapEnrollmentStore} outside the heap.
+ */
+public final class Pipeline {
+
+    private Pipeline() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Runs the pipeline on {@code inputPath}, writing to the default output directory.
+     *
+     * @param inputPath the CSV file to process, or a directory or glob of CSV files
+     * @param options   the switches of this run
+     * @return the metrics of the run
+     * @throws IOException if the input cannot be read or an output file cannot be written
+     */
+    public static PipelineMetrics run(String inputPath, PipelineOptions options) throws IOException {
+        return run(inputPath, options, CSVWriter.DEFAULT_OUTPUT_DIRECTORY);
+    }
+
+    static PipelineMetrics run(String inputPath, PipelineOptions options, Path outputDirectory) throws IOException {
+        return run(inputPath, options, outputDirectory, System.out);
+    }
+
+    /**
+     * Runs the pipeline, printing its progress lines to {@code progress} instead of
+     * standard output.
+     */
+    static PipelineMetrics run(String inputPath, PipelineOptions options, Path outputDirectory, PrintStream progress)
+            throws IOException {
+        PipelineMetrics metrics = new PipelineMetrics();
+        if (options.binaryOutput() && (options.overlapped() || options.snapshotDirectory() != null
+                || options.externalSortBytes() > 0 || options.gzipOutput() || options.indexOutput())) {
+            throw new IllegalArgumentException("--format=binary cannot be combined with --pipeline=overlapped,"
+                    + " --snapshot, --external-sort, --compress=gzip or --index");
+        }
+        if (options.columnarStore() && options.packedUserIds()) {
+            throw new IllegalArgumentException("--store=columnar keeps no enrollee maps and cannot be combined with"
+                    + " --dedupe-map=packed");
+        }
+        if (options.dedupeMemoryBytes() > 0) {
+            return runSpilling(inputPath, options, outputDirectory, metrics, progress);
+        }
+        if (options.offHeapStore()) {
+            return runOffHeap(inputPath, options, outputDirectory, metrics, progress);
+        }
+        if (options.overlapped()) {
+            return runOverlapped(inputPath, options, outputDirectory, metrics, progress);
+        }
+
+        Map<String, EnrollmentTable> tables = null;
+        Map<String, Map<String, Enrolled>> grouped = null;
+        try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.READ);
+             ParseContext context = options.newParseContext()) {
+            List<Path> batch = BatchReader.isBatch(inputPath) ? BatchReader.listFiles(inputPath) : null;
+            if (batch != null && options.columnarStore()) {
+                tables = BatchReader.readEnrolleeTables(batch, options, context);
+            } else if (batch != null) {
+                grouped = BatchReader.readEnrollees(batch, options, context);
+            } else if (options.columnarStore()) {
+                tables = options.readerEngine().readTables(inputPath, options, context);
+            } else {
+                grouped = options.readerEngine().read(inputPath, options, context);
+            }
+            if (tables != null) {
+                // the other modes read the tables through map views
+                grouped = EnrollmentTable.asMaps(tables);
+            }
+            long bytes = 0;
+            for (Path file : batch != null ? batch : List.of(Paths.get(inputPath))) {
+                bytes += Files.size(file);
+            }
+            metrics.recordRead(context, bytes);
+        }
+        metrics.recordCompanies(grouped);
+        progress.println("Successfully read and grouped enrollees");
+
+        if (options.snapshotDirectory() != null) {
+            // only the companies touched by this delta are sorted and rewritten
+            List<String> changed;
+            try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+                changed = IncrementalRun.apply(grouped, options.snapshotDirectory(), outputDirectory,
+                        options.csvFormat(), metrics);
+            }
+            progress.println("Successfully sorted enrollees");
+            progress.println("Companies changed: " + changed.size());
+            progress.println("Successfully wrote sorted CSV files");
+            return metrics;
+        }
+        if (options.externalSortBytes() > 0) {
+            // spills sorted runs and merges them straight into the company files; grouped is
+            // drained company by company, so the company sizes are taken first
+            Map<String, Integer> sizes = companySizes(grouped);
+            try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+                Sorting.sortByNameExternal(Sorting.draining(grouped), options.externalSortBytes(), outputDirectory,
+                        options.csvFormat());
+                recordCompanyFiles(metrics, sizes, outputDirectory, options.csvFormat()::fileNameFor);
+            }
+            progress.println("Successfully sorted enrollees");
+            progress.println("Successfully wrote sorted CSV files");
+            return metrics;
+        }
+
+        Map<String, Map<String, Enrolled>> sorted;
+        try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.SORT)) {
+            if (tables != null) {
+                // sorted in place on the columns
+                tables.values().forEach(EnrollmentTable::sortByName);
+                sorted = grouped;
+            } else {
+                sorted = Sorting.sortByName(grouped, options.sortStrategy(), options.parallelism());
+            }
+            sorted.values().forEach(company -> metrics.addRows(PipelineMetrics.Stage.SORT, company.size()));
+        }
+        progress.println("Successfully sorted enrollees");
+
+        try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+            CsvFormat format = options.csvFormat();
+            if (options.binaryOutput()) {
+                BinaryCompanyFile.writeByCompany(sorted, outputDirectory);
+            } else if (options.writers() > 1) {
+                CSVWriter.writeByCompanyConcurrent(sorted, outputDirectory, options.writers(), format);
+            } else if (tables != null) {
+                CSVWriter.writeTables(tables, outputDirectory, format);
+            } else {
+                CSVWriter.writeByCompany(sorted, outputDirectory, format);
+            }
+            recordCompanyFiles(metrics, companySizes(sorted), outputDirectory, options.binaryOutput()
+                    ? BinaryCompanyFile::fileNameFor : format::fileNameFor);
+        }
+        progress.println("Successfully wrote sorted CSV files");
+        return metrics;
+    }
+
+    private static PipelineMetrics runOverlapped(String inputPath, PipelineOptions options, Path outputDirectory,
+                                                 PipelineMetrics metrics, PrintStream progress) throws IOException {
+        if (options.snapshotDirectory() != null || options.externalSortBytes() > 0 || options.columnarStore()
+                || BatchReader.isBatch(inputPath)) {
+            throw new IllegalArgumentException("--pipeline=overlapped reads a single file into enrollee maps and cannot"
+                    + " be combined with --snapshot, --external-sort, --store=columnar or a batch input");
+        }
+        Map<String, Map<String, Enrolled>> grouped;
+        try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.READ);
+             ParseContext context = options.newParseContext()) {
+            grouped = OverlappedPipeline.readEnrollees(inputPath, options.parallelism(), context);
+            metrics.recordRead(context, Files.size(Paths.get(inputPath)));
+        }
+        metrics.recordCompanies(grouped);
+        progress.println("Successfully read and grouped enrollees");
+
+        try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+            OverlappedPipeline.sortAndWrite(grouped, options.sortStrategy(), Math.max(options.parallelism(),
+                    options.writers()), outputDirectory, options.csvFormat(), metrics);
+        }
+        progress.println("Successfully sorted enrollees");
+        progress.println("Successfully wrote sorted CSV files");
+        return metrics;
+    }
+
+    // neither the input nor the deduplicated companies are ever held in memory as a whole
+    private static PipelineMetrics runSpilling(String inputPath, PipelineOptions options, Path outputDirectory,
+                                               PipelineMetrics metrics, PrintStream progress) throws IOException {
+        if (options.overlapped() || options.snapshotDirectory() != null || options.columnarStore()
+                || options.offHeapStore() || options.binaryOutput() || BatchReader.isBatch(inputPath)
+                || options.readerEngine() != ReaderEngine.STREAM || options.writers() > 1
+                || options.sortStrategy() != Sorting.Strategy.COMPARATOR
+                || options.packedUserIds() || options.internNames()) {
+            throw new IllegalArgumentException("--dedupe-memory reads a single file with the stream reader and"
+                    + " sorts and writes one company at a time; it cannot be combined with --pipeline=overlapped,"
+                    + " --snapshot, --store=columnar, --store=offheap, --format=binary, --reader, --writers, --sort,"
+                    + " --dedupe-map=packed, --intern-names=true or a batch input");
+        }
+        long sortBytes = options.externalSortBytes() > 0 ? options.externalSortBytes() : options.dedupeMemoryBytes();
+        try (SpillingDeduplicator dedupe = new SpillingDeduplicator(options.dedupeMemoryBytes(),
+                SpillingDeduplicator.DEFAULT_PARTITIONS);
+             ExternalSorter sorter = new ExternalSorter(sortBytes)) {
+            try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.READ);
+                 ParseContext context = options.newParseContext()) {
+                dedupe.addFile(inputPath, context);
+                metrics.recordRead(context, Files.size(Paths.get(inputPath)));
+            }
+            progress.println("Successfully read and grouped enrollees");
+
+            Map<String, Integer> sizes = new LinkedHashMap<>();
+            try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.DEDUPE)) {
+                dedupe.forEachSurvivor((company, e) -> {
+                    sorter.add(company, e);
+                    sizes.merge(company, 1, Integer::sum);
+                });
+            }
+            sizes.values().forEach(metrics::recordCompany);
+
+            CsvFormat format = options.csvFormat();
+            try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+                sorter.writeByCompany(outputDirectory, format);
+                recordCompanyFiles(metrics, sizes, outputDirectory, format::fileNameFor);
+            }
+        }
+        progress.println("Successfully sorted enrollees");
+        progress.println("Successfully wrote sorted CSV files");
+        return metrics;
+    }
+
+    // only the page buffers and company names of the members are on the heap
+    private static PipelineMetrics runOffHeap(String inputPath, PipelineOptions options, Path outputDirectory,
+                                              PipelineMetrics metrics, PrintStream progress) throws IOException {
+        if (options.overlapped() || options.snapshotDirectory() != null || options.externalSortBytes() > 0
+                || options.binaryOutput() || BatchReader.isBatch(inputPath)
+                || options.readerEngine() != ReaderEngine.STREAM || options.writers() > 1
+                || options.packedUserIds() || options.internNames()) {
+            throw new IllegalArgumentException("--store=offheap reads a single file with the stream reader and"
+                    + " writes one company at a time; it cannot be combined with --pipeline=overlapped, --snapshot,"
+                    + " --external-sort, --format=binary, --reader, --writers, --dedupe-map=packed,"
+                    + " --intern-names=true or a batch input");
+        }
+        try (OffHeapEnrollmentStore store = new OffHeapEnrollmentStore()) {
+            try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.READ);
+                 ParseContext context = options.newParseContext()) {
+                store.addFile(inputPath, context);
+                metrics.recordRead(context, Files.size(Paths.get(inputPath)));
+            }
+            Map<String, Integer> sizes = store.companySizes();
+            sizes.values().forEach(metrics::recordCompany);
+            progress.println("Successfully read and grouped enrollees");
+
+            try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.SORT)) {
+                store.sortByName(options.parallelism());
+                metrics.addRows(PipelineMetrics.Stage.SORT, store.size());
+            }
+            progress.println("Successfully sorted enrollees");
+
+            CsvFormat format = options.csvFormat();
+            try (PipelineMetrics.Span ignored = metrics.time(PipelineMetrics.Stage.WRITE)) {
+                store.writeByCompany(outputDirectory, format);
+                recordCompanyFiles(metrics, sizes, outputDirectory, format::fileNameFor);
+            }
+        }
+        progress.println("Successfully wrote sorted CSV files");
+        return metrics;
+    }
+
+    // company → number of members, in map order
+    private static Map<String, Integer> companySizes(Map<String, Map<String, Enrolled>> companies) {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        companies.forEach((company, members) -> sizes.put(company, members.size()));
+        return sizes;
+    }
+
+    // file sizes are read back once per company instead of counting every write
+    private static void recordCompanyFiles(PipelineMetrics metrics, Map<String, Integer> sizes,
+                                           Path outputDirectory, Function<String, String> fileNames)
+            throws IOException {
+        for (Map.Entry<String, Integer> company : sizes.entrySet()) {
+            Path file = outputDirectory.resolve(fileNames.apply(company.getKey()));
+            if (Files.exists(file)) {
+                metrics.recordCompanyFile(company.getKey(), company.getValue(), Files.size(file));
+            }
+        }
+    }
+}
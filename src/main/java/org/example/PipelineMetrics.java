@@ -0,0 +1,307 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Numbers collected while the pipeline runs: wall time, rows and bytes of every stage, how
+ * many rows were accepted, rejected or superseded by a higher version, the largest company
+ * and the size of every company file written.
+ * <p>
+ * Counters are {@link LongAdder}s, so workers can update them without contention. Every
+ * stage and every company file is also emitted as a JDK Flight Recorder event
+ * ({@code org.example.PipelineStage} and {@code org.example.CompanyWritten}); while no
+ * recording is running those events cost next to nothing.
+ * <p>
+ * {@link #toJson()} renders everything as one JSON object for the end of the run.
+ */
+public final class PipelineMetrics {
+
+    /**
+     * The stages of a run, in order.
+     */
+    public enum Stage {
+        READ, DEDUPE, SORT, WRITE;
+
+        String key() {
+            return name().toLowerCase(java.util.Locale.ROOT);
+        }
+    }
+
+    private final Map<Stage, LongAdder> nanos = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> workerNanos = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> rows = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> bytes = new EnumMap<>(Stage.class);
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder unique = new LongAdder();
+    private final LongAccumulator peakCompanySize = new LongAccumulator(Math::max, 0);
+    // company → {rows, bytes} of its file
+    private final Map<String, long[]> companyFiles = new ConcurrentHashMap<>();
+
+    public PipelineMetrics() {
+        for (Stage stage : Stage.values()) {
+            nanos.put(stage, new LongAdder());
+            workerNanos.put(stage, new LongAdder());
+            rows.put(stage, new LongAdder());
+            bytes.put(stage, new LongAdder());
+        }
+    }
+
+    /**
+     * Starts timing a stage. Closing the returned span adds the elapsed time to the stage
+     * and commits its flight recorder event with the rows and bytes counted so far.
+     */
+    public Span time(Stage stage) {
+        return new Span(stage);
+    }
+
+    /**
+     * Adds time spent in a stage that was measured elsewhere, e.g. the merge inside a
+     * parallel read.
+     */
+    public void addNanos(Stage stage, long elapsed) {
+        nanos.get(stage).add(elapsed);
+    }
+
+    /**
+     * Adds time a worker spent in a stage that runs on several threads at once. Unlike
+     * {@link #addNanos}, the time of parallel workers overlaps, so the sum can exceed the
+     * wall time of the stage.
+     */
+    public void addWorkerNanos(Stage stage, long elapsed) {
+        workerNanos.get(stage).add(elapsed);
+    }
+
+    public void addRows(Stage stage, long count) {
+        rows.get(stage).add(count);
+    }
+
+    public void addBytes(Stage stage, long count) {
+        bytes.get(stage).add(count);
+    }
+
+    /**
+     * Records the outcome of a read of {@code fileBytes} bytes with {@code context}.
+     */
+    void recordRead(ParseContext context, long fileBytes) {
+        accepted.add(context.accepted());
+        rejected.add(context.rejects().total());
+        addRows(Stage.READ, context.accepted() + context.rejects().total());
+        addBytes(Stage.READ, fileBytes);
+        addRows(Stage.DEDUPE, context.accepted());
+        addNanos(Stage.DEDUPE, context.mergeNanos());
+    }
+
+    /**
+     * Records the deduplicated companies: their total size and the largest one.
+     */
+    void recordCompanies(Map<String, ? extends Map<String, Enrolled>> grouped) {
+        for (Map<String, Enrolled> company : grouped.values()) {
+            recordCompany(company.size());
+        }
+    }
+
+    /**
+     * Records one deduplicated company of {@code size} members.
+     */
+    void recordCompany(long size) {
+        unique.add(size);
+        peakCompanySize.accumulate(size);
+    }
+
+    /**
+     * Records one company file written by the write stage.
+     */
+    void recordCompanyFile(String company, long rowCount, long byteCount) {
+        companyFiles.put(company, new long[]{rowCount, byteCount});
+        addRows(Stage.WRITE, rowCount);
+        addBytes(Stage.WRITE, byteCount);
+        CompanyWrittenEvent event = new CompanyWrittenEvent();
+        if (event.shouldCommit()) {
+            event.company = company;
+            event.rows = rowCount;
+            event.bytes = byteCount;
+            event.commit();
+        }
+    }
+
+    public long wallNanos(Stage stage) {
+        return nanos.get(stage).sum();
+    }
+
+    /**
+     * Returns the time of the stage summed over its workers, or 0 if it ran on a single thread.
+     */
+    public long workerNanos(Stage stage) {
+        return workerNanos.get(stage).sum();
+    }
+
+    public long rows(Stage stage) {
+        return rows.get(stage).sum();
+    }
+
+    public long bytes(Stage stage) {
+        return bytes.get(stage).sum();
+    }
+
+    /**
+     * Rows that passed validation, duplicates included.
+     */
+    public long accepted() {
+        return accepted.sum();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Rows dropped because the same user ID had a row with a higher version.
+     */
+    public long superseded() {
+        return accepted() - unique.sum();
+    }
+
+    public long peakCompanySize() {
+        return peakCompanySize.get();
+    }
+
+    /**
+     * Returns company → bytes of its file, for the companies written.
+     */
+    public Map<String, Long> companyBytes() {
+        Map<String, Long> result = new TreeMap<>();
+        companyFiles.forEach((company, counts) -> result.put(company, counts[1]));
+        return result;
+    }
+
+    /**
+     * Renders the metrics as a single JSON object.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"stages\":{");
+        for (Stage stage : Stage.values()) {
+            long elapsed = wallNanos(stage);
+            json.append(stage.ordinal() == 0 ? "" : ",")
+                    .append('"').append(stage.key()).append("\":{")
+                    .append("\"wallMillis\":").append(elapsed / 1_000_000)
+                    .append(",\"rows\":").append(rows(stage))
+                    .append(",\"bytes\":").append(bytes(stage))
+                    .append(",\"rowsPerSec\":").append(perSecond(rows(stage), elapsed))
+                    .append(",\"bytesPerSec\":").append(perSecond(bytes(stage), elapsed));
+            if (workerNanos(stage) > 0) {
+                json.append(",\"workerMillis\":").append(workerNanos(stage) / 1_000_000);
+            }
+            json.append('}');
+        }
+        json.append("},\"rows\":{")
+                .append("\"accepted\":").append(accepted())
+                .append(",\"rejected\":").append(rejected())
+                .append(",\"superseded\":").append(superseded())
+                .append(",\"unique\":").append(unique.sum())
+                .append("},\"peakCompanySize\":").append(peakCompanySize())
+                .append(",\"companies\":{");
+        String separator = "";
+        for (Map.Entry<String, long[]> entry : new TreeMap<>(companyFiles).entrySet()) {
+            json.append(separator);
+            appendString(json, entry.getKey());
+            json.append(":{\"rows\":").append(entry.getValue()[0])
+                    .append(",\"bytes\":").append(entry.getValue()[1]).append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private static long perSecond(long count, long elapsedNanos) {
+        return elapsedNanos <= 0 ? 0 : (long) (count * 1e9 / elapsedNanos);
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * The running measurement of one stage.
+     */
+    public final class Span implements AutoCloseable {
+
+        private final Stage stage;
+        private final long start = System.nanoTime();
+        private final PipelineStageEvent event = new PipelineStageEvent();
+
+        private Span(Stage stage) {
+            this.stage = stage;
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            addNanos(stage, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.key();
+                event.rows = rows(stage);
+                event.bytes = bytes(stage);
+                event.commit();
+            }
+        }
+    }
+
+    @Name("org.example.PipelineStage")
+    @Label("Pipeline Stage")
+    @Category("Enrollment Processor")
+    @Description("One stage of an enrollment run")
+    @StackTrace(false)
+    static final class PipelineStageEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("org.example.CompanyWritten")
+    @Label("Company File Written")
+    @Category("Enrollment Processor")
+    @Description("A per-company output file")
+    @StackTrace(false)
+    static final class CompanyWrittenEvent extends Event {
+        @Label("Company")
+        String company;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+}
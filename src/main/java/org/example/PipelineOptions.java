@@ -0,0 +1,335 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line switches for {@link Main}, given as {@code --name=value}.
+ * Every switch is optional; without any the pipeline runs exactly as before.
+ * <p>
+ * Supported switches:
+ * <ul>
+ *     <li>{@code --reader=stream|mapped|parallel} — ingestion engine, see {@link ReaderEngine}</li>
+ *     <li>{@code --parallelism=N} — worker threads for parallel stages, defaults to the CPU count</li>
+ *     <li>{@code --writers=N} — write up to N company files at once; failures are reported
+ *         together at the end</li>
+ *     <li>{@code --snapshot=DIR} — incremental mode: apply the input as a delta to the state
+ *         kept in DIR and rewrite only the companies that changed</li>
+ *     <li>{@code --external-sort=SIZE} — sort with bounded memory, spilling runs to disk once
+ *         the buffer reaches SIZE bytes (suffixes {@code k}, {@code m}, {@code g}); the
+ *         deduplicated input is still held on the heap, so only the sort is bounded</li>
+ *     <li>{@code --intern-names=true|false} — also share one String per repeated first and
+ *         last name, not only per insurance company</li>
+ *     <li>{@code --store=objects|columnar|offheap} — keep members as {@link Enrolled} maps, in
+ *         compact per-company {@link EnrollmentTable}s, or outside the heap in an
+ *         {@link OffHeapEnrollmentStore}; off-heap runs read a single file with the stream
+ *         reader and write one company at a time, so they reject {@code --reader},
+ *         {@code --writers}, {@code --dedupe-map=packed} and {@code --intern-names=true}</li>
+ *     <li>{@code --sort=comparator|folded|radix} — how companies are sorted, see {@link Sorting.Strategy};
+ *         companies are sorted {@code --parallelism} at a time</li>
+ *     <li>{@code --rejects=FILE} — write every skipped input row, with its line number and
+ *         reason, to FILE; a summary of the skipped rows is always logged</li>
+ *     <li>{@code --pipeline=staged|overlapped} — run the stages one after another, or let
+ *         reading, parsing and merging overlap and write companies while others still sort,
+ *         see {@link OverlappedPipeline}; overlapped runs read a single file into enrollee maps</li>
+ *     <li>{@code --metrics=FILE|-} — at the end of the run, write the {@link PipelineMetrics}
+ *         as JSON to FILE, or to standard output for {@code -}</li>
+ *     <li>{@code --compress=none|gzip} — write the company files as plain CSV or as
+ *         {@code .csv.gz}, compressed on several cores; gzip input is always detected and
+ *         read transparently</li>
+ *     <li>{@code --format=csv|binary} — write CSV files, or {@link BinaryCompanyFile}s that
+ *         downstream jobs can map instead of parsing; binary files are written one at a time
+ *         and only by a staged, in-memory run</li>
+ *     <li>{@code --index=true|false} — write a {@link CompanyIndex} of user IDs next to every
+ *         company CSV file for point lookups; needs uncompressed output</li>
+ *     <li>{@code --dedupe-memory=SIZE} — deduplicate in bounded memory, partitioning rows to
+ *         disk by company and user ID once SIZE bytes are buffered, see
+ *         {@link SpillingDeduplicator}; companies are then sorted externally within
+ *         {@code --external-sort}, or SIZE if that is not given. Such runs read a single file
+ *         with the stream reader and sort and write one company at a time, so they reject
+ *         {@code --reader}, {@code --writers}, {@code --sort}, {@code --dedupe-map=packed} and
+ *         {@code --intern-names=true}</li>
+ *     <li>{@code --dedupe-map=hash|packed} — deduplicate every company into a {@code HashMap},
+ *         or into a {@link UserIdMap} that packs user IDs like {@code U1001} into primitive
+ *         keys; used by every reader, the overlapped pipeline and batch inputs, and rejected
+ *         with {@code --store=columnar}, which keeps no enrollee maps</li>
+ * </ul>
+ */
+public class PipelineOptions {
+
+    private ReaderEngine readerEngine = ReaderEngine.STREAM;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long externalSortBytes;
+    private long dedupeMemoryBytes;
+    private int writers = 1;
+    private Path snapshotDirectory;
+    private boolean internNames;
+    private boolean columnar;
+    private boolean offHeap;
+    private boolean packedUserIds;
+    private Sorting.Strategy sortStrategy = Sorting.Strategy.COMPARATOR;
+    private Path rejectsFile;
+    private Path metricsFile;
+    private boolean overlapped;
+    private boolean gzipOutput;
+    private boolean binaryOutput;
+    private boolean indexOutput;
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args arguments of the form {@code --name=value}
+     * @return the parsed options
+     * @throws IllegalArgumentException for unknown switches or invalid values
+     */
+    public static PipelineOptions parse(String... args) {
+        PipelineOptions options = new PipelineOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "reader" -> options.readerEngine = ReaderEngine.fromName(value);
+                case "parallelism" -> options.parallelism = positiveInt(arg, value);
+                case "external-sort" -> options.externalSortBytes = byteSize(arg, value);
+                case "dedupe-memory" -> options.dedupeMemoryBytes = byteSize(arg, value);
+                case "writers" -> options.writers = positiveInt(arg, value);
+                case "snapshot" -> options.snapshotDirectory = Paths.get(value.trim());
+                case "intern-names" -> options.internNames = bool(arg, value);
+                case "store" -> {
+                    String store = store(arg, value);
+                    options.columnar = store.equals("columnar");
+                    options.offHeap = store.equals("offheap");
+                }
+                case "sort" -> options.sortStrategy = Sorting.Strategy.fromName(value);
+                case "rejects" -> options.rejectsFile = Paths.get(value.trim());
+                case "metrics" -> options.metricsFile = Paths.get(value.trim());
+                case "pipeline" -> options.overlapped = overlapped(arg, value);
+                case "compress" -> options.gzipOutput = gzip(arg, value);
+                case "format" -> options.binaryOutput = binary(arg, value);
+                case "index" -> options.indexOutput = bool(arg, value);
+                case "dedupe-map" -> options.packedUserIds = packed(arg, value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.gzipOutput && options.indexOutput) {
+            throw new IllegalArgumentException("--index=true needs uncompressed output, not --compress=gzip");
+        }
+        return options;
+    }
+
+    private static int positiveInt(String arg, String value) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Expected a positive number in: " + arg);
+    }
+
+    private static boolean bool(String arg, String value) {
+        return switch (value.trim().toLowerCase(java.util.Locale.ROOT)) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException("Expected true or false in: " + arg);
+        };
+    }
+
+    private static String store(String arg, String value) {
+        String store = value.trim().toLowerCase(java.util.Locale.ROOT);
+        return switch (store) {
+            case "objects", "columnar", "offheap" -> store;
+            default -> throw new IllegalArgumentException("Expected objects, columnar or offheap in: " + arg);
+        };
+    }
+
+    private static boolean overlapped(String arg, String value) {
+        return switch (value.trim().toLowerCase(java.util.Locale.ROOT)) {
+            case "staged" -> false;
+            case "overlapped" -> true;
+            default -> throw new IllegalArgumentException("Expected staged or overlapped in: " + arg);
+        };
+    }
+
+    private static boolean gzip(String arg, String value) {
+        return switch (value.trim().toLowerCase(java.util.Locale.ROOT)) {
+            case "none" -> false;
+            case "gzip" -> true;
+            default -> throw new IllegalArgumentException("Expected none or gzip in: " + arg);
+        };
+    }
+
+    private static boolean binary(String arg, String value) {
+        return switch (value.trim().toLowerCase(java.util.Locale.ROOT)) {
+            case "csv" -> false;
+            case "binary" -> true;
+            default -> throw new IllegalArgumentException("Expected csv or binary in: " + arg);
+        };
+    }
+
+    private static boolean packed(String arg, String value) {
+        return switch (value.trim().toLowerCase(java.util.Locale.ROOT)) {
+            case "hash" -> false;
+            case "packed" -> true;
+            default -> throw new IllegalArgumentException("Expected hash or packed in: " + arg);
+        };
+    }
+
+    // a positive byte count with an optional k, m or g suffix
+    private static long byteSize(String arg, String value) {
+        String v = value.trim().toLowerCase(java.util.Locale.ROOT);
+        long unit = 1;
+        if (v.endsWith("k") || v.endsWith("m") || v.endsWith("g")) {
+            unit = switch (v.charAt(v.length() - 1)) {
+                case 'k' -> 1L << 10;
+                case 'm' -> 1L << 20;
+                default -> 1L << 30;
+            };
+            v = v.substring(0, v.length() - 1);
+        }
+        try {
+            long parsed = Long.parseLong(v);
+            if (parsed > 0) {
+                return Math.multiplyExact(parsed, unit);
+            }
+        } catch (NumberFormatException | ArithmeticException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Expected a positive size in: " + arg);
+    }
+
+    public ReaderEngine readerEngine() {
+        return readerEngine;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Memory budget of the external sort in bytes, or 0 to sort in memory.
+     */
+    public long externalSortBytes() {
+        return externalSortBytes;
+    }
+
+    /**
+     * Memory budget of the spilling deduplication in bytes, or 0 to deduplicate in memory.
+     */
+    public long dedupeMemoryBytes() {
+        return dedupeMemoryBytes;
+    }
+
+    /**
+     * Number of company files written at the same time; 1 keeps the sequential writer.
+     */
+    public int writers() {
+        return writers;
+    }
+
+    /**
+     * Snapshot directory for incremental runs, or {@code null} for a full run.
+     */
+    public Path snapshotDirectory() {
+        return snapshotDirectory;
+    }
+
+    /**
+     * Whether first and last names are interned as well as insurance companies.
+     */
+    public boolean internNames() {
+        return internNames;
+    }
+
+    /**
+     * Whether members are stored in {@link EnrollmentTable}s instead of enrollee maps.
+     */
+    public boolean columnarStore() {
+        return columnar;
+    }
+
+    /**
+     * Whether members are stored outside the heap in an {@link OffHeapEnrollmentStore}.
+     */
+    public boolean offHeapStore() {
+        return offHeap;
+    }
+
+    /**
+     * Whether companies are deduplicated into {@link UserIdMap}s instead of {@code HashMap}s.
+     */
+    public boolean packedUserIds() {
+        return packedUserIds;
+    }
+
+    public Sorting.Strategy sortStrategy() {
+        return sortStrategy;
+    }
+
+    /**
+     * File receiving every rejected row, or {@code null} to only log a summary.
+     */
+    public Path rejectsFile() {
+        return rejectsFile;
+    }
+
+    /**
+     * Where the JSON metrics summary goes: a file, {@code -} for standard output, or
+     * {@code null} for no summary.
+     */
+    public Path metricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * Whether the stages run overlapped instead of one after another.
+     */
+    public boolean overlapped() {
+        return overlapped;
+    }
+
+    /**
+     * Whether the company files are written gzip compressed.
+     */
+    public boolean gzipOutput() {
+        return gzipOutput;
+    }
+
+    /**
+     * Whether the company files are written as {@link BinaryCompanyFile}s instead of CSV.
+     */
+    public boolean binaryOutput() {
+        return binaryOutput;
+    }
+
+    /**
+     * Whether every company CSV file gets a {@link CompanyIndex}.
+     */
+    public boolean indexOutput() {
+        return indexOutput;
+    }
+
+    /**
+     * How the company CSV files are written.
+     */
+    public CsvFormat csvFormat() {
+        return new CsvFormat(gzipOutput, indexOutput);
+    }
+
+    /**
+     * Returns a fresh per-read {@link ParseContext} with these settings. The caller closes it.
+     *
+     * @throws IOException if the rejects file cannot be created
+     */
+    ParseContext newParseContext() throws IOException {
+        return new ParseContext(internNames, packedUserIds,
+                new RejectCollector(RejectCollector.DEFAULT_SAMPLE_SIZE, rejectsFile));
+    }
+}
@@ -0,0 +1,298 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the pipeline resident and runs jobs sent over a local Unix-domain socket, so a
+ * scheduler with many small files pays for JVM startup, class loading and JIT warm-up once
+ * instead of per file.
+ * <p>
+ * The protocol is one line per message, fields separated by tabs:
+ * <pre>
+ *   RUN      input  output-directory  [--option=value ...]   →  OK  millis  metrics-json
+ *                                                               or ERROR  message
+ *   SHUTDOWN                                                 →  OK
+ * </pre>
+ * The input, the output directory and the {@code --rejects}, {@code --metrics} and
+ * {@code --snapshot} paths of a job must be absolute, because the server does not share
+ * the client's working directory; {@link #submit} makes them so. Jobs print nothing to the
+ * server's standard output.
+ * <p>
+ * A connection may send any number of jobs and gets one reply per job, in order. Every
+ * connection is read on a thread of its own, and only its jobs go to the {@code jobs}
+ * threads, so up to that many jobs run at the same time, further jobs wait for a free
+ * thread, and an idle connection holds up neither jobs nor {@code SHUTDOWN}. A job's options
+ * are parsed like the command line, and its metrics go to its {@code --metrics} target
+ * as well as into the reply.
+ */
+public final class PipelineServer implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(PipelineServer.class.getName());
+
+    // options naming a file or directory, resolved by the client before they are sent
+    private static final List<String> PATH_OPTIONS = List.of("rejects", "metrics", "snapshot");
+
+    // the progress lines of concurrent jobs would only interleave on the server's stdout
+    private static final PrintStream NO_PROGRESS = new PrintStream(OutputStream.nullOutputStream());
+
+    private final Path socket;
+    private final ServerSocketChannel server;
+    private final ExecutorService workers;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private PipelineServer(Path socket, ServerSocketChannel server, int jobs) {
+        this.socket = socket;
+        this.server = server;
+        this.workers = Executors.newFixedThreadPool(jobs);
+    }
+
+    /**
+     * Binds {@code socket} and starts accepting jobs on a background thread. A socket file
+     * left behind by a server that is no longer running is replaced.
+     *
+     * @param socket path of the Unix-domain socket
+     * @param jobs   number of jobs run at the same time, at least 1
+     * @return the running server
+     * @throws IOException if the socket cannot be bound, for example because another
+     *                     server is listening on it
+     */
+    public static PipelineServer start(Path socket, int jobs) throws IOException {
+        if (jobs < 1) {
+            throw new IllegalArgumentException("jobs must be at least 1 but was " + jobs);
+        }
+        if (Files.exists(socket) && isListening(socket)) {
+            throw new IOException("A server is already listening on " + socket);
+        }
+        Files.deleteIfExists(socket);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        PipelineServer pipelineServer = new PipelineServer(socket, server, jobs);
+        Thread acceptor = new Thread(pipelineServer::acceptLoop, "pipeline-server");
+        acceptor.start();
+        logger.info("Serving jobs on " + socket.toAbsolutePath() + ", " + jobs + " at a time");
+        return pipelineServer;
+    }
+
+    private static boolean isListening(Path socket) {
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Blocks until the server has been shut down.
+     */
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Stops accepting jobs and connections and removes the socket file; jobs already running
+     * are finished and answered, then their connections are closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            server.close();
+            workers.shutdown();
+            // ends the reads of idle connections; a connection waiting for its job replies first
+            for (SocketChannel connection : connections) {
+                try {
+                    connection.shutdownInput();
+                } catch (IOException e) {
+                    logger.fine("Cannot end connection: " + e.getMessage());
+                }
+            }
+            Files.deleteIfExists(socket);
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    private void acceptLoop() {
+        try {
+            while (true) {
+                SocketChannel connection = server.accept();
+                connections.add(connection);
+                if (!server.isOpen()) {
+                    // accepted while close() ended the others
+                    connection.shutdownInput();
+                }
+                Thread reader = new Thread(() -> serve(connection), "pipeline-connection");
+                reader.start();
+            }
+        } catch (ClosedChannelException e) {
+            // closed by close()
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Server socket failed", e);
+        }
+    }
+
+    // reads the requests of one connection; only the jobs take a worker
+    private void serve(SocketChannel connection) {
+        try (connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(connection), StandardCharsets.UTF_8));
+             Writer out = Channels.newWriter(connection, StandardCharsets.UTF_8)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.equals("SHUTDOWN")) {
+                    out.write("OK\n");
+                    out.flush();
+                    close();
+                    return;
+                }
+                out.write(runOnWorker(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.warning("Connection failed: " + e.getMessage());
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private String runOnWorker(String request) {
+        try {
+            return workers.submit(() -> run(request)).get();
+        } catch (RejectedExecutionException e) {
+            return "ERROR\tServer is shutting down";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR\tInterrupted while waiting for the job";
+        } catch (ExecutionException e) {
+            return "ERROR\t" + String.valueOf(e.getCause()).replace('\n', ' ').replace('\t', ' ');
+        }
+    }
+
+    // runs one RUN line and returns its reply
+    static String run(String request) {
+        String[] fields = request.split("\t", -1);
+        if (fields.length < 3 || !fields[0].equals("RUN")) {
+            return "ERROR\tExpected RUN<tab>input<tab>output-directory[<tab>--option=value...] or SHUTDOWN";
+        }
+        long start = System.nanoTime();
+        try {
+            PipelineOptions options = PipelineOptions.parse(Arrays.copyOfRange(fields, 3, fields.length));
+            checkAbsolute(Paths.get(fields[1]), Paths.get(fields[2]), options.rejectsFile(),
+                    options.snapshotDirectory(), options.metricsFile());
+            PipelineMetrics metrics = Pipeline.run(fields[1], options, Paths.get(fields[2]), NO_PROGRESS);
+            String json = metrics.toJson();
+            if (options.metricsFile() != null && !options.metricsFile().toString().equals("-")) {
+                Files.writeString(options.metricsFile(), json);
+            }
+            return "OK\t" + (System.nanoTime() - start) / 1_000_000 + "\t" + json;
+        } catch (Exception e) {
+            logger.warning("Job " + fields[1] + " failed: " + e);
+            return "ERROR\t" + String.valueOf(e.getMessage()).replace('\n', ' ').replace('\t', ' ');
+        }
+    }
+
+    private static void checkAbsolute(Path... paths) {
+        for (Path path : paths) {
+            if (path != null && !path.isAbsolute() && !path.toString().equals("-")) {
+                throw new IllegalArgumentException("Job paths must be absolute but got: " + path);
+            }
+        }
+    }
+
+    /**
+     * Sends one job to a running server and waits for its reply. Relative paths are
+     * resolved against this process's working directory before they are sent.
+     *
+     * @param socket          path of the server's socket
+     * @param inputPath       the CSV file, directory or glob to process
+     * @param outputDirectory directory receiving the company files
+     * @param options         the job's switches, as on the command line
+     * @return the reply line: {@code OK}, the run time in milliseconds and the metrics, or
+     *         {@code ERROR} and a message, separated by tabs
+     * @throws IOException if the server cannot be reached
+     */
+    public static String submit(Path socket, String inputPath, Path outputDirectory, String... options)
+            throws IOException {
+        List<String> fields = new ArrayList<>(List.of("RUN", inputPath, outputDirectory.toString()));
+        fields.addAll(List.of(options));
+        for (String field : fields) {
+            if (field.indexOf('\t') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Job fields cannot contain tabs or line breaks: " + field);
+            }
+        }
+        fields.set(1, Paths.get(inputPath).toAbsolutePath().toString());
+        fields.set(2, outputDirectory.toAbsolutePath().toString());
+        for (int i = 3; i < fields.size(); i++) {
+            fields.set(i, absoluteOption(fields.get(i)));
+        }
+        return send(socket, String.join("\t", fields));
+    }
+
+    private static String absoluteOption(String option) {
+        for (String name : PATH_OPTIONS) {
+            String prefix = "--" + name + "=";
+            if (option.startsWith(prefix) && !option.substring(prefix.length()).trim().equals("-")) {
+                return prefix + Paths.get(option.substring(prefix.length()).trim()).toAbsolutePath();
+            }
+        }
+        return option;
+    }
+
+    /**
+     * Asks a running server to shut down once its running jobs are done.
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public static void shutdown(Path socket) throws IOException {
+        send(socket, "SHUTDOWN");
+    }
+
+    private static String send(Path socket, String request) throws IOException {
+        try (SocketChannel connection = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(connection), StandardCharsets.UTF_8));
+             Writer out = Channels.newWriter(connection, StandardCharsets.UTF_8)) {
+            out.write(request);
+            out.write('\n');
+            out.flush();
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Server closed the connection without a reply");
+            }
+            return reply;
+        }
+    }
+}
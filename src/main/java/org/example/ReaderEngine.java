@@ -0,0 +1,93 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The ways {@link Main} can turn an input file into the company → (userId → enrollee) map.
+ * Every engine returns the same map for the same file.
+ */
+public enum ReaderEngine {
+    /** Line-oriented {@link CSVReader}. */
+    STREAM {
+        @Override
+        Map<String, Map<String, Enrolled>> read(String filePath, PipelineOptions options, ParseContext context)
+                throws IOException {
+            return CSVReader.readEnrollees(filePath, context);
+        }
+
+        @Override
+        Map<String, EnrollmentTable> readTables(String filePath, PipelineOptions options, ParseContext context)
+                throws IOException {
+            return CSVReader.readEnrolleeTables(filePath, context);
+        }
+    },
+    /** Memory-mapped, byte-level {@link MappedCSVReader}. */
+    MAPPED {
+        @Override
+        Map<String, Map<String, Enrolled>> read(String filePath, PipelineOptions options, ParseContext context)
+                throws IOException {
+            return MappedCSVReader.readEnrollees(filePath, context);
+        }
+
+        @Override
+        Map<String, EnrollmentTable> readTables(String filePath, PipelineOptions options, ParseContext context)
+                throws IOException {
+            return MappedCSVReader.readEnrolleeTables(filePath, context);
+        }
+    },
+    /** Memory-mapped reader parsing line-aligned chunks on several threads. */
+    PARALLEL {
+        @Override
+        Map<String, Map<String, Enrolled>> read(String filePath, PipelineOptions options, ParseContext context)
+                throws IOException {
+            return MappedCSVReader.readEnrolleesParallel(filePath, options.parallelism(), context);
+        }
+
+        @Override
+        Map<String, EnrollmentTable> readTables(String filePath, PipelineOptions options, ParseContext context)
+                throws IOException {
+            return MappedCSVReader.readEnrolleeTablesParallel(filePath, options.parallelism(), context);
+        }
+    };
+
+    /**
+     * Reads the file into the company → (userId → enrollee) map. Rejected rows are logged
+     * as one summary, and written to the {@code --rejects} file if one is set.
+     */
+    Map<String, Map<String, Enrolled>> read(String filePath, PipelineOptions options) throws IOException {
+        try (ParseContext context = options.newParseContext()) {
+            return read(filePath, options, context);
+        }
+    }
+
+    /**
+     * Reads the file into one {@link EnrollmentTable} per lower-cased company, reporting
+     * rejected rows like {@link #read(String, PipelineOptions)}.
+     */
+    Map<String, EnrollmentTable> readTables(String filePath, PipelineOptions options) throws IOException {
+        try (ParseContext context = options.newParseContext()) {
+            return readTables(filePath, options, context);
+        }
+    }
+
+    abstract Map<String, Map<String, Enrolled>> read(String filePath, PipelineOptions options, ParseContext context)
+            throws IOException;
+
+    abstract Map<String, EnrollmentTable> readTables(String filePath, PipelineOptions options, ParseContext context)
+            throws IOException;
+
+    /**
+     * Looks up an engine by its case-insensitive name.
+     *
+     * @throws IllegalArgumentException if no engine has that name
+     */
+    public static ReaderEngine fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown reader engine: " + name);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Collects the rows a read skips, instead of logging each one.
+ * <p>
+ * Every reject only bumps a per-reason counter, so a file full of bad rows costs hardly more
+ * to read than a clean one. The first rows rejected, in file order, are kept as a bounded
+ * sample with their line numbers, and when a side file is given every rejected row is
+ * appended to it by a background writer thread. The reader logs a single summary line at
+ * the end.
+ * <p>
+ * Counting is thread safe. Parallel readers give each chunk its own
+ * {@link #forChunk(boolean) child} whose sample is merged back in file order. A batch read
+ * gives each file a {@link #forFile(String) child} whose rejects are located as
+ * {@code file:line}, in the sample, the summary and the side file's line column.
+ */
+public class RejectCollector implements Closeable {
+
+    /**
+     * Why a row was skipped.
+     */
+    public enum Reason {
+        FIELD_COUNT("wrong field count"),
+        MISSING_USER_ID("missing User Id"),
+        BAD_VERSION("invalid version number"),
+        MISSING_COMPANY("missing Insurance Company"),
+        UNEXPECTED("unexpected error");
+
+        private final String label;
+
+        Reason(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Human readable description used in the summary.
+         */
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * One sampled reject.
+     *
+     * @param line   1-based line number in the input file, counting the header
+     * @param reason why the row was skipped
+     * @param row    the line as it appeared in the file
+     * @param file   the file of a batch the row was read from, or {@code null} for a
+     *               single-file read
+     */
+    public record Rejected(long line, Reason reason, String row, String file) {
+
+        public Rejected(long line, Reason reason, String row) {
+            this(line, reason, row, null);
+        }
+
+        /**
+         * Returns the line number, prefixed with {@code file:} for a row of a batch.
+         */
+        public String location() {
+            return file == null ? Long.toString(line) : file + ":" + line;
+        }
+    }
+
+    static final int DEFAULT_SAMPLE_SIZE = 20;
+
+    // side file entries waiting for the writer thread
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final String END_OF_STREAM = new String("end of rejects");
+
+    private final Map<Reason, LongAdder> counts;
+    private final int sampleSize;
+    private final List<Rejected> sample = new ArrayList<>();
+    private final SideFile sideFile;
+    // chunks report through the collector they were created from
+    private final boolean chunk;
+    // the batch file whose rows this collector sees, or null
+    private final String file;
+
+    /**
+     * Creates a collector that keeps {@value #DEFAULT_SAMPLE_SIZE} sample rows and writes no
+     * side file.
+     */
+    public RejectCollector() {
+        this(DEFAULT_SAMPLE_SIZE, (SideFile) null);
+    }
+
+    /**
+     * @param sampleSize number of rejected rows kept in memory
+     * @param sideFile   file receiving every rejected row, or {@code null}
+     * @throws IOException if the side file cannot be created
+     */
+    public RejectCollector(int sampleSize, Path sideFile) throws IOException {
+        this(checkSampleSize(sampleSize), sideFile == null ? null : new SideFile(sideFile));
+    }
+
+    private RejectCollector(int sampleSize, SideFile sideFile) {
+        this.counts = new EnumMap<>(Reason.class);
+        for (Reason reason : Reason.values()) {
+            counts.put(reason, new LongAdder());
+        }
+        this.sampleSize = sampleSize;
+        this.sideFile = sideFile;
+        this.chunk = false;
+        this.file = null;
+    }
+
+    private static int checkSampleSize(int sampleSize) {
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("sampleSize must not be negative but was " + sampleSize);
+        }
+        return sampleSize;
+    }
+
+    private RejectCollector(RejectCollector parent, boolean withSideFile, String file) {
+        this.counts = parent.counts;
+        this.sampleSize = parent.sampleSize;
+        this.sideFile = withSideFile ? parent.sideFile : null;
+        this.chunk = true;
+        this.file = file;
+    }
+
+    /**
+     * Returns a collector for one chunk of a parallel read. It shares the counters of this
+     * collector and keeps its own sample, merged back by {@link #mergeChunk}.
+     *
+     * @param absoluteLines whether the chunk knows the absolute line numbers of its rows; only
+     *                      then does it write to the side file
+     */
+    RejectCollector forChunk(boolean absoluteLines) {
+        return new RejectCollector(this, absoluteLines, file);
+    }
+
+    /**
+     * Returns a collector for one file of a batch, which numbers its own lines. It shares
+     * the counters and the side file of this collector, keeps its own sample, merged back
+     * by {@link #mergeChunk}, and locates its rejects in {@code file}.
+     */
+    RejectCollector forFile(String file) {
+        return new RejectCollector(this, true, file);
+    }
+
+    /**
+     * Adds the sample of a chunk, whose line numbers are shifted by {@code lineOffset}.
+     * Chunks must be merged in file order.
+     */
+    synchronized void mergeChunk(RejectCollector chunk, long lineOffset) {
+        for (Rejected rejected : chunk.sample) {
+            if (sample.size() >= sampleSize) {
+                return;
+            }
+            sample.add(new Rejected(rejected.line() + lineOffset, rejected.reason(), rejected.row(), rejected.file()));
+        }
+    }
+
+    /**
+     * Whether rejects are also written to a side file, which needs absolute line numbers.
+     */
+    boolean writesSideFile() {
+        return sideFile != null;
+    }
+
+    /**
+     * Records one rejected row. The row text is only produced when it is sampled or
+     * written to the side file.
+     *
+     * @param reason why the row was skipped
+     * @param line   line number of the row
+     * @param row    supplies the line as it appeared in the file
+     */
+    public void reject(Reason reason, long line, Supplier<String> row) {
+        counts.get(reason).increment();
+        if (sideFile == null && sample.size() >= sampleSize) {
+            return;
+        }
+        Rejected rejected = new Rejected(line, reason, row.get(), file);
+        synchronized (this) {
+            if (sample.size() < sampleSize) {
+                sample.add(rejected);
+            }
+        }
+        if (sideFile != null) {
+            sideFile.append(rejected.location() + "," + reason + "," + rejected.row());
+        }
+    }
+
+    public long count(Reason reason) {
+        return counts.get(reason).sum();
+    }
+
+    public long total() {
+        long total = 0;
+        for (LongAdder count : counts.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the sampled rejects, in file order for sequential reads.
+     */
+    public synchronized List<Rejected> sample() {
+        return Collections.unmodifiableList(new ArrayList<>(sample));
+    }
+
+    /**
+     * Returns the one-line summary, e.g.
+     * {@code Rejected 3 rows (invalid version number: 2, missing User Id: 1); first at lines 4, 9, 12},
+     * with lines like {@code drop/a.csv:4} for a batch.
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder("Rejected ").append(total()).append(" rows (");
+        String separator = "";
+        for (Reason reason : Reason.values()) {
+            long count = count(reason);
+            if (count > 0) {
+                summary.append(separator).append(reason.label()).append(": ").append(count);
+                separator = ", ";
+            }
+        }
+        summary.append(')');
+        List<Rejected> rejected = sample();
+        if (!rejected.isEmpty()) {
+            summary.append("; first at lines ");
+            for (int i = 0; i < rejected.size(); i++) {
+                summary.append(i == 0 ? "" : ", ").append(rejected.get(i).location());
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Logs the summary as a single warning, if anything was rejected. Chunk collectors log
+     * nothing; their parent logs the combined summary once.
+     */
+    void logSummary(Logger logger) {
+        if (!chunk && total() > 0) {
+            logger.warning(this::summary);
+        }
+    }
+
+    /**
+     * Flushes and closes the side file, if any.
+     *
+     * @throws IOException if writing the side file failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (sideFile != null) {
+            sideFile.close();
+        }
+    }
+
+    // appends lines on a background thread through a bounded queue
+    private static final class SideFile {
+
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final Thread writer;
+        private volatile IOException failure;
+        private boolean closed;
+
+        SideFile(Path path) throws IOException {
+            BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            out.write("Line,Reason,Row");
+            writer = new Thread(() -> drain(out), "reject-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        void append(String entry) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                queue.put(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void drain(BufferedWriter out) {
+            try (out) {
+                while (true) {
+                    String entry = queue.take();
+                    if (entry == END_OF_STREAM) {
+                        return;
+                    }
+                    out.newLine();
+                    out.write(entry);
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                failure = new IOException("Reject writer interrupted", e);
+            }
+            // keep producers from blocking on a full queue
+            queue.clear();
+        }
+
+        synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                while (failure == null && !queue.offer(END_OF_STREAM, 100, TimeUnit.MILLISECONDS)) {
+                    // the writer thread is still catching up
+                }
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while closing the reject file", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
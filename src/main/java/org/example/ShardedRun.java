@@ -0,0 +1,212 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Spreads one job over several processes: {@link #partition} splits the input into shard
+ * files, every shard is run through the usual pipeline by its own process, on this machine
+ * or another, and {@link #merge} combines the company files of all shards.
+ * <p>
+ * Rows are sharded by the hash of their lower-cased company and user ID, so all rows of a
+ * member land in the same shard, in input order, and each shard deduplicates its members
+ * exactly like a single run would. A company's members are therefore split over the shards
+ * without overlap, and the merge only has to interleave each company's sorted shard files
+ * in {@link Sorting#BY_NAME} order.
+ * <p>
+ * Shard runs write {@link BinaryCompanyFile}s ({@code --format=binary}), which hold every
+ * field as it was read, so a user ID, name or company containing a comma survives the
+ * merge. Only the merge renders CSV, in the {@link CsvFormat} it is given, and its files
+ * are byte for byte the ones a single process writes in that format.
+ * <p>
+ * Rows that cannot be read go to the first shard, so they are reported once, with line
+ * numbers that count within that shard.
+ */
+public final class ShardedRun {
+
+    private static final Logger logger = Logger.getLogger(ShardedRun.class.getName());
+
+    private static final String SHARD_PREFIX = "shard-";
+
+    // differs from the seeds of the spill levels, so a shard run with --dedupe-memory
+    // still spreads its members over all partitions
+    private static final int SHARD_SEED = -1;
+
+    private ShardedRun() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Splits the rows of {@code inputPath} into {@code shards} CSV files in
+     * {@code shardDirectory}, named {@code shard-0.csv} to {@code shard-<N-1>.csv}, each with
+     * the input's header. A directory or glob input is split as the batch
+     * {@link BatchReader} would read, its files in name order.
+     *
+     * @param inputPath      the CSV file, plain or gzip compressed, or a directory or glob of them
+     * @param shardDirectory directory receiving the shard files
+     * @param shards         number of shard files, at least 1
+     * @return the shard files, in shard order
+     * @throws IOException if the input cannot be read or a shard cannot be written
+     */
+    public static List<Path> partition(String inputPath, Path shardDirectory, int shards) throws IOException {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be at least 1 but was " + shards);
+        }
+        List<Path> inputs = BatchReader.isBatch(inputPath) ? BatchReader.listFiles(inputPath)
+                : List.of(Paths.get(inputPath));
+        Files.createDirectories(shardDirectory);
+        List<Path> files = new ArrayList<>();
+        BufferedWriter[] out = new BufferedWriter[shards];
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread();
+        // rejects are only counted here; the workers report them
+        try (ParseContext context = new ParseContext()) {
+            tokenizer.bind(context);
+            for (int shard = 0; shard < shards; shard++) {
+                Path file = shardDirectory.resolve(SHARD_PREFIX + shard + ".csv");
+                files.add(file);
+                out[shard] = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            }
+            boolean headerWritten = false;
+            for (Path input : inputs) {
+                try (Stream<String> lines = GzipFiles.lines(input)) {
+                    Iterator<String> rows = lines.iterator();
+                    if (!rows.hasNext()) {
+                        continue;
+                    }
+                    String header = rows.next();
+                    if (!headerWritten) {
+                        for (BufferedWriter shard : out) {
+                            shard.write(header);
+                            shard.write('\n');
+                        }
+                        headerWritten = true;
+                    }
+                    while (rows.hasNext()) {
+                        String row = rows.next();
+                        tokenizer.tokenize(row);
+                        Enrolled e = tokenizer.toEnrollee(logger);
+                        int shard = e == null ? 0 : shardOf(context.companyKey(e.insuranceCompany()), e.userId(), shards);
+                        out[shard].write(row);
+                        out[shard].write('\n');
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        } finally {
+            tokenizer.bind(null);
+            for (BufferedWriter shard : out) {
+                if (shard != null) {
+                    shard.close();
+                }
+            }
+        }
+        logger.info("Partitioned " + inputPath + " into " + shards + " shards in " + shardDirectory.toAbsolutePath());
+        return files;
+    }
+
+    /**
+     * Returns the shard of a member.
+     *
+     * @param company the lower-cased company key
+     */
+    static int shardOf(String company, String userId, int shards) {
+        return SpillingDeduplicator.bucketOf(company, userId, SHARD_SEED, shards);
+    }
+
+    /**
+     * Merges the binary company files the shard runs wrote into CSV company files in
+     * {@code outputDirectory}. Files of the same name are k-way merged in name order.
+     *
+     * @param shardOutputs    the output directories of the shard runs, written with
+     *                        {@code --format=binary}
+     * @param outputDirectory directory receiving the merged company files
+     * @param format          how the merged files are written
+     * @return the number of company files written
+     * @throws IOException if a shard output holds CSV instead of binary company files, a
+     *                     shard file cannot be read or is not sorted by name, or a merged
+     *                     file cannot be written
+     */
+    public static int merge(List<Path> shardOutputs, Path outputDirectory, CsvFormat format) throws IOException {
+        // base name → the shard files holding it, in shard order
+        Map<String, List<Path>> companies = new TreeMap<>();
+        for (Path shardOutput : shardOutputs) {
+            try (Stream<Path> files = Files.list(shardOutput)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    if (!Files.isRegularFile(file)) {
+                        continue;
+                    }
+                    if (name.endsWith(BinaryCompanyFile.SUFFIX)) {
+                        String base = name.substring(0, name.length() - BinaryCompanyFile.SUFFIX.length());
+                        companies.computeIfAbsent(base, k -> new ArrayList<>()).add(file);
+                    } else if (name.endsWith(".csv") || name.endsWith(".csv" + CompanyFileWriter.GZIP_SUFFIX)) {
+                        throw new IOException("Cannot merge CSV company file " + file
+                                + "; run the shards with --format=binary");
+                    }
+                }
+            }
+        }
+        CSVWriter.createOutputDirectory(outputDirectory);
+        for (Map.Entry<String, List<Path>> company : companies.entrySet()) {
+            // base names are already sanitised, so they map to themselves
+            mergeCompany(company.getValue(), outputDirectory.resolve(format.fileNameFor(company.getKey())),
+                    format.indexed());
+        }
+        logger.info("Merged " + companies.size() + " company files from " + shardOutputs.size() + " shards");
+        return companies.size();
+    }
+
+    // one sorted shard file, read a row ahead
+    private static final class Part {
+        private final Iterator<Enrolled> rows;
+        private Enrolled head;
+
+        Part(Path file) throws IOException {
+            BinaryCompanyFile company = BinaryCompanyFile.open(file);
+            if (!company.sortedByName()) {
+                throw new IOException("Cannot merge " + file + ", its rows are not sorted by name");
+            }
+            rows = company.iterator();
+        }
+
+        boolean advance() {
+            head = rows.hasNext() ? rows.next() : null;
+            return head != null;
+        }
+    }
+
+    private static void mergeCompany(List<Path> parts, Path target, boolean indexed) throws IOException {
+        PriorityQueue<Part> heads = new PriorityQueue<>(Comparator.comparing((Part part) -> part.head, Sorting.BY_NAME));
+        try (CompanyFileWriter writer = new CompanyFileWriter(target, indexed)) {
+            for (Path file : parts) {
+                Part part = new Part(file);
+                if (part.advance()) {
+                    heads.add(part);
+                }
+            }
+            while (!heads.isEmpty()) {
+                Part part = heads.poll();
+                writer.write(part.head);
+                if (part.advance()) {
+                    heads.add(part);
+                }
+            }
+            writer.finish();
+        }
+    }
+}
@@ -1,16 +1,56 @@
 package org.example;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.logging.Logger;
 public class Sorting {
     private static final Logger logger = Logger.getLogger(Sorting.class.getName());
+
+    // last name, then first name, ignoring case; missing names sort last.
+    // members with the same name are ordered by user id, so the order never depends on
+    // how the input map happened to be built
+    static final Comparator<Enrolled> BY_NAME = Comparator
+            .comparing(Enrolled::lastName, Comparator.nullsLast(String::compareToIgnoreCase))
+            .thenComparing(Enrolled::firstName, Comparator.nullsLast(String::compareToIgnoreCase))
+            .thenComparing(Enrolled::userId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * How {@link #sortByName(Map, Strategy, int)} orders the enrollees of a company. Every
+     * strategy produces the {@link #BY_NAME} order.
+     */
+    public enum Strategy {
+        /** Sorts with {@link #BY_NAME}, case folding on every comparison. */
+        COMPARATOR,
+        /** Folds every name once into a {@link FoldedNameKey} and sorts the keys. */
+        FOLDED,
+        /** Multikey radix quicksort of ASCII names, see {@link NameRadixSort}. */
+        RADIX;
+
+        /**
+         * Looks up a strategy by its case-insensitive name.
+         *
+         * @throws IllegalArgumentException if no strategy has that name
+         */
+        public static Strategy fromName(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort strategy: " + name);
+            }
+        }
+    }
+
     private Sorting() {
         throw new IllegalStateException("Utility class");
     }
     /**
      * Sorts each company's enrollees by last name, then first name (ascending).
+     * Enrollees with the same name are ordered by user ID.
      * Returns a new Map with sorted inner maps.
      *
      * @param grouped the map from CSVReader (company -> userId -> enrollee)
@@ -26,10 +66,7 @@ public class Sorting {
                         // build a new sorted inner map for each company
                         entry -> entry.getValue().values().stream()
                                 // sort by last then first name
-                                .sorted(Comparator
-                                        .comparing(Enrolled::lastName, Comparator.nullsLast(String::compareToIgnoreCase))
-                                        .thenComparing(Enrolled::firstName, Comparator.nullsLast(String::compareToIgnoreCase))
-                                )
+                                .sorted(BY_NAME)
                                 // collect enrolles into a linked hash map
                                 // key = user id; value = enrollee obj
                                 .collect(Collectors.toMap(
@@ -47,4 +84,146 @@ public class Sorting {
                 ));
     }
 
-}
\ No newline at end of file
+    /**
+     * Sorts each company's enrollees like {@link #sortByName(Map)}, with the given strategy,
+     * sorting up to {@code parallelism} companies at the same time on a fork/join pool.
+     * Companies keep the iteration order of {@code grouped}.
+     *
+     * @param grouped     the map from CSVReader (company -> userId -> enrollee)
+     * @param strategy    how each company is sorted
+     * @param parallelism maximum number of companies sorted at once, at least 1
+     * @return a map with sorted enrollees for each company
+     */
+    public static Map<String, Map<String, Enrolled>> sortByName(Map<String, Map<String, Enrolled>> grouped,
+                                                                Strategy strategy, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1 but was " + parallelism);
+        }
+        logger.info("Sorting enrollees by last and first name (ascending) with strategy " + strategy);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // companies are independent, so each one is its own task
+            Map<String, ForkJoinTask<Map<String, Enrolled>>> tasks = new LinkedHashMap<>();
+            grouped.forEach((company, enrollees) ->
+                    tasks.put(company, pool.submit(() -> sortCompany(enrollees.values(), strategy))));
+            Map<String, Map<String, Enrolled>> sorted = new LinkedHashMap<>();
+            tasks.forEach((company, task) -> sorted.put(company, task.join()));
+            return sorted;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sorts the enrollees of one company with {@code strategy} into a user ID → enrollee
+     * map in {@link #BY_NAME} order.
+     */
+    static Map<String, Enrolled> sortCompany(Collection<Enrolled> enrollees, Strategy strategy) {
+        if (strategy == Strategy.RADIX) {
+            Enrolled[] sorted = NameRadixSort.sort(enrollees);
+            if (sorted == null) {
+                // non-ASCII names
+                return sortCompany(enrollees, Strategy.COMPARATOR);
+            }
+            Map<String, Enrolled> result = new LinkedHashMap<>();
+            for (Enrolled e : sorted) {
+                result.putIfAbsent(e.userId(), e);
+            }
+            return result;
+        }
+        if (strategy == Strategy.FOLDED) {
+            FoldedNameKey[] keys = new FoldedNameKey[enrollees.size()];
+            int n = 0;
+            for (Enrolled e : enrollees) {
+                FoldedNameKey key = FoldedNameKey.of(e);
+                if (key == null) {
+                    // names the keys cannot represent; the whole company uses the comparator
+                    return sortCompany(enrollees, Strategy.COMPARATOR);
+                }
+                keys[n++] = key;
+            }
+            Arrays.sort(keys, 0, n);
+            Map<String, Enrolled> sorted = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                // same merge rule as sortByName: the first entry of a user id stays
+                sorted.putIfAbsent(keys[i].enrollee.userId(), keys[i].enrollee);
+            }
+            return sorted;
+        }
+        return enrollees.stream()
+                .sorted(BY_NAME)
+                .collect(Collectors.toMap(Enrolled::userId, Function.identity(), (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * Bounded-memory alternative to {@link #sortByName(Map)} followed by
+     * {@link CSVWriter#writeByCompany(Map, Path)}.
+     * <p>
+     * Enrollees are buffered until the estimated size of the buffer reaches
+     * {@code memoryBudgetBytes}; the buffer is then sorted per company and spilled to
+     * temporary run files. Finally the runs of each company are k-way merged straight into
+     * that company's CSV file. The files are identical to the in-memory path.
+     * <p>
+     * Only the sort stage is bounded: it avoids the sorted second copy of the companies, but
+     * {@code grouped} itself, the whole deduplicated input, must still fit on the heap. Inputs
+     * larger than the heap need {@code --dedupe-memory}, see {@link SpillingDeduplicator}.
+     * <p>
+     * {@code grouped} is not modified. Every company is attempted; like
+     * {@link CSVWriter#writeByCompanyConcurrent}, the failures are thrown together at the end.
+     *
+     * @param grouped           the map from CSVReader (company -> userId -> enrollee)
+     * @param memoryBudgetBytes approximate heap the sort buffer may use
+     * @param outputDirectory   directory receiving one CSV file per company
+     * @throws CompanyWriteException if one or more company files could not be written
+     * @throws IOException           if a run file cannot be written
+     */
+    public static void sortByNameExternal(Map<String, Map<String, Enrolled>> grouped, long memoryBudgetBytes,
+                                          Path outputDirectory) throws IOException {
+        sortByNameExternal(grouped.entrySet().iterator(), memoryBudgetBytes, outputDirectory, CsvFormat.PLAIN);
+    }
+
+    /**
+     * Sorts and writes the companies {@code companies} returns like
+     * {@link #sortByNameExternal(Map, long, Path)}, in the given format. A company is only
+     * used until its members are buffered, so {@link #draining(Map)} lets the caller's map
+     * give up each company as soon as it has been handed over.
+     */
+    static void sortByNameExternal(Iterator<Map.Entry<String, Map<String, Enrolled>>> companies,
+                                   long memoryBudgetBytes, Path outputDirectory, CsvFormat format)
+            throws IOException {
+        logger.info("Sorting enrollees by last and first name with a memory budget of " + memoryBudgetBytes + " bytes");
+        try (ExternalSorter sorter = new ExternalSorter(memoryBudgetBytes)) {
+            while (companies.hasNext()) {
+                Map.Entry<String, Map<String, Enrolled>> company = companies.next();
+                for (Enrolled e : company.getValue().values()) {
+                    sorter.add(company.getKey(), e);
+                }
+            }
+            sorter.writeByCompany(outputDirectory, format);
+        }
+    }
+
+    /**
+     * Returns an iterator over the companies of {@code grouped} that removes each company
+     * from the map as it returns it. The map is empty once the iterator is exhausted.
+     *
+     * @param grouped a modifiable map (company -> userId -> enrollee)
+     */
+    static Iterator<Map.Entry<String, Map<String, Enrolled>>> draining(Map<String, Map<String, Enrolled>> grouped) {
+        Iterator<Map.Entry<String, Map<String, Enrolled>>> entries = grouped.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, Map<String, Enrolled>> next() {
+                Map.Entry<String, Map<String, Enrolled>> entry = entries.next();
+                Map.Entry<String, Map<String, Enrolled>> company = Map.entry(entry.getKey(), entry.getValue());
+                entries.remove();
+                return company;
+            }
+        };
+    }
+}
@@ -0,0 +1,288 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Deduplicates enrollees in bounded memory by hash-partitioning them to disk, the way a
+ * Grace hash join partitions its inputs.
+ * <p>
+ * Rows are deduplicated in an in-memory buffer until its estimated heap use reaches the
+ * budget. The buffer is then spilled: every surviving row goes to one of {@code partitions}
+ * files chosen by the hash of its company and user ID, so all rows of a member end up in
+ * the same file. Once the input is done, each partition is loaded and deduplicated on its
+ * own. A partition that is still too big for the budget is split again with another hash,
+ * up to {@value #MAX_LEVELS} levels deep.
+ * <p>
+ * Spills are appended in input order and a member occurs at most once per spill, so
+ * keeping the first row with the highest version when a partition is loaded applies the
+ * same rule as the in-memory readers: on equal versions the row that comes first wins.
+ */
+final class SpillingDeduplicator implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(SpillingDeduplicator.class.getName());
+
+    static final int DEFAULT_PARTITIONS = 64;
+
+    private static final int MAX_LEVELS = 4;
+    // a spilled row takes roughly this many times its file size once loaded again
+    private static final int HEAP_PER_SPILLED_BYTE = 4;
+    // hash map entry and inner map share per buffered row
+    private static final long ENTRY_BYTES = 64;
+
+    /**
+     * Receives the deduplicated rows.
+     */
+    interface Sink {
+        void accept(String company, Enrolled e) throws IOException;
+    }
+
+    private final long memoryBudgetBytes;
+    private final int partitions;
+    private final Path tempDirectory;
+    private Map<String, Map<String, Enrolled>> buffer = new HashMap<>();
+    private long bufferedBytes;
+    private Path[] partitionFiles;
+    private DataOutputStream[] partitionOut;
+    private int spills;
+    private int files;
+
+    /**
+     * @param memoryBudgetBytes approximate heap the buffered rows, and later each loaded
+     *                          partition, may use
+     * @param partitions        number of files a spill is split into
+     * @throws IOException if the temporary directory cannot be created
+     */
+    SpillingDeduplicator(long memoryBudgetBytes, int partitions) throws IOException {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("memory budget must be positive but was " + memoryBudgetBytes);
+        }
+        if (partitions < 2) {
+            throw new IllegalArgumentException("partitions must be at least 2 but was " + partitions);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.partitions = partitions;
+        this.tempDirectory = Files.createTempDirectory("enrollment-dedupe");
+    }
+
+    /**
+     * Adds one row of a company, spilling the buffer to disk if it is full.
+     *
+     * @param company the lower-cased company key
+     */
+    void add(String company, Enrolled e) throws IOException {
+        Map<String, Enrolled> members = buffer.computeIfAbsent(company, k -> new HashMap<>());
+        Enrolled existing = members.putIfAbsent(e.userId(), e);
+        if (existing == null) {
+            bufferedBytes += ExternalSorter.estimateBytes(e) + ENTRY_BYTES;
+            if (bufferedBytes >= memoryBudgetBytes) {
+                spill();
+            }
+        } else if (Enrolled.supersedes(e.version(), existing.version())) {
+            members.put(e.userId(), e);
+        }
+    }
+
+    /**
+     * Reads every row of {@code filePath}, plain or gzip compressed, into this deduplicator.
+     * Skipped rows are reported to {@code context} like in {@link CSVReader}.
+     *
+     * @param filePath the CSV file, with a header row
+     * @param context  the per-read state; must not be shared with another thread
+     * @throws IOException if the file cannot be read or a spill cannot be written
+     */
+    void addFile(String filePath, ParseContext context) throws IOException {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(context);
+        context.startAtLine(1);
+        try (Stream<String> lines = GzipFiles.lines(Paths.get(filePath))) {
+            // skip header
+            Iterator<String> rows = lines.skip(1).iterator();
+            while (rows.hasNext()) {
+                tokenizer.tokenize(rows.next());
+                Enrolled e = tokenizer.toEnrollee(logger);
+                if (e != null) {
+                    add(context.companyKey(e.insuranceCompany()), e);
+                }
+            }
+            context.rejects().logSummary(logger);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            tokenizer.bind(null);
+        }
+    }
+
+    /**
+     * Number of times the buffer was spilled to disk.
+     */
+    int spills() {
+        return spills;
+    }
+
+    /**
+     * Hands every deduplicated row to {@code sink}, one partition at a time. Without a
+     * spill, the buffer is handed over as it is.
+     */
+    void forEachSurvivor(Sink sink) throws IOException {
+        if (partitionOut == null) {
+            emit(buffer, sink);
+            buffer = new HashMap<>();
+            return;
+        }
+        spill();
+        for (DataOutputStream out : partitionOut) {
+            out.close();
+        }
+        logger.info("Deduplicating " + partitions + " partitions of " + spills + " spill(s)");
+        for (Path partition : partitionFiles) {
+            process(partition, 1, sink);
+        }
+    }
+
+    private void spill() throws IOException {
+        if (partitionOut == null) {
+            partitionFiles = new Path[partitions];
+            partitionOut = new DataOutputStream[partitions];
+            for (int i = 0; i < partitions; i++) {
+                partitionFiles[i] = newFile();
+                partitionOut[i] = open(partitionFiles[i]);
+            }
+        }
+        spills++;
+        for (Map.Entry<String, Map<String, Enrolled>> company : buffer.entrySet()) {
+            for (Enrolled e : company.getValue().values()) {
+                write(partitionOut[partition(company.getKey(), e.userId(), 0)], company.getKey(), e);
+            }
+        }
+        buffer = new HashMap<>();
+        bufferedBytes = 0;
+    }
+
+    // deduplicates one partition, or splits it further if it would not fit
+    private void process(Path partition, int level, Sink sink) throws IOException {
+        if (Files.size(partition) * HEAP_PER_SPILLED_BYTE > memoryBudgetBytes && level < MAX_LEVELS) {
+            Path[] parts = new Path[partitions];
+            DataOutputStream[] out = new DataOutputStream[partitions];
+            try {
+                for (int i = 0; i < partitions; i++) {
+                    parts[i] = newFile();
+                    out[i] = open(parts[i]);
+                }
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(partition),
+                        1 << 16))) {
+                    for (String company = next(in); company != null; company = next(in)) {
+                        Enrolled e = ExternalSorter.readEnrollee(in);
+                        write(out[partition(company, e.userId(), level)], company, e);
+                    }
+                }
+            } finally {
+                for (DataOutputStream stream : out) {
+                    if (stream != null) {
+                        stream.close();
+                    }
+                }
+            }
+            Files.delete(partition);
+            for (Path part : parts) {
+                process(part, level + 1, sink);
+            }
+            return;
+        }
+
+        Map<String, Map<String, Enrolled>> merged = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(partition),
+                1 << 16))) {
+            for (String company = next(in); company != null; company = next(in)) {
+                Enrolled e = ExternalSorter.readEnrollee(in);
+                merged.computeIfAbsent(company, k -> new HashMap<>())
+                        .merge(e.userId(), e, Enrolled::latest);
+            }
+        }
+        Files.delete(partition);
+        emit(merged, sink);
+    }
+
+    private static void emit(Map<String, Map<String, Enrolled>> grouped, Sink sink) throws IOException {
+        for (Map.Entry<String, Map<String, Enrolled>> company : grouped.entrySet()) {
+            for (Enrolled e : company.getValue().values()) {
+                sink.accept(company.getKey(), e);
+            }
+        }
+    }
+
+    // every level hashes differently, so a partition that is split again actually spreads
+    private int partition(String company, String userId, int level) {
+        return bucketOf(company, userId, level, partitions);
+    }
+
+    /**
+     * Hashes a member into one of {@code buckets}. Every {@code seed} spreads the members
+     * differently, so the buckets of one seed are spread evenly over those of another.
+     *
+     * @param company the lower-cased company key
+     */
+    static int bucketOf(String company, String userId, int seed, int buckets) {
+        int h = company.hashCode() * 31 + userId.hashCode() + seed * 0x9E3779B9;
+        // murmur3 finalizer, so that similar IDs spread over all buckets
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, buckets);
+    }
+
+    private Path newFile() {
+        return tempDirectory.resolve("partition-" + (++files) + ".bin");
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    private static void write(DataOutputStream out, String company, Enrolled e) throws IOException {
+        ExternalSorter.writeString(out, company);
+        ExternalSorter.writeEnrollee(out, e);
+    }
+
+    // the company of the next record, or null at the end of the partition
+    private static String next(DataInputStream in) throws IOException {
+        try {
+            return ExternalSorter.readString(in);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes all temporary partition files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (partitionOut != null) {
+            for (DataOutputStream out : partitionOut) {
+                out.close();
+            }
+        }
+        try (var paths = Files.list(tempDirectory)) {
+            for (Path file : (Iterable<Path>) paths::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(tempDirectory);
+    }
+}
@@ -0,0 +1,175 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Maps repeated field values to one shared String instance while parsing.
+ * <p>
+ * Lookups take the characters straight from a tokenizer buffer, so a value that is already
+ * known costs a hash and a compare but no allocation. Hashes are those of
+ * {@link String#hashCode()}, which lets {@link #lowerCase(String)} find an entry from the
+ * String alone and hand out its precomputed lower-case form. Once {@code maxEntries}
+ * distinct values are stored, new values are still returned but no longer remembered,
+ * so a column of unique values cannot grow the table without bound.
+ * <p>
+ * Not thread safe; every parsing thread uses its own dictionaries.
+ */
+final class StringDictionary {
+
+    private final int maxEntries;
+    private String[] entries = new String[64];
+    private String[] lowerCase = new String[64];
+    private int size;
+
+    /**
+     * @param maxEntries number of distinct values to remember at most
+     */
+    StringDictionary(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the canonical String for {@code chars[from, to)}.
+     */
+    String intern(char[] chars, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = entries.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            String entry = entries[slot];
+            if (entry == null) {
+                return insert(slot, new String(chars, from, to - from));
+            }
+            if (entry.hashCode() == hash && matches(entry, chars, from, to)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical String for the ASCII bytes {@code bytes[from, to)}.
+     * Callers decode non-ASCII values themselves and use {@link #intern(String)}.
+     */
+    String internAscii(byte[] bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int mask = entries.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            String entry = entries[slot];
+            if (entry == null) {
+                return insert(slot, new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+            }
+            if (entry.hashCode() == hash && matches(entry, bytes, from, to)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical instance equal to {@code value}, remembering {@code value} itself
+     * if it is new.
+     */
+    String intern(String value) {
+        int slot = find(value);
+        String entry = entries[slot];
+        return entry != null ? entry : insert(slot, value);
+    }
+
+    /**
+     * Returns {@code value.toLowerCase(Locale.ROOT)}, computed once per dictionary entry.
+     */
+    String lowerCase(String value) {
+        int slot = find(value);
+        if (entries[slot] == null) {
+            return value.toLowerCase(Locale.ROOT);
+        }
+        String lower = lowerCase[slot];
+        if (lower == null) {
+            lower = value.toLowerCase(Locale.ROOT);
+            lowerCase[slot] = lower;
+        }
+        return lower;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // slot holding value, or the empty slot where it would go
+    private int find(String value) {
+        int hash = value.hashCode();
+        int mask = entries.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            String entry = entries[slot];
+            if (entry == null || entry == value || (entry.hashCode() == hash && entry.equals(value))) {
+                return slot;
+            }
+        }
+    }
+
+    private String insert(int slot, String value) {
+        if (size >= maxEntries) {
+            return value;
+        }
+        entries[slot] = value;
+        size++;
+        // keep the table at most half full
+        if (size * 2 > entries.length) {
+            grow();
+        }
+        return value;
+    }
+
+    private void grow() {
+        String[] oldEntries = entries;
+        String[] oldLowerCase = lowerCase;
+        entries = new String[oldEntries.length * 2];
+        lowerCase = new String[oldEntries.length * 2];
+        int mask = entries.length - 1;
+        for (int i = 0; i < oldEntries.length; i++) {
+            String entry = oldEntries[i];
+            if (entry == null) {
+                continue;
+            }
+            int slot = spread(entry.hashCode()) & mask;
+            while (entries[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            entries[slot] = entry;
+            lowerCase[slot] = oldLowerCase[i];
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String entry, char[] chars, int from, int to) {
+        if (entry.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (entry.charAt(i - from) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String entry, byte[] bytes, int from, int to) {
+        if (entry.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (entry.charAt(i - from) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,287 @@
+package org.example;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collector;
+
+/**
+ * User ID → enrollee map for the members of one company, built for deduplication.
+ * <p>
+ * A {@code HashMap} costs a node per member and hashes every user ID String. This map
+ * keeps its entries in three parallel arrays, probed with open addressing: a {@code long}
+ * key, the member's version and the enrollee. User IDs of up to two ASCII letters followed
+ * by 1 to 12 digits, like {@code U1001}, are packed into the key itself, so finding them
+ * needs neither the String hash nor an equals call. Any other user ID falls back to a key
+ * made of its String hash and is compared with the stored enrollee's user ID.
+ * <p>
+ * {@link #add(Enrolled)} applies the readers' rule, {@link Enrolled#supersedes}, on the
+ * version array alone. Keys are always the user IDs of their values, and entries cannot be
+ * removed. Not thread safe.
+ */
+final class UserIdMap extends AbstractMap<String, Enrolled> {
+
+    // 0 marks a free slot; every used key has exactly one of these bits set
+    private static final long PACKED = 1L << 62;
+    private static final long HASHED = 1L << 61;
+
+    private static final int MAX_PREFIX = 2;
+    private static final int MAX_DIGITS = 12;
+
+    private long[] keys;
+    private int[] versions;
+    private Enrolled[] values;
+    private int size;
+
+    UserIdMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of members the map holds without growing
+     */
+    UserIdMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize) * 2 - 1) * 2;
+        keys = new long[capacity];
+        versions = new int[capacity];
+        values = new Enrolled[capacity];
+    }
+
+    /**
+     * Returns a collector into a {@code UserIdMap} that deduplicates with {@link #add(Enrolled)}.
+     */
+    static Collector<Enrolled, ?, Map<String, Enrolled>> collector() {
+        return Collector.<Enrolled, UserIdMap, Map<String, Enrolled>>of(UserIdMap::new, UserIdMap::add,
+                (left, right) -> {
+                    right.values().forEach(left::add);
+                    return left;
+                }, map -> map, Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /**
+     * Adds an enrollee unless a member with the same user ID and an equal or higher
+     * version is already present.
+     *
+     * @return {@code true} if the map changed
+     * @throws NullPointerException if the user ID or the version is {@code null}
+     */
+    boolean add(Enrolled e) {
+        String userId = Objects.requireNonNull(e.userId(), "userId");
+        int version = Objects.requireNonNull(e.version(), "version");
+        long key = key(userId);
+        int slot = find(key, userId);
+        if (slot >= 0) {
+            if (!Enrolled.supersedes(version, versions[slot])) {
+                return false;
+            }
+            versions[slot] = version;
+            values[slot] = e;
+            return true;
+        }
+        insert(-slot - 1, key, e);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String userId && find(key(userId), userId) >= 0;
+    }
+
+    @Override
+    public Enrolled get(Object key) {
+        if (!(key instanceof String userId)) {
+            return null;
+        }
+        int slot = find(key(userId), userId);
+        return slot >= 0 ? values[slot] : null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code userId} is not the user ID of {@code e}
+     */
+    @Override
+    public Enrolled put(String userId, Enrolled e) {
+        checkKey(userId, e);
+        long key = key(userId);
+        int slot = find(key, userId);
+        if (slot < 0) {
+            insert(-slot - 1, key, e);
+            return null;
+        }
+        Enrolled previous = values[slot];
+        versions[slot] = e.version();
+        values[slot] = e;
+        return previous;
+    }
+
+    /**
+     * Stores {@code e}, or the result of {@code merger} if a member with the same user ID
+     * is present, with a single lookup.
+     *
+     * @throws IllegalArgumentException      if {@code userId} is not the user ID of the value
+     * @throws UnsupportedOperationException if {@code merger} returns {@code null}
+     */
+    @Override
+    public Enrolled merge(String userId, Enrolled e,
+                          BiFunction<? super Enrolled, ? super Enrolled, ? extends Enrolled> merger) {
+        checkKey(userId, e);
+        long key = key(userId);
+        int slot = find(key, userId);
+        if (slot < 0) {
+            insert(-slot - 1, key, e);
+            return e;
+        }
+        Enrolled merged = merger.apply(values[slot], e);
+        if (merged == null) {
+            throw new UnsupportedOperationException("Members cannot be removed");
+        }
+        checkKey(userId, merged);
+        versions[slot] = merged.version();
+        values[slot] = merged;
+        return merged;
+    }
+
+    @Override
+    public Set<Entry<String, Enrolled>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Enrolled>> iterator() {
+                return new Iterator<>() {
+                    private int slot = nextUsed(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, Enrolled> next() {
+                        if (slot >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Enrolled e = values[slot];
+                        slot = nextUsed(slot + 1);
+                        return Map.entry(e.userId(), e);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int nextUsed(int slot) {
+        while (slot < keys.length && keys[slot] == 0) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Packs a user ID of up to two ASCII letters and 1 to 12 digits into a key, or
+     * returns 0 if it has another form. Distinct user IDs give distinct keys: leading
+     * zeros are kept by the digit count, and letters are never 0.
+     */
+    static long pack(String userId) {
+        int length = userId.length();
+        int prefix = 0;
+        long letters = 0;
+        while (prefix < length && prefix < MAX_PREFIX && isAsciiLetter(userId.charAt(prefix))) {
+            letters = letters << 7 | userId.charAt(prefix);
+            prefix++;
+        }
+        int digits = length - prefix;
+        if (digits < 1 || digits > MAX_DIGITS) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = prefix; i < length; i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+        }
+        // value < 10^12 < 2^40, digit count in bits 40-43, letters in bits 47-60
+        return PACKED | letters << 47 | (long) digits << 40 | value;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static long key(String userId) {
+        long packed = pack(userId);
+        return packed != 0 ? packed : HASHED | (userId.hashCode() & 0xFFFFFFFFL);
+    }
+
+    // the slot holding userId, or -(free slot + 1)
+    private int find(long key, String userId) {
+        int mask = keys.length - 1;
+        int slot = spread(key) & mask;
+        for (long stored = keys[slot]; stored != 0; slot = (slot + 1) & mask, stored = keys[slot]) {
+            if (stored == key && ((key & PACKED) != 0 || values[slot].userId().equals(userId))) {
+                return slot;
+            }
+        }
+        return -slot - 1;
+    }
+
+    private void insert(int slot, long key, Enrolled e) {
+        keys[slot] = key;
+        versions[slot] = e.version();
+        values[slot] = e;
+        size++;
+        // keep the table at most half full
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldVersions = versions;
+        Enrolled[] oldValues = values;
+        keys = new long[capacity];
+        versions = new int[capacity];
+        values = new Enrolled[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = spread(oldKeys[i]) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                versions[slot] = oldVersions[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // sequential IDs differ in their low bits only, so they are mixed before probing
+    private static int spread(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+
+    private static void checkKey(String userId, Enrolled e) {
+        Objects.requireNonNull(e.version(), "version");
+        if (!Objects.requireNonNull(userId, "userId").equals(e.userId())) {
+            throw new IllegalArgumentException("Key " + userId + " is not the user ID of " + e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchReaderTest {
+
+    private static final String HEADER = TestCsv.HEADER + "\n";
+
+    // files with overlapping user ids, version ties and bad rows, plus the same rows concatenated
+    private static Path batch(int files, Path concatenated) throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        StringBuilder all = new StringBuilder(HEADER);
+        for (int f = 0; f < files; f++) {
+            String rows = TestCsv.messyRows(f, 300, 200);
+            Files.writeString(directory.resolve(String.format("part-%02d.csv", f)), HEADER + rows);
+            all.append(rows);
+        }
+        Files.writeString(concatenated, all);
+        return directory;
+    }
+
+    @Test
+    public void testBatchEqualsConcatenatedFilesInNameOrder() throws IOException {
+        Path concatenated = Files.createTempFile("concatenated", ".csv");
+        Path directory = batch(12, concatenated);
+        ParseContext single = new ParseContext();
+        Map<String, Map<String, Enrolled>> expected = CSVReader.readEnrollees(concatenated.toString(), single);
+        List<Path> files = BatchReader.listFiles(directory.toString());
+        assertEquals(12, files.size());
+
+        for (String reader : List.of("stream", "mapped", "parallel")) {
+            PipelineOptions options = PipelineOptions.parse("--reader=" + reader, "--parallelism=4");
+            ParseContext context = options.newParseContext();
+            assertEquals(expected, BatchReader.readEnrollees(files, options, context), reader);
+            for (RejectCollector.Reason reason : RejectCollector.Reason.values()) {
+                assertEquals(single.rejects().count(reason), context.rejects().count(reason), reader + " " + reason);
+            }
+            assertEquals(single.accepted(), context.accepted(), reader);
+
+            Map<String, EnrollmentTable> tables = BatchReader.readEnrolleeTables(files, options, options.newParseContext());
+            assertEquals(expected, EnrollmentTable.asMaps(tables), reader);
+        }
+    }
+
+    @Test
+    public void testRejectSampleIsInFileOrder() throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        // a bad version on line 3 of the first file, nothing wrong in the second, and a
+        // missing company on line 2 and a bad version on line 4 of the third
+        Files.writeString(directory.resolve("a.csv"), HEADER + """
+                u1,Ann Lee,1,Acme
+                u2,Bob Roe,x,Acme
+                """);
+        Files.writeString(directory.resolve("b.csv"), HEADER + """
+                u3,Cy Poe,1,Acme
+                """);
+        Files.writeString(directory.resolve("c.csv"), HEADER + """
+                u4,Di Fox,1,
+                u5,Ed Kay,2,Acme
+                u6,Flo Orr,y,Acme
+                """);
+        Path sideFile = Files.createTempFile("rejects", ".csv");
+        List<Path> files = BatchReader.listFiles(directory.toString());
+        try (ParseContext context = new ParseContext(false, new RejectCollector(20, sideFile))) {
+            BatchReader.readEnrollees(files, PipelineOptions.parse(), context);
+
+            List<RejectCollector.Rejected> sample = context.rejects().sample();
+            assertEquals(3, sample.size());
+            // line numbers count within each file, which every reject names
+            assertEquals(files.get(0) + ":3", sample.get(0).location());
+            assertEquals(files.get(2) + ":2", sample.get(1).location());
+            assertEquals(files.get(2) + ":4", sample.get(2).location());
+            assertTrue(context.rejects().summary().endsWith("first at lines " + files.get(0) + ":3, "
+                    + files.get(2) + ":2, " + files.get(2) + ":4"), context.rejects().summary());
+        }
+        List<String> lines = Files.readAllLines(sideFile);
+        assertEquals(4, lines.size());
+        assertTrue(lines.contains(files.get(0) + ":3,BAD_VERSION,u2,Bob Roe,x,Acme"), lines.toString());
+        assertTrue(lines.contains(files.get(2) + ":2,MISSING_COMPANY,u4,Di Fox,1,"), lines.toString());
+        assertTrue(lines.contains(files.get(2) + ":4,BAD_VERSION,u6,Flo Orr,y,Acme"), lines.toString());
+    }
+
+    @Test
+    public void testListFilesFromDirectoryAndGlob() throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        Files.createDirectories(directory.resolve("sub"));
+        for (String name : List.of("b.csv", "a.CSV", "notes.txt", "sub/c.csv")) {
+            Files.writeString(directory.resolve(name), HEADER);
+        }
+
+        assertTrue(BatchReader.isBatch(directory.toString()));
+        assertTrue(BatchReader.isBatch(directory + "/*.csv"));
+        assertFalse(BatchReader.isBatch(directory.resolve("b.csv").toString()));
+
+        assertEquals(names(directory, "a.CSV", "b.csv"), BatchReader.listFiles(directory.toString()));
+        assertEquals(names(directory, "b.csv"), BatchReader.listFiles(directory + "/*.csv"));
+        assertEquals(names(directory, "b.csv", "sub/c.csv"), BatchReader.listFiles(directory + "/**.csv"));
+        assertEquals(names(directory, "sub/c.csv"), BatchReader.listFiles(directory + "/s*/*.csv"));
+        assertThrows(IOException.class, () -> BatchReader.readEnrollees(
+                BatchReader.listFiles(directory + "/*.json"), PipelineOptions.parse(), new ParseContext()));
+    }
+
+    @Test
+    public void testPipelineReadsBatch() throws IOException {
+        Path concatenated = Files.createTempFile("concatenated", ".csv");
+        Path directory = batch(5, concatenated);
+        Path batchOutput = Files.createTempDirectory("batch-out");
+        Path singleOutput = Files.createTempDirectory("single-out");
+
+        PipelineMetrics metrics = Pipeline.run(directory + "/part-*.csv", PipelineOptions.parse(), batchOutput);
+        PipelineMetrics single = Pipeline.run(concatenated.toString(), PipelineOptions.parse(), singleOutput);
+
+        assertTrue(metrics.rejected() > 0);
+        assertEquals(single.rejected(), metrics.rejected());
+        List<String> written = new ArrayList<>();
+        try (var files = Files.list(singleOutput)) {
+            files.forEach(file -> written.add(file.getFileName().toString()));
+        }
+        assertFalse(written.isEmpty());
+        for (String name : written) {
+            assertEquals(Files.readString(singleOutput.resolve(name)), Files.readString(batchOutput.resolve(name)), name);
+        }
+    }
+
+    private static List<Path> names(Path directory, String... names) {
+        List<Path> paths = new ArrayList<>();
+        for (String name : names) {
+            paths.add(directory.resolve(name));
+        }
+        return paths;
+    }
+}
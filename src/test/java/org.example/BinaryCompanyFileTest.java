@@ -0,0 +1,107 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCompanyFileTest {
+
+    private static List<Enrolled> readAll(BinaryCompanyFile file) {
+        List<Enrolled> rows = new ArrayList<>();
+        file.forEach(rows::add);
+        return rows;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Enrolled> enrollees = List.of(
+                new Enrolled("U1", "Jane", "Doe", 3, "Acme Insurance"),
+                new Enrolled("U2", "Élodie", "Durand", -12, "Acme Insurance"),
+                new Enrolled("U3", "Plato", "", 0, "ACME insurance"),
+                new Enrolled("U4", null, null, Integer.MIN_VALUE, "Acme"),
+                new Enrolled("U5", "李", "小龙", Integer.MAX_VALUE, "Acme €"));
+        Path path = Files.createTempFile("company", BinaryCompanyFile.SUFFIX);
+        BinaryCompanyFile.write(path, enrollees.iterator(), false);
+
+        BinaryCompanyFile file = BinaryCompanyFile.open(path);
+        assertEquals(5, file.size());
+        assertFalse(file.sortedByName());
+        assertEquals(enrollees, readAll(file));
+        assertEquals("Durand", file.lastName(1));
+        assertEquals(-12, file.version(1));
+        assertNull(file.firstName(3));
+        // a repeated string is decoded once and shared
+        assertSame(file.insuranceCompany(0), file.insuranceCompany(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> file.get(5));
+    }
+
+    @Test
+    public void testEmptyCompany() throws IOException {
+        Path path = Files.createTempFile("company", BinaryCompanyFile.SUFFIX);
+        BinaryCompanyFile.write(path, List.<Enrolled>of().iterator(), true);
+        BinaryCompanyFile file = BinaryCompanyFile.open(path);
+        assertEquals(0, file.size());
+        assertTrue(file.sortedByName());
+        assertFalse(file.iterator().hasNext());
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path csv = Files.createTempFile("company", ".csv");
+        Files.writeString(csv, "User ID,Full Name,Version,Insurance Company");
+        assertThrows(IOException.class, () -> BinaryCompanyFile.open(csv));
+
+        Path truncated = Files.createTempFile("company", BinaryCompanyFile.SUFFIX);
+        BinaryCompanyFile.write(truncated, List.of(new Enrolled("U1", "A", "B", 1, "C")).iterator(), true);
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, java.util.Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> BinaryCompanyFile.open(truncated));
+    }
+
+    @Test
+    public void testWriteByCompanyAndConvertMatchTheCsvOutput() throws IOException {
+        Map<String, Map<String, Enrolled>> grouped = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            String company = i % 3 == 0 ? "Blue Cross" : "acme";
+            grouped.computeIfAbsent(company, k -> new LinkedHashMap<>())
+                    .put("U" + i, new Enrolled("U" + i, "First" + (i % 7), "Last" + (i % 11), i, company));
+        }
+        Map<String, Map<String, Enrolled>> sorted = Sorting.sortByName(grouped);
+        Path csvDir = Files.createTempDirectory("csv-out");
+        Path binaryDir = Files.createTempDirectory("binary-out");
+        Path convertedDir = csvDir.resolve("converted");
+        CSVWriter.writeByCompany(sorted, csvDir);
+        BinaryCompanyFile.writeByCompany(sorted, binaryDir);
+        assertEquals(2, BinaryCompanyFile.convertDirectory(csvDir, convertedDir));
+
+        for (Map.Entry<String, Map<String, Enrolled>> company : sorted.entrySet()) {
+            List<Enrolled> expected = new ArrayList<>(company.getValue().values());
+            String name = BinaryCompanyFile.fileNameFor(company.getKey());
+            BinaryCompanyFile written = BinaryCompanyFile.open(binaryDir.resolve(name));
+            BinaryCompanyFile converted = BinaryCompanyFile.open(convertedDir.resolve(name));
+            assertEquals(expected, readAll(written));
+            assertEquals(expected, readAll(converted));
+            assertTrue(converted.sortedByName());
+        }
+    }
+
+    @Test
+    public void testConvertFlagsUnsortedFiles() throws IOException {
+        Path csv = Files.createTempFile("company", ".csv");
+        Files.writeString(csv, """
+                User ID,Full Name,Version,Insurance Company
+                U1,Zed Zulu,1,Acme
+                U2,Amy Alpha,1,Acme""");
+        Path binary = Files.createTempFile("company", BinaryCompanyFile.SUFFIX);
+        assertEquals(2, BinaryCompanyFile.convert(csv, binary));
+        assertFalse(BinaryCompanyFile.open(binary).sortedByName());
+    }
+}
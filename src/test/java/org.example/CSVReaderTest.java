@@ -167,8 +167,30 @@ public class CSVReaderTest {
 
         // no exception thrown, malformed row skipped
         assertEquals(1, grouped.get("acme insurance").size());
-        // optional: ensure logger did NOT log anything (since filter catches it)
-        assertTrue(!handler.records.stream().findAny().isPresent(), "No warning expected because malformed row is filtered before parsing");
+        // reported once in the end-of-read summary, with its line number
+        assertEquals(1, handler.records.size());
+        assertEquals("Rejected 1 rows (wrong field count: 1); first at lines 2", handler.records.get(0).getMessage());
+    }
+
+    @Test
+    void testManyBadRowsLogOneSummary() throws Exception {
+        StringBuilder content = new StringBuilder("User Id,Full Name,Version,Insurance Company\n");
+        for (int i = 0; i < 1000; i++) {
+            content.append(i).append(",Alice Adams,v").append(i).append(",Acme Insurance\n");
+        }
+        content.append("\n,No Id,1,Acme Insurance\n");
+        Path csv = writeTempCSV(content.toString());
+
+        ParseContext context = new ParseContext();
+        assertTrue(CSVReader.readEnrollees(csv.toString(), context).isEmpty());
+        assertEquals(1, handler.records.size());
+        assertEquals(1000, context.rejects().count(RejectCollector.Reason.BAD_VERSION));
+        // the blank line is counted but not rejected
+        assertEquals(1, context.rejects().count(RejectCollector.Reason.MISSING_USER_ID));
+        List<RejectCollector.Rejected> sample = context.rejects().sample();
+        assertEquals(RejectCollector.DEFAULT_SAMPLE_SIZE, sample.size());
+        assertEquals(new RejectCollector.Rejected(2, RejectCollector.Reason.BAD_VERSION, "0,Alice Adams,v0,Acme Insurance"),
+                sample.get(0));
     }
 
     @Test
@@ -108,4 +108,72 @@ public class CSVWriterTest {
         Path outputFile = outputDir.resolve("A_c_m_e_Insurance.csv");
         assertTrue(Files.exists(outputFile), "Company names with invalid chars should be sanitized");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConcurrentWriterMatchesSequentialWriter() throws IOException {
+        Map<String, Map<String, Enrolled>> grouped = new java.util.LinkedHashMap<>();
+        for (int c = 0; c < 40; c++) {
+            Map<String, Enrolled> company = new java.util.LinkedHashMap<>();
+            for (int i = 0; i < 25; i++) {
+                company.put("U" + i, new Enrolled("U" + i, "First" + i, "Last" + c, i, "Company " + c));
+            }
+            grouped.put("company " + c, company);
+        }
+        // both sanitise to A_B.csv; the later one must win as in the sequential writer
+        grouped.put("a b", Map.of("1", new Enrolled("1", "Early", "Writer", 1, "a b")));
+        grouped.put("a*b", Map.of("2", new Enrolled("2", "Late", "Writer", 1, "a*b")));
+
+        Path sequential = Files.createTempDirectory("sequential");
+        Path concurrent = Files.createTempDirectory("concurrent");
+        CSVWriter.writeByCompany(grouped, sequential);
+        CSVWriter.writeByCompanyConcurrent(grouped, concurrent, 8);
+
+        try (var files = Files.list(sequential)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                assertEquals(Files.readString(file), Files.readString(concurrent.resolve(file.getFileName())));
+            }
+        }
+        assertTrue(Files.readString(concurrent.resolve("a_b.csv")).contains("Late Writer"));
+    }
+
+    @Test
+    public void testConcurrentWriterReportsAllFailuresTogether() throws IOException {
+        Path dir = Files.createTempDirectory("concurrent");
+        // directories in the way of two company files
+        Files.createDirectories(dir.resolve("acme.csv"));
+        Files.createDirectories(dir.resolve("zenith.csv"));
+        var grouped = Map.of(
+                "acme", Map.of("1", new Enrolled("1", "John", "Doe", 1, "Acme")),
+                "zenith", Map.of("2", new Enrolled("2", "Jane", "Roe", 1, "Zenith")),
+                "other", Map.of("3", new Enrolled("3", "Ann", "Lee", 1, "Other")));
+
+        CompanyWriteException thrown = assertThrows(CompanyWriteException.class,
+                () -> CSVWriter.writeByCompanyConcurrent(grouped, dir, 3));
+        assertEquals(java.util.Set.of("acme", "zenith"), thrown.failures().keySet());
+        assertEquals(2, thrown.getSuppressed().length);
+        assertTrue(Files.exists(dir.resolve("other.csv")), "healthy companies are still written");
+    }
+
+    @Test
+    public void testWriteTablesMatchesWriteByCompany() throws IOException {
+        Map<String, EnrollmentTable> tables = new java.util.LinkedHashMap<>();
+        EnrollmentTable acme = new EnrollmentTable();
+        acme.add(new Enrolled("2", "Zoë", "Ähm", 1, "Acme"));
+        acme.add(new Enrolled("1", "John", "Doe", 3, "ACME"));
+        acme.add(new Enrolled("3", null, "", -7, "Acme"));
+        tables.put("acme", acme);
+        EnrollmentTable other = new EnrollmentTable();
+        other.add(new Enrolled("9", "Ann", "Lee", Integer.MIN_VALUE, "Other Co"));
+        tables.put("other co", other);
+        tables.values().forEach(EnrollmentTable::sortByName);
+
+        Path fromMaps = Files.createTempDirectory("maps");
+        Path fromTables = Files.createTempDirectory("tables");
+        CSVWriter.writeByCompany(Sorting.sortByName(EnrollmentTable.asMaps(tables)), fromMaps);
+        CSVWriter.writeTables(tables, fromTables);
+
+        for (String file : new String[]{"acme.csv", "other_co.csv"}) {
+            assertEquals(Files.readString(fromMaps.resolve(file)), Files.readString(fromTables.resolve(file)), file);
+        }
+    }
+}
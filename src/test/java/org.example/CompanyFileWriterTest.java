@@ -0,0 +1,118 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompanyFileWriterTest {
+
+    // the whole-file formatting the streaming writer replaced
+    private static String joined(List<Enrolled> enrollees) {
+        return Stream.concat(
+                Stream.of("User ID,Full Name,Version,Insurance Company"),
+                enrollees.stream().map(e -> String.join(",",
+                        e.userId(),
+                        e.firstName() + " " + e.lastName(),
+                        e.version().toString(),
+                        e.insuranceCompany()))
+        ).collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    private static byte[] write(List<Enrolled> enrollees) throws IOException {
+        Path file = Files.createTempFile("company", ".csv");
+        CSVWriter.writeCompany(file, enrollees.iterator());
+        return Files.readAllBytes(file);
+    }
+
+    @Test
+    public void testMatchesJoinedOutput() throws IOException {
+        List<Enrolled> enrollees = List.of(
+                new Enrolled("U1", "Jane", "Doe", 3, "Acme Insurance"),
+                new Enrolled("U2", "Élodie", "Durand", -12, "Acme Insurance"),
+                new Enrolled("U3", "Plato", "", 0, "ACME insurance"),
+                new Enrolled("U4", null, null, Integer.MIN_VALUE, "Acme"),
+                new Enrolled("U5", "李", "小龙", Integer.MAX_VALUE, "Acme €"));
+        assertArrayEquals(joined(enrollees).getBytes(java.nio.charset.StandardCharsets.UTF_8), write(enrollees));
+    }
+
+    @Test
+    public void testGzipFileHoldsTheSameBytes() throws IOException {
+        List<Enrolled> enrollees = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            enrollees.add(new Enrolled("U" + i, "First" + i, "Last" + (i % 97), i, "Acme"));
+        }
+        Path file = Files.createTempFile("company", ".csv.gz");
+        CSVWriter.writeCompany(file, enrollees.iterator());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertArrayEquals(write(enrollees), in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testHeaderOnlyForEmptyCompany() throws IOException {
+        assertEquals("User ID,Full Name,Version,Insurance Company", new String(write(List.of())));
+    }
+
+    @Test
+    public void testRowsSpanningManyBlocks() throws IOException {
+        List<Enrolled> enrollees = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            enrollees.add(new Enrolled("U" + i, "First" + i, i % 7 == 0 ? "Ünïcode" : "Last", i, "Company"));
+        }
+        enrollees.add(new Enrolled("long", "N".repeat(3 * CompanyFileWriter.BLOCK_BYTES), "É".repeat(CompanyFileWriter.BLOCK_BYTES), 1, "C"));
+        byte[] written = write(enrollees);
+        assertTrue(written.length > 4 * CompanyFileWriter.BLOCK_BYTES);
+        assertArrayEquals(joined(enrollees).getBytes(java.nio.charset.StandardCharsets.UTF_8), written);
+    }
+
+    @Test
+    public void testNestedWritersKeepTheirOwnBlocks() throws IOException {
+        List<Enrolled> outer = List.of(new Enrolled("U1", "Jane", "Doe", 3, "Acme"),
+                new Enrolled("U2", "John", "Roe", 1, "Acme"));
+        List<Enrolled> inner = List.of(new Enrolled("U9", "Ann", "Lee", 2, "Beta"));
+        Path outerFile = Files.createTempFile("company", ".csv");
+        Path innerFile = Files.createTempFile("company", ".csv");
+        try (CompanyFileWriter writer = new CompanyFileWriter(outerFile)) {
+            writer.write(outer.get(0));
+            try (CompanyFileWriter nested = new CompanyFileWriter(innerFile)) {
+                nested.write(inner.get(0));
+            }
+            writer.write(outer.get(1));
+        }
+        assertEquals(joined(outer), Files.readString(outerFile));
+        assertEquals(joined(inner), Files.readString(innerFile));
+        // the block of a closed writer is reused by the next one
+        assertArrayEquals(write(outer), Files.readAllBytes(outerFile));
+    }
+
+    @Test
+    public void testLoneSurrogatesFailLikeWriteString() throws IOException {
+        Path file = Files.createTempFile("company", ".csv");
+        Enrolled broken = new Enrolled("U1", "Ja\uD800ne", "Doe", 3, "Acme");
+        assertThrows(CharacterCodingException.class, () -> Files.writeString(file, joined(List.of(broken))));
+        assertThrows(CharacterCodingException.class, () -> write(List.of(broken)));
+        assertThrows(CharacterCodingException.class, () -> write(List.of(new Enrolled("U1", "Jane", "Doe", 3, "\uDC00"))));
+    }
+
+    @Test
+    public void testPositionCountsBufferedBytes() throws IOException {
+        Path file = Files.createTempFile("company", ".csv");
+        try (CompanyFileWriter writer = new CompanyFileWriter(file)) {
+            assertEquals(CSVWriter.HEADER.length(), writer.position());
+            writer.write(new Enrolled("U1", "Jane", "Doe", 3, "Acme"));
+            assertEquals(CSVWriter.HEADER.length() + System.lineSeparator().length() + "U1,Jane Doe,3,Acme".length(),
+                    writer.position());
+        }
+    }
+}
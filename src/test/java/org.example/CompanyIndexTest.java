@@ -0,0 +1,134 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompanyIndexTest {
+
+    private static final CsvFormat INDEXED = new CsvFormat(false, true);
+
+    private static Map<String, Map<String, Enrolled>> grouped(int members) {
+        Map<String, Map<String, Enrolled>> grouped = new LinkedHashMap<>();
+        for (int i = 0; i < members; i++) {
+            String company = i % 2 == 0 ? "acme insurance" : "blue cross";
+            // ids of different lengths and non-ASCII ones exercise the byte order
+            String userId = (i % 5 == 0 ? "É" : "U") + i;
+            grouped.computeIfAbsent(company, k -> new LinkedHashMap<>())
+                    .put(userId, new Enrolled(userId, "First" + (i % 7), "Last" + (i % 13), i, company));
+        }
+        return Sorting.sortByName(grouped);
+    }
+
+    @Test
+    public void testFindsEveryMember() throws IOException {
+        Map<String, Map<String, Enrolled>> grouped = grouped(1000);
+        Path dir = Files.createTempDirectory("indexed");
+        CSVWriter.writeByCompany(grouped, dir, INDEXED);
+
+        for (Map.Entry<String, Map<String, Enrolled>> company : grouped.entrySet()) {
+            try (CompanyIndex index = CompanyIndex.open(dir.resolve(CSVWriter.fileNameFor(company.getKey())))) {
+                assertEquals(company.getValue().size(), index.size());
+                for (Enrolled e : company.getValue().values()) {
+                    assertEquals(e, index.lookup(e.userId()));
+                }
+                assertNull(index.lookup("U1000"));
+                assertEquals(-1, index.offsetOf(""));
+            }
+        }
+        assertEquals(grouped.get("blue cross").get("U7"), CompanyIndex.lookup(dir, "Blue Cross", "U7"));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(f -> f.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void testTablesAndConcurrentWritersIndexToo() throws IOException {
+        Map<String, Map<String, Enrolled>> grouped = grouped(200);
+        Path concurrent = Files.createTempDirectory("indexed-concurrent");
+        CSVWriter.writeByCompanyConcurrent(grouped, concurrent, 2, INDEXED);
+
+        Map<String, EnrollmentTable> tables = new LinkedHashMap<>();
+        grouped.forEach((company, members) -> {
+            EnrollmentTable table = new EnrollmentTable();
+            members.values().forEach(table::add);
+            tables.put(company, table);
+        });
+        Path fromTables = Files.createTempDirectory("indexed-tables");
+        CSVWriter.writeTables(tables, fromTables, INDEXED);
+
+        for (Path dir : List.of(concurrent, fromTables)) {
+            assertEquals(grouped.get("acme insurance").get("É0"), CompanyIndex.lookup(dir, "ACME Insurance", "É0"));
+            assertEquals(grouped.get("blue cross").get("U199"), CompanyIndex.lookup(dir, "blue cross", "U199"));
+        }
+    }
+
+    @Test
+    public void testRewrittenCsvMakesTheIndexStale() throws IOException {
+        Path dir = Files.createTempDirectory("indexed");
+        CSVWriter.writeByCompany(grouped(10), dir, INDEXED);
+        CSVWriter.writeByCompany(grouped(12), dir);
+        IOException e = assertThrows(IOException.class, () -> CompanyIndex.lookup(dir, "acme insurance", "U2"));
+        assertTrue(e.getMessage().startsWith("Stale company index"), e.getMessage());
+
+        // rebuilding the pair makes it usable again
+        CSVWriter.writeByCompany(grouped(12), dir, INDEXED);
+        assertNotNull(CompanyIndex.lookup(dir, "acme insurance", "É10"));
+    }
+
+    @Test
+    public void testFailedWriteKeepsThePreviousPair() throws IOException {
+        Path dir = Files.createTempDirectory("indexed");
+        Map<String, Map<String, Enrolled>> grouped = grouped(10);
+        CSVWriter.writeByCompany(grouped, dir, INDEXED);
+        Path file = dir.resolve(CSVWriter.fileNameFor("acme insurance"));
+        byte[] before = Files.readAllBytes(file);
+
+        Iterator<Enrolled> failing = new Iterator<>() {
+            private int n;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Enrolled next() {
+                if (n++ == 3) {
+                    throw new IllegalStateException("source failed");
+                }
+                return new Enrolled("X" + n, "A", "B", 1, "acme insurance");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> CSVWriter.writeCompany(file, failing, true));
+
+        assertArrayEquals(before, Files.readAllBytes(file));
+        assertEquals(grouped.get("acme insurance").get("U2"), CompanyIndex.lookup(dir, "acme insurance", "U2"));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(f -> f.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void testMissingIndexFails() throws IOException {
+        Path dir = Files.createTempDirectory("plain");
+        CSVWriter.writeByCompany(grouped(4), dir);
+        assertThrows(IOException.class, () -> CompanyIndex.lookup(dir, "acme insurance", "U2"));
+    }
+
+    @Test
+    public void testIndexNeedsUncompressedFiles() {
+        assertThrows(IllegalArgumentException.class, () -> new CsvFormat(true, true));
+        assertEquals("acme.csv.gz", new CsvFormat(true, false).fileNameFor("acme"));
+        assertEquals("acme.csv", CsvFormat.PLAIN.fileNameFor("acme"));
+    }
+}
@@ -37,4 +37,16 @@ public class EnrolledTest {
         Enrolled e2 = new Enrolled("1", "John", "Doe", 3, "Acme");
         assertNotEquals(e1, e2);
     }
+
+    @Test
+    public void testLatestKeepsHighestVersionAndFirstOnTies() {
+        Enrolled first = new Enrolled("1", "John", "Doe", 3, "Acme");
+        Enrolled tie = new Enrolled("1", "Johnny", "Doe", 3, "Acme");
+        Enrolled newer = new Enrolled("1", "Jon", "Doe", 4, "Acme");
+        assertSame(first, Enrolled.latest(first, tie));
+        assertSame(newer, Enrolled.latest(first, newer));
+        assertSame(newer, Enrolled.latest(newer, first));
+        assertTrue(Enrolled.supersedes(4, 3));
+        assertFalse(Enrolled.supersedes(3, 3));
+    }
 }
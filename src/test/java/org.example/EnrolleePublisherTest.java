@@ -0,0 +1,196 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnrolleePublisherTest {
+
+    // signals arrive on the calling thread, so every step can be checked right away
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    private static final String CSV = """
+            User Id,Full Name,Version,Insurance Company
+            1,Alice Adams,2,Acme
+            bad row
+            1,Alice Adams,3,Acme
+            2,Bob Brown,1,Beta Health
+            3,Carol Clark,x,acme
+            4,Dan Dale,1,acme
+            """;
+
+    private static Path write(String content) throws IOException {
+        Path file = Files.createTempFile("enroll", ".csv");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private static EnrolleePublisher publisher(Path file) {
+        return new EnrolleePublisher(file, PipelineOptions.parse(), SAME_THREAD);
+    }
+
+    private static final class Recorder implements Flow.Subscriber<Enrolled> {
+        final List<Enrolled> rows = new ArrayList<>();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Enrolled item) {
+            rows.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    public void testEmitsOnlyWhatIsRequested() throws IOException {
+        Recorder recorder = new Recorder();
+        publisher(write(CSV)).subscribe(recorder);
+        assertTrue(recorder.rows.isEmpty());
+
+        recorder.subscription.request(2);
+        assertEquals(List.of(new Enrolled("1", "Alice", "Adams", 2, "Acme"),
+                new Enrolled("1", "Alice", "Adams", 3, "Acme")), recorder.rows);
+        assertFalse(recorder.completed);
+
+        recorder.subscription.request(10);
+        // duplicates are kept, unusable rows are skipped
+        assertEquals(4, recorder.rows.size());
+        assertEquals("4", recorder.rows.get(3).userId());
+        assertTrue(recorder.completed);
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void testRequestingFromOnNextDoesNotRecurse() throws IOException {
+        StringBuilder csv = new StringBuilder("User Id,Full Name,Version,Insurance Company\n");
+        for (int i = 0; i < 100_000; i++) {
+            csv.append(i).append(",First Last,1,Acme\n");
+        }
+        long[] count = {0};
+        boolean[] completed = {false};
+        publisher(write(csv.toString())).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Enrolled item) {
+                count[0]++;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+        assertEquals(100_000, count[0]);
+        assertTrue(completed[0]);
+    }
+
+    @Test
+    public void testCancelStopsTheStream() throws IOException {
+        Recorder recorder = new Recorder();
+        publisher(write(CSV)).subscribe(recorder);
+        recorder.subscription.request(1);
+        recorder.subscription.cancel();
+        recorder.subscription.request(5);
+        assertEquals(1, recorder.rows.size());
+        assertFalse(recorder.completed);
+        assertNull(recorder.error);
+    }
+
+    @Test
+    public void testNonPositiveRequestAndMissingFileSignalErrors() throws IOException {
+        Recorder bad = new Recorder();
+        publisher(write(CSV)).subscribe(bad);
+        bad.subscription.request(0);
+        assertTrue(bad.error instanceof IllegalArgumentException, String.valueOf(bad.error));
+
+        Recorder missing = new Recorder();
+        publisher(Path.of("no/such/file.csv")).subscribe(missing);
+        missing.subscription.request(1);
+        assertTrue(missing.error instanceof NoSuchFileException, String.valueOf(missing.error));
+        assertTrue(missing.rows.isEmpty());
+    }
+
+    @Test
+    public void testEmptyInputCompletesWithoutDemand() throws IOException {
+        Recorder recorder = new Recorder();
+        publisher(write("")).subscribe(recorder);
+        recorder.subscription.request(1);
+        assertTrue(recorder.completed);
+        assertTrue(recorder.rows.isEmpty());
+    }
+
+    @Test
+    public void testGzipInputOnTheCommonPool() throws Exception {
+        Path gz = Files.createTempFile("enroll", ".csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            out.write(CSV.getBytes(StandardCharsets.UTF_8));
+        }
+        CompletableFuture<List<Enrolled>> result = new CompletableFuture<>();
+        new EnrolleePublisher(gz).subscribe(new Flow.Subscriber<>() {
+            private final List<Enrolled> rows = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Enrolled item) {
+                rows.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(rows);
+            }
+        });
+        assertEquals(4, result.get(10, TimeUnit.SECONDS).size());
+    }
+}
@@ -0,0 +1,60 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnrollmentSnapshotTest {
+
+    @Test
+    public void testSaveAndLoadRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        Map<String, Enrolled> acme = new HashMap<>();
+        acme.put("U1", new Enrolled("U1", "Jane", "Doe", 3, "Acme Insurance"));
+        acme.put("U2", new Enrolled("U2", "Élodie", "", -7, "ACME INSURANCE"));
+        acme.put("U3", new Enrolled("U3", "Bob", "Brown", Integer.MAX_VALUE, "acme insurance"));
+
+        EnrollmentSnapshot.save(dir, "acme insurance", acme);
+        EnrollmentSnapshot.save(dir, "zenith/health", Map.of("Z", new Enrolled("Z", "Ann", "Lee", 0, "Zenith/Health")));
+
+        assertEquals(acme, EnrollmentSnapshot.load(dir, "acme insurance"));
+        assertEquals(1, EnrollmentSnapshot.load(dir, "zenith/health").size());
+        assertEquals(List.of("acme insurance", "zenith/health"),
+                EnrollmentSnapshot.companies(dir).stream().sorted().toList());
+    }
+
+    @Test
+    public void testUnknownCompanyLoadsEmpty() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        assertTrue(EnrollmentSnapshot.load(dir, "nobody").isEmpty());
+        assertTrue(EnrollmentSnapshot.companies(dir.resolve("missing")).isEmpty());
+    }
+
+    @Test
+    public void testSaveReplacesPreviousState() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        EnrollmentSnapshot.save(dir, "acme", Map.of("U1", new Enrolled("U1", "A", "B", 1, "Acme")));
+        EnrollmentSnapshot.save(dir, "acme", Map.of("U2", new Enrolled("U2", "C", "D", 2, "Acme")));
+        assertEquals(Map.of("U2", new Enrolled("U2", "C", "D", 2, "Acme")), EnrollmentSnapshot.load(dir, "acme"));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count(), "no partial files left behind");
+        }
+    }
+
+    @Test
+    public void testCorruptFileIsRejected() throws IOException {
+        Path dir = Files.createTempDirectory("snapshot");
+        EnrollmentSnapshot.save(dir, "acme", Map.of());
+        try (var files = Files.list(dir)) {
+            Files.write(files.findFirst().orElseThrow(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+        assertThrows(IOException.class, () -> EnrollmentSnapshot.load(dir, "acme"));
+    }
+}
@@ -0,0 +1,124 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnrollmentTableTest {
+
+    private static List<Enrolled> rows(EnrollmentTable table) {
+        List<Enrolled> rows = new ArrayList<>();
+        table.forEach(rows::add);
+        return rows;
+    }
+
+    @Test
+    public void testHighestVersionWinsAndFirstWinsTies() {
+        EnrollmentTable table = new EnrollmentTable();
+        assertTrue(table.add(new Enrolled("1", "John", "Doe", 1, "Acme")));
+        assertTrue(table.add(new Enrolled("2", "Jane", "Roe", 4, "Acme")));
+        assertTrue(table.add(new Enrolled("1", "Johnny", "Doe", 3, "ACME")));
+        assertFalse(table.add(new Enrolled("1", "Other", "Doe", 3, "Acme")));
+        assertFalse(table.add(new Enrolled("2", "Jane", "Roe", 2, "Acme")));
+
+        assertEquals(2, table.size());
+        assertEquals(new Enrolled("1", "Johnny", "Doe", 3, "ACME"), table.get("1"));
+        assertEquals(new Enrolled("2", "Jane", "Roe", 4, "Acme"), table.get(1));
+        assertNull(table.get("3"));
+        assertEquals(-1, table.rowOf("3"));
+    }
+
+    @Test
+    public void testMatchesMapDedupeOnRandomRows() {
+        Random random = new Random(3);
+        EnrollmentTable table = new EnrollmentTable();
+        Map<String, Enrolled> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            Enrolled e = new Enrolled("U" + random.nextInt(3000), "F" + random.nextInt(50),
+                    "L".repeat(random.nextInt(4)) + random.nextInt(100), random.nextInt(20), "Acme");
+            table.add(e);
+            expected.merge(e.userId(), e, (e1, e2) -> e1.version() >= e2.version() ? e1 : e2);
+        }
+        assertEquals(expected, table.asMap());
+        assertEquals(expected.size(), table.size());
+    }
+
+    @Test
+    public void testNullNamesAndCompany() {
+        EnrollmentTable table = new EnrollmentTable();
+        table.add(new Enrolled("1", null, "Doe", 1, null));
+        table.add(new Enrolled("2", "", null, 1, "Acme"));
+        assertEquals(new Enrolled("1", null, "Doe", 1, null), table.get("1"));
+        assertEquals(new Enrolled("2", "", null, 1, "Acme"), table.get("2"));
+        assertThrows(NullPointerException.class, () -> table.add(new Enrolled(null, "a", "b", 1, "Acme")));
+        assertThrows(NullPointerException.class, () -> table.add(new Enrolled("3", "a", "b", null, "Acme")));
+    }
+
+    @Test
+    public void testSortMatchesSortingComparator() {
+        String[] names = {"adams", "Adams", "ADAMS", "Ábel", "abel", "zoë", "Zoe", "𐐀x", "𐐨x",
+                "ß", "SS", "", "İ", "i", "ı", null};
+        Random random = new Random(11);
+        EnrollmentTable table = new EnrollmentTable();
+        List<Enrolled> all = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Enrolled e = new Enrolled("u" + random.nextInt(100_000), names[random.nextInt(names.length)],
+                    names[random.nextInt(names.length)], 1, "Acme");
+            if (table.add(e)) {
+                all.removeIf(x -> x.userId().equals(e.userId()));
+                all.add(e);
+            }
+        }
+        all.sort(Sorting.BY_NAME);
+        table.sortByName();
+        assertEquals(all, rows(table));
+        // the index still works after the rows moved
+        for (Enrolled e : all) {
+            assertEquals(e, table.get(e.userId()));
+        }
+    }
+
+    @Test
+    public void testReplacedRowsDoNotGrowTextForever() {
+        EnrollmentTable table = new EnrollmentTable();
+        for (int version = 0; version < 20_000; version++) {
+            table.add(new Enrolled("1", "First" + version, "Last" + version, version, "Acme"));
+        }
+        assertEquals(1, table.size());
+        assertTrue(table.text().length < 4096, "text was not compacted: " + table.text().length);
+        assertEquals(new Enrolled("1", "First19999", "Last19999", 19999, "Acme"), table.get(0));
+    }
+
+    @Test
+    public void testAddAllKeepsEarlierRowsOnTies() {
+        EnrollmentTable first = new EnrollmentTable();
+        first.add(new Enrolled("1", "A", "A", 2, "Acme"));
+        first.add(new Enrolled("2", "B", "B", 1, "Acme"));
+        EnrollmentTable second = new EnrollmentTable();
+        second.add(new Enrolled("1", "X", "X", 2, "Acme"));
+        second.add(new Enrolled("2", "Y", "Y", 5, "ACME"));
+        second.add(new Enrolled("3", "Z", "Z", 1, "Acme"));
+        first.addAll(second);
+        assertEquals(List.of(
+                new Enrolled("1", "A", "A", 2, "Acme"),
+                new Enrolled("2", "Y", "Y", 5, "ACME"),
+                new Enrolled("3", "Z", "Z", 1, "Acme")), rows(first));
+    }
+
+    @Test
+    public void testMapViewIsReadOnly() {
+        EnrollmentTable table = new EnrollmentTable();
+        table.add(new Enrolled("1", "John", "Doe", 1, "Acme"));
+        Map<String, Enrolled> view = table.asMap();
+        assertTrue(view.containsKey("1"));
+        assertFalse(view.containsKey(1));
+        assertThrows(UnsupportedOperationException.class, () -> view.put("2", table.get(0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.get(1));
+    }
+}
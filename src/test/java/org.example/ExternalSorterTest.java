@@ -0,0 +1,108 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalSorterTest {
+
+    private static Map<String, Map<String, Enrolled>> randomCompanies(int rows, long seed) {
+        String[] first = {"alice", "Bob", "carol", "Dave", "ÉLODIE", "eve", "Frank", "bob"};
+        String[] last = {"Smith", "smith", "Adams", "brown", "Zed", "O'Neill", "", "Durand"};
+        Random random = new Random(seed);
+        Map<String, Map<String, Enrolled>> grouped = new HashMap<>();
+        for (int i = 0; i < rows; i++) {
+            String company = "Company " + random.nextInt(5);
+            String userId = "U" + i;
+            grouped.computeIfAbsent(company.toLowerCase(), k -> new HashMap<>())
+                    .put(userId, new Enrolled(userId, first[random.nextInt(first.length)],
+                            last[random.nextInt(last.length)], random.nextInt(5), company));
+        }
+        return grouped;
+    }
+
+    private static Map<String, String> readAll(Path dir) throws IOException {
+        Map<String, String> files = new HashMap<>();
+        try (var list = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) list::iterator) {
+                files.put(file.getFileName().toString(), Files.readString(file));
+            }
+        }
+        return files;
+    }
+
+    @Test
+    public void testSpillingProducesSameFilesAsInMemorySort() throws IOException {
+        Map<String, Map<String, Enrolled>> grouped = randomCompanies(3000, 7);
+        Path expectedDir = Files.createTempDirectory("expected");
+        CSVWriter.writeByCompany(Sorting.sortByName(grouped), expectedDir);
+
+        for (long budget : new long[]{1, 10_000, 200_000, Long.MAX_VALUE}) {
+            Path actualDir = Files.createTempDirectory("external");
+            Sorting.sortByNameExternal(new HashMap<>(grouped), budget, actualDir);
+            assertEquals(readAll(expectedDir), readAll(actualDir), "budget " + budget);
+        }
+    }
+
+    @Test
+    public void testLeavesInputAloneUnlessDrained() throws IOException {
+        Map<String, Map<String, Enrolled>> grouped = new LinkedHashMap<>(randomCompanies(50, 3));
+        Sorting.sortByNameExternal(grouped, 1 << 20, Files.createTempDirectory("external"));
+        assertEquals(5, grouped.size());
+
+        Path dir = Files.createTempDirectory("external");
+        Sorting.sortByNameExternal(Sorting.draining(grouped), 1 << 20, dir, CsvFormat.PLAIN);
+        assertTrue(grouped.isEmpty(), "drained companies should be released");
+        assertEquals(5, readAll(dir).size());
+
+        Map<String, Map<String, Enrolled>> readOnly = Map.copyOf(randomCompanies(50, 3));
+        dir = Files.createTempDirectory("external");
+        Sorting.sortByNameExternal(readOnly, 1 << 20, dir);
+        assertEquals(readOnly.size(), readAll(dir).size());
+    }
+
+    @Test
+    public void testWritesOtherCompaniesBeforeReportingFailures() throws IOException {
+        Path dir = Files.createTempDirectory("external");
+        // a directory where a company file belongs cannot be written over
+        Files.createDirectories(dir.resolve("company_1.csv"));
+        CompanyWriteException thrown = assertThrows(CompanyWriteException.class,
+                () -> Sorting.sortByNameExternal(randomCompanies(200, 5), 1_000, dir));
+        assertEquals(List.of("company 1"), List.copyOf(thrown.failures().keySet()));
+        for (String company : List.of("company_0", "company_2", "company_3", "company_4")) {
+            assertTrue(Files.isRegularFile(dir.resolve(company + ".csv")), company);
+        }
+    }
+
+    @Test
+    public void testMergeKeepsInputOrderForEqualKeys() throws IOException {
+        Path dir = Files.createTempDirectory("external");
+        try (ExternalSorter sorter = new ExternalSorter(1)) {
+            // same name and user id, so only the input order tells them apart
+            for (int i = 0; i < 6; i++) {
+                sorter.add("acme", new Enrolled("U1", "Jane", i % 2 == 0 ? "Doe" : "DOE", i, "Acme"));
+            }
+            sorter.writeByCompany(dir);
+        }
+        List<String> versions = new ArrayList<>();
+        for (String line : Files.readAllLines(dir.resolve("acme.csv")).subList(1, 7)) {
+            versions.add(line.split(",")[2]);
+        }
+        assertEquals(List.of("0", "1", "2", "3", "4", "5"), versions);
+    }
+
+    @Test
+    public void testRejectsNonPositiveBudget() {
+        assertThrows(IllegalArgumentException.class, () -> new ExternalSorter(0));
+    }
+}
@@ -0,0 +1,163 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FieldTokenizerTest {
+
+    private static final Logger quiet = Logger.getLogger("FieldTokenizerTest");
+
+    static {
+        quiet.setUseParentHandlers(false);
+    }
+
+    // the split-and-regex parsing the tokenizer replaced, kept here as the reference
+    private static Enrolled reference(String line) {
+        List<String> tokens = new ArrayList<>();
+        boolean inQuotes = false;
+        StringBuilder sb = new StringBuilder();
+        for (char c : line.toCharArray()) {
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                tokens.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        tokens.add(sb.toString());
+        String[] values = tokens.toArray(new String[0]);
+        if (values.length < 4) {
+            return null;
+        }
+        String userId = values[0].trim();
+        if (userId.isEmpty()) {
+            return null;
+        }
+        String fullName = values[1].trim().replaceAll("\\s+", " ");
+        int version;
+        try {
+            version = Integer.parseInt(values[2].trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String company = values[3].trim();
+        if (company.isEmpty()) {
+            return null;
+        }
+        String[] nameParts = fullName.split(" ");
+        return new Enrolled(userId, nameParts[0], nameParts.length >= 2 ? nameParts[1] : "", version, company);
+    }
+
+    private static Enrolled fromChars(String line) {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread();
+        return tokenizer.tokenize(line) < FieldTokenizer.FIELDS ? null : tokenizer.toEnrollee(quiet);
+    }
+
+    private static Enrolled fromBytes(String line) {
+        byte[] utf8 = ("xx\n" + line + "\r\n").getBytes(StandardCharsets.UTF_8);
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread();
+        int end = tokenizer.tokenize(ByteBuffer.wrap(utf8), 3, utf8.length);
+        assertEquals(utf8.length - 2, end, "should stop at the line terminator");
+        return tokenizer.fieldCount() < FieldTokenizer.FIELDS ? null : tokenizer.toEnrollee(quiet);
+    }
+
+    private static void assertMatchesReference(String line) {
+        Enrolled expected = reference(line);
+        assertEquals(expected, fromChars(line), "chars: [" + line + "]");
+        assertEquals(expected, fromBytes(line), "bytes: [" + line + "]");
+    }
+
+    @Test
+    public void testPlainRow() {
+        Enrolled e = fromChars("U1,Jane Doe,3,Acme Insurance");
+        assertEquals(new Enrolled("U1", "Jane", "Doe", 3, "Acme Insurance"), e);
+    }
+
+    @Test
+    public void testTrimmingCollapsingAndNameSplitting() {
+        assertMatchesReference("  1 ,   Alice  \t  Adams   , 1 ,   Acme Insurance  ");
+        assertMatchesReference("1,Plato,1,Acme");
+        assertMatchesReference("1,John A. Doe,1,Acme");
+        assertMatchesReference("1,\u0001John\u0002 \u0003,1,Acme");
+        assertMatchesReference("1,John\u0001 Doe\u0002 ,1,Acme");
+        assertMatchesReference("1,   ,1,Acme");
+        assertMatchesReference("1,,1,Acme");
+    }
+
+    @Test
+    public void testQuotesAndExtraFields() {
+        assertMatchesReference("1,\"John, A. Doe\",1,Acme Insurance");
+        assertMatchesReference("1,Jo\"hn\" Doe,1,\"Acme, Inc\"");
+        assertMatchesReference("1,Jane Doe,1,Acme,extra,\"more\"");
+        assertMatchesReference("\"\",Jane Doe,1,Acme");
+    }
+
+    @Test
+    public void testRejectedRows() {
+        assertMatchesReference("");
+        assertMatchesReference("1,Jane,2");
+        assertMatchesReference(",Jane Doe,1,Acme");
+        assertMatchesReference("1,Jane Doe,abc,Acme");
+        assertMatchesReference("1,Jane Doe,99999999999,Acme");
+        assertMatchesReference("1,Jane Doe,1,   ");
+        assertMatchesReference("1,Jane Doe,-4,Acme");
+        assertMatchesReference("1,Jane Doe,+4,Acme");
+        assertMatchesReference("1,Élodie Durand,٣,Acme");
+    }
+
+    @Test
+    public void testRandomRowsMatchReference() {
+        String alphabet = "ab ,\"\t\u0001\u000B1-+9Éé€Z";
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder line = new StringBuilder();
+            int len = random.nextInt(24);
+            for (int j = 0; j < len; j++) {
+                line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesReference(line.toString());
+        }
+    }
+
+    @Test
+    public void testInterningDoesNotChangeRows() {
+        String alphabet = "ab ,\"\t1Éé€Z";
+        Random random = new Random(7);
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread().bind(new ParseContext(true));
+        try {
+            for (int i = 0; i < 5000; i++) {
+                StringBuilder line = new StringBuilder();
+                int len = random.nextInt(16);
+                for (int j = 0; j < len; j++) {
+                    line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                assertMatchesReference(line.toString());
+            }
+        } finally {
+            tokenizer.bind(null);
+        }
+    }
+
+    @Test
+    public void testRowTextIsLineWithoutQuotes() {
+        FieldTokenizer tokenizer = FieldTokenizer.forCurrentThread();
+        tokenizer.tokenize("1,\"John, Doe\",x,Acme");
+        assertEquals("1,John, Doe,x,Acme", tokenizer.row());
+    }
+
+    @Test
+    public void testLongLinesGrowTheBuffer() {
+        String name = "N".repeat(10_000);
+        assertMatchesReference("1," + name + " " + name + ",1,Acme");
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GzipFilesTest {
+
+    private static Path members(String... parts) throws IOException {
+        Path file = Files.createTempFile("members", ".bin");
+        try (var out = Files.newOutputStream(file)) {
+            for (String part : parts) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                out.write(ParallelGzipChannel.member(bytes, bytes.length));
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void testDetectsGzipByMagicBytes() throws IOException {
+        Path plain = Files.createTempFile("plain", ".gz");
+        Files.writeString(plain, "User Id\n");
+        assertFalse(GzipFiles.isGzip(plain));
+        assertFalse(GzipFiles.isGzip(Files.createTempFile("empty", ".csv")));
+        assertTrue(GzipFiles.isGzip(members("User Id\n")));
+    }
+
+    @Test
+    public void testLinesSpanMembers() throws IOException {
+        Path file = members("a,b\nc", ",d\r\ne", "");
+        try (Stream<String> lines = GzipFiles.lines(file)) {
+            assertEquals(List.of("a,b", "c,d", "e"), lines.toList());
+        }
+    }
+
+    @Test
+    public void testPlainFilesAreReadAsTheyAre() throws IOException {
+        Path plain = Files.createTempFile("plain", ".csv");
+        Files.writeString(plain, "x\ny\n");
+        try (Stream<String> lines = GzipFiles.lines(plain)) {
+            assertEquals(List.of("x", "y"), lines.toList());
+        }
+        try (ReadableByteChannel channel = GzipFiles.openChannel(plain)) {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            channel.read(buffer);
+            assertEquals("x\ny\n", new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testMalformedUtf8FailsTheStream() throws IOException {
+        Path file = Files.createTempFile("bad", ".csv.gz");
+        byte[] bad = {'a', (byte) 0xff, '\n'};
+        Files.write(file, ParallelGzipChannel.member(bad, bad.length));
+        try (Stream<String> lines = GzipFiles.lines(file)) {
+            assertThrows(java.io.UncheckedIOException.class, lines::toList);
+        }
+    }
+}
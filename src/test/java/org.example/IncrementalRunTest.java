@@ -0,0 +1,89 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalRunTest {
+
+    private static final String HEADER = "User Id,Full Name,Version,Insurance Company\n";
+
+    private static final String HISTORY = HEADER + """
+            U1,Jane Doe,1,Acme Insurance
+            U2,Bob Brown,2,Acme Insurance
+            U3,Carl Cole,1,Zenith Health
+            U4,Dana Doe,5,Wellcare
+            U5,Jane Doe,1,Acme Insurance
+            """;
+
+    private static final String DELTA = HEADER + """
+            U1,Jane Doe,3,ACME INSURANCE
+            U2,Robert Brown,2,Acme Insurance
+            U4,Dana Doe,4,Wellcare
+            U6,Eve Adams,1,Zenith Health
+            """;
+
+    private static Map<String, Map<String, Enrolled>> read(String content) throws IOException {
+        Path file = Files.createTempFile("enroll", ".csv");
+        Files.writeString(file, content);
+        return CSVReader.readEnrollees(file.toString());
+    }
+
+    private static Map<String, String> readAll(Path dir) throws IOException {
+        Map<String, String> files = new HashMap<>();
+        try (var list = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) list::iterator) {
+                files.put(file.getFileName().toString(), Files.readString(file));
+            }
+        }
+        return files;
+    }
+
+    @Test
+    public void testDeltaGivesSameFilesAsFullRun() throws IOException {
+        Path snapshot = Files.createTempDirectory("snapshot");
+        Path incremental = Files.createTempDirectory("incremental");
+        IncrementalRun.apply(read(HISTORY), snapshot, incremental);
+        IncrementalRun.apply(read(DELTA), snapshot, incremental);
+
+        Path full = Files.createTempDirectory("full");
+        CSVWriter.writeByCompany(Sorting.sortByName(read(HISTORY + DELTA.substring(HEADER.length()))), full);
+
+        assertEquals(readAll(full), readAll(incremental));
+    }
+
+    @Test
+    public void testOnlyChangedCompaniesAreRewritten() throws IOException {
+        Path snapshot = Files.createTempDirectory("snapshot");
+        Path output = Files.createTempDirectory("incremental");
+        assertEquals(3, IncrementalRun.apply(read(HISTORY), snapshot, output).size());
+
+        // remove the outputs to see which ones come back
+        for (String name : readAll(output).keySet()) {
+            Files.delete(output.resolve(name));
+        }
+        List<String> changed = IncrementalRun.apply(read(DELTA), snapshot, output);
+
+        // U2 keeps its version 2 row and Wellcare's U4 update is older than the stored one
+        assertEquals(List.of("acme insurance", "zenith health"), changed.stream().sorted().toList());
+        assertEquals(Map.of("acme_insurance.csv", true, "zenith_health.csv", true),
+                Map.of("acme_insurance.csv", Files.exists(output.resolve("acme_insurance.csv")),
+                        "zenith_health.csv", Files.exists(output.resolve("zenith_health.csv"))));
+        assertFalse(Files.exists(output.resolve("wellcare.csv")));
+        assertEquals(3, EnrollmentSnapshot.load(snapshot, "acme insurance").get("U1").version());
+        assertEquals("Bob", EnrollmentSnapshot.load(snapshot, "acme insurance").get("U2").firstName());
+    }
+
+    @Test
+    public void testEmptyDeltaChangesNothing() throws IOException {
+        Path snapshot = Files.createTempDirectory("snapshot");
+        assertTrue(IncrementalRun.apply(Map.of(), snapshot, Files.createTempDirectory("out")).isEmpty());
+    }
+}
@@ -0,0 +1,182 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedCSVReaderTest {
+
+    private Path writeTempCSV(String content) throws IOException {
+        Path tmp = Files.createTempFile("enroll", ".csv");
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        return tmp;
+    }
+
+    private void assertSameAsCSVReader(String content) throws IOException {
+        Path csv = writeTempCSV(content);
+        Map<String, Map<String, Enrolled>> expected = CSVReader.readEnrollees(csv.toString());
+        assertEquals(expected, MappedCSVReader.readEnrollees(csv.toString()));
+        // tiny regions force many region boundaries, including inside \r\n pairs
+        for (long region = 1; region <= 7; region++) {
+            assertEquals(expected, MappedCSVReader.readEnrollees(csv.toString(), region), "region size " + region);
+            assertEquals(expected, MappedCSVReader.readEnrolleesParallel(csv.toString(), 3, region), "chunk size " + region);
+        }
+        assertEquals(expected, MappedCSVReader.readEnrolleesParallel(csv.toString(), 2));
+
+        // the columnar reads hold the same members
+        assertEquals(expected, EnrollmentTable.asMaps(CSVReader.readEnrolleeTables(csv.toString(), new ParseContext())));
+        assertEquals(expected, EnrollmentTable.asMaps(MappedCSVReader.readEnrolleeTables(csv.toString(), new ParseContext())));
+        for (long chunk = 1; chunk <= 7; chunk += 3) {
+            assertEquals(expected, EnrollmentTable.asMaps(MappedCSVReader.readEnrolleeTablesParallel(
+                    csv.toString(), 3, new ParseContext(), chunk)), "chunk size " + chunk);
+        }
+
+        // gzip input is found by its magic bytes, whatever the file is called
+        Path gz = Files.createTempFile("enroll", ".csv");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(expected, CSVReader.readEnrollees(gz.toString()));
+        assertEquals(expected, MappedCSVReader.readEnrollees(gz.toString()));
+        assertEquals(expected, MappedCSVReader.readEnrolleesParallel(gz.toString(), 3, 1));
+        assertEquals(expected, EnrollmentTable.asMaps(MappedCSVReader.readEnrolleeTables(gz.toString(), new ParseContext())));
+        assertEquals(expected, EnrollmentTable.asMaps(MappedCSVReader.readEnrolleeTablesParallel(
+                gz.toString(), 3, new ParseContext(), 1)));
+    }
+
+    @Test
+    public void testMatchesCSVReaderOnSampleFile() throws IOException {
+        Path sample = Path.of("src/main/resources/testingReading.csv");
+        assertEquals(CSVReader.readEnrollees(sample.toString()), MappedCSVReader.readEnrollees(sample.toString()));
+    }
+
+    @Test
+    public void testDuplicatesKeepHighestThenFirstVersion() throws IOException {
+        assertSameAsCSVReader("""
+                User Id,Full Name,Version,Insurance Company
+                1,Alice Adams,2,Acme Insurance
+                1,Alice Adams,3,ACME INSURANCE
+                2,Jane Alpha,3,Acme Insurance
+                2,Jane Beta,3,acme insurance
+                """);
+    }
+
+    @Test
+    public void testQuotesWhitespaceAndNames() throws IOException {
+        assertSameAsCSVReader("""
+                User Id,Full Name,Version,Insurance Company
+                1,"John, A. Doe",1,Acme Insurance
+                2,   Jane \t  Doe   ,  5 ,   Acme Insurance \s
+                3,Plato,1,"Zenith, Health"
+                4,,2,Zenith
+                5,Élodie Durand,+7,Acme Insurance
+                6,Anne-Marie O'Neill,2,Acme,extra,fields
+                """);
+    }
+
+    @Test
+    public void testInvalidRowsAreSkipped() throws IOException {
+        assertSameAsCSVReader("""
+                User Id,Full Name,Version,Insurance Company
+                ,No ID,2,Acme Insurance
+                1,Alice,notanumber,Acme Insurance
+                2,Bob,1,   \s
+                3,Bob Smith,1
+                garbage_line_completely_invalid
+
+                4,Charlie Brown,99999999999,Acme Insurance
+                5,Dave Adams,1,Zenith Health
+                """);
+    }
+
+    @Test
+    public void testMixedLineTerminators() throws IOException {
+        assertSameAsCSVReader("User Id,Full Name,Version,Insurance Company\r\n"
+                + "1,Jane Doe,1,Acme\r\n"
+                + "2,Bob Brown,2,Acme\r"
+                + "3,Carl Cole,3,Zenith\n"
+                + "\r\n"
+                + "1,Jane Doe,4,Acme");
+    }
+
+    @Test
+    public void testHeaderOnlyAndEmptyFiles() throws IOException {
+        assertSameAsCSVReader("User Id,Full Name,Version,Insurance Company\n");
+        assertSameAsCSVReader("");
+        assertTrue(MappedCSVReader.readEnrollees(writeTempCSV("").toString()).isEmpty());
+    }
+
+    @Test
+    public void testParallelTiesResolveByFilePosition() throws IOException {
+        StringBuilder csv = new StringBuilder("User Id,Full Name,Version,Insurance Company\n");
+        for (int i = 0; i < 5000; i++) {
+            csv.append("U").append(i % 700).append(",Name").append(i).append(" Last").append(i % 13)
+                    .append(',').append(i % 4).append(",Company ").append(i % 9).append('\n');
+        }
+        Path file = writeTempCSV(csv.toString());
+        Map<String, Map<String, Enrolled>> expected = CSVReader.readEnrollees(file.toString());
+        for (long chunk : new long[]{64, 1000, 4096}) {
+            Map<String, Map<String, Enrolled>> parallel = MappedCSVReader.readEnrolleesParallel(file.toString(), 4, chunk);
+            assertEquals(expected, parallel, "chunk size " + chunk);
+            // same insertion order as the sequential build, so iteration order matches too
+            expected.forEach((company, enrollees) -> assertEquals(
+                    List.copyOf(enrollees.keySet()), List.copyOf(parallel.get(company).keySet())));
+        }
+    }
+
+    @Test
+    public void testRepeatedValuesShareOneInstance() throws IOException {
+        Path csv = writeTempCSV("User Id,Full Name,Version,Insurance Company\n"
+                + "1,Jane Doe,1,Acme Ins\n"
+                + "2,Jane Roe,1,ACME Ins\n"
+                + "3,John Doe,1,Acme Ins\n"
+                + "4,Zoë Doe,1,Bürger Ins\n"
+                + "5,Zoë Doe,1,Bürger Ins\n");
+        for (Map<String, Map<String, Enrolled>> grouped : List.of(
+                CSVReader.readEnrollees(csv.toString(), new ParseContext(true)),
+                MappedCSVReader.readEnrollees(csv.toString(), new ParseContext(true)),
+                MappedCSVReader.readEnrolleesParallel(csv.toString(), 2, new ParseContext(true)))) {
+            Map<String, Enrolled> acme = grouped.get("acme ins");
+            assertSame(acme.get("1").insuranceCompany(), acme.get("3").insuranceCompany());
+            assertEquals("ACME Ins", acme.get("2").insuranceCompany());
+            assertSame(acme.get("1").firstName(), acme.get("2").firstName());
+            assertSame(acme.get("1").lastName(), acme.get("3").lastName());
+            Map<String, Enrolled> buerger = grouped.get("bürger ins");
+            assertSame(buerger.get("4").insuranceCompany(), buerger.get("5").insuranceCompany());
+            assertSame(buerger.get("4").firstName(), buerger.get("5").firstName());
+        }
+        // names stay separate objects unless asked for
+        Map<String, Enrolled> acme = MappedCSVReader.readEnrollees(csv.toString()).get("acme ins");
+        assertNotSame(acme.get("1").firstName(), acme.get("2").firstName());
+        assertSame(acme.get("1").insuranceCompany(), acme.get("3").insuranceCompany());
+    }
+
+    @Test
+    public void testParallelRejectsNonPositiveParallelism() throws IOException {
+        Path csv = writeTempCSV("User Id,Full Name,Version,Insurance Company\n");
+        assertThrows(IllegalArgumentException.class, () -> MappedCSVReader.readEnrolleesParallel(csv.toString(), 0));
+    }
+
+    @Test
+    public void testMissingFileThrows() {
+        assertThrows(IOException.class, () -> MappedCSVReader.readEnrolleesParallel("nonexistent.csv", 2));
+        assertThrows(IOException.class, () -> MappedCSVReader.readEnrollees("nonexistent.csv"));
+    }
+
+    @Test
+    public void testCannotBeInstantiated() throws Exception {
+        var constructor = MappedCSVReader.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        var thrown = assertThrows(java.lang.reflect.InvocationTargetException.class, constructor::newInstance);
+        assertTrue(thrown.getCause() instanceof IllegalStateException);
+    }
+}
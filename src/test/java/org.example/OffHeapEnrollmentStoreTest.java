@@ -0,0 +1,152 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapEnrollmentStoreTest {
+
+    @Test
+    public void testHighestVersionWinsAndFirstWinsTies() throws IOException {
+        try (OffHeapEnrollmentStore store = new OffHeapEnrollmentStore(1024)) {
+            assertTrue(store.add("acme", new Enrolled("1", "John", "Doe", 1, "Acme")));
+            assertTrue(store.add("acme", new Enrolled("2", "Jane", "Roe", 4, "Acme")));
+            assertTrue(store.add("acme", new Enrolled("1", "Johnny", "Doe", 3, "ACME")));
+            assertFalse(store.add("acme", new Enrolled("1", "Other", "Doe", 3, "Acme")));
+            assertFalse(store.add("acme", new Enrolled("2", "Jane", "Roe", 2, "Acme")));
+            assertTrue(store.add("other", new Enrolled("1", null, "Doe", 0, null)));
+
+            assertEquals(3, store.size());
+            assertEquals(Map.of("acme", 2, "other", 1), store.companySizes());
+            store.sortByName(2);
+            assertEquals(List.of(new Enrolled("1", "Johnny", "Doe", 3, "ACME"), new Enrolled("2", "Jane", "Roe", 4, "Acme")),
+                    store.get("acme"));
+            assertEquals(List.of(new Enrolled("1", null, "Doe", 0, null)), store.get("other"));
+            assertEquals(List.of(), store.get("none"));
+            assertThrows(NullPointerException.class, () -> store.add("acme", new Enrolled(null, "a", "b", 1, "Acme")));
+            assertThrows(NullPointerException.class, () -> store.add("acme", new Enrolled("3", "a", "b", null, "Acme")));
+        }
+    }
+
+    @Test
+    public void testSortsLikeSortingAcrossPages() throws IOException {
+        Random random = new Random(23);
+        String[] names = {"anna", "Anna", "Émile", "zoë", "O'Brien", "𐐀x", "", null};
+        Map<String, Map<String, Enrolled>> expected = new HashMap<>();
+        // small pages, so rows, text and index all span many of them
+        try (OffHeapEnrollmentStore store = new OffHeapEnrollmentStore(1024)) {
+            for (int i = 0; i < 20_000; i++) {
+                String company = "c" + random.nextInt(5);
+                Enrolled e = new Enrolled("U" + random.nextInt(2000), names[random.nextInt(names.length)],
+                        names[random.nextInt(names.length)], random.nextInt(10), company.toUpperCase());
+                store.add(company, e);
+                expected.computeIfAbsent(company, k -> new HashMap<>())
+                        .merge(e.userId(), e, (e1, e2) -> e1.version() >= e2.version() ? e1 : e2);
+            }
+            store.sortByName(3);
+            for (Map.Entry<String, Map<String, Enrolled>> company : expected.entrySet()) {
+                List<Enrolled> sorted = new ArrayList<>(company.getValue().values());
+                sorted.sort(Sorting.BY_NAME);
+                assertEquals(sorted, store.get(company.getKey()), company.getKey());
+            }
+        }
+    }
+
+    @Test
+    public void testWritesSameFilesAsInMemoryRun() throws IOException {
+        Path csv = TestCsv.messyCsv(7, 5_000, 800);
+        Path inMemory = Files.createTempDirectory("in-memory-out");
+        Path offHeap = Files.createTempDirectory("offheap-out");
+
+        PipelineMetrics expected = Pipeline.run(csv.toString(), PipelineOptions.parse("--index=true"), inMemory);
+        PipelineMetrics metrics = Pipeline.run(csv.toString(),
+                PipelineOptions.parse("--store=offheap", "--index=true"), offHeap);
+
+        List<Path> files;
+        try (var list = Files.list(inMemory)) {
+            files = list.toList();
+        }
+        assertEquals(8, files.size());
+        for (Path file : files) {
+            if (!file.toString().endsWith(".csv")) {
+                // an index records the time of its file
+                continue;
+            }
+            assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(offHeap.resolve(file.getFileName())),
+                    file.getFileName().toString());
+        }
+        assertEquals(CompanyIndex.lookup(inMemory, "Acme 1", "U7"), CompanyIndex.lookup(offHeap, "Acme 1", "U7"));
+        assertEquals(expected.accepted(), metrics.accepted());
+        assertEquals(expected.rejected(), metrics.rejected());
+        assertEquals(expected.peakCompanySize(), metrics.peakCompanySize());
+        assertEquals(expected.companyBytes(), metrics.companyBytes());
+        for (String option : new String[]{"--pipeline=overlapped", "--reader=mapped", "--writers=4",
+                "--dedupe-map=packed", "--intern-names=true"}) {
+            assertThrows(IllegalArgumentException.class, () -> Pipeline.run(csv.toString(),
+                    PipelineOptions.parse("--store=offheap", option), offHeap), option);
+        }
+    }
+
+    @Test
+    public void testPagesGrowWithTheRowsAndAreReleasedOnClose() throws IOException {
+        OffHeapEnrollmentStore store = new OffHeapEnrollmentStore();
+        assertEquals(0, store.nativeBytes());
+        store.add("acme", new Enrolled("1", "John", "Doe", 1, "Acme"));
+        store.add("acme", new Enrolled("2", "Jane", "Roe", 1, "Acme"));
+        store.add("other", new Enrolled("3", "Ann", "Lee", 1, "Other"));
+        store.sortByName(1);
+        assertTrue(store.nativeBytes() < 1 << 16, "reserved " + store.nativeBytes());
+
+        for (int i = 4; i < 10_000; i++) {
+            store.add("acme", new Enrolled(Integer.toString(i), "John", "Doe", 1, "Acme"));
+        }
+        assertTrue(store.nativeBytes() < 1 << 20, "reserved " + store.nativeBytes());
+        store.sortByName(1);
+        assertEquals(9_998, store.get("acme").size());
+        // the orders of the last sort are released, not kept next to the new ones
+        long sorted = store.nativeBytes();
+        store.sortByName(1);
+        assertEquals(sorted, store.nativeBytes());
+        store.close();
+        assertEquals(0, store.nativeBytes());
+        store.close();
+    }
+
+    @Test
+    public void testWritesOtherCompaniesBeforeReportingFailures() throws IOException {
+        Path output = Files.createTempDirectory("offheap-out");
+        // a directory where the company file should go
+        Files.createDirectories(output.resolve("acme.csv"));
+        try (OffHeapEnrollmentStore store = new OffHeapEnrollmentStore(1024)) {
+            store.add("acme", new Enrolled("1", "John", "Doe", 1, "Acme"));
+            store.add("other", new Enrolled("2", "Jane", "Roe", 1, "Other"));
+            store.sortByName(1);
+            CompanyWriteException e = assertThrows(CompanyWriteException.class,
+                    () -> store.writeByCompany(output, CsvFormat.PLAIN));
+            assertEquals(List.of("acme"), List.copyOf(e.failures().keySet()));
+        }
+        assertTrue(Files.isRegularFile(output.resolve("other.csv")));
+    }
+
+    @Test
+    public void testClosedAndUnsortedStoreIsRejected() throws IOException {
+        Path output = Files.createTempDirectory("offheap-out");
+        OffHeapEnrollmentStore store = new OffHeapEnrollmentStore(1024);
+        store.add("acme", new Enrolled("1", "John", "Doe", 1, "Acme"));
+        assertThrows(IllegalStateException.class, () -> store.writeByCompany(output, CsvFormat.PLAIN));
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.add("acme", new Enrolled("2", "Jane", "Doe", 1, "Acme")));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapEnrollmentStore(1000));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapEnrollmentStore(1024)
+                .add("acme", new Enrolled("1", "x".repeat(600), "Doe", 1, "Acme")));
+    }
+}
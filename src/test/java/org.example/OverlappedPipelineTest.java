@@ -0,0 +1,118 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OverlappedPipelineTest {
+
+    @Test
+    public void testMatchesSequentialRead() throws IOException {
+        Path csv = TestCsv.messyCsv(21, 3_000, 300);
+        ParseContext sequential = new ParseContext(false, new RejectCollector(50, null));
+        Map<String, Map<String, Enrolled>> expected = MappedCSVReader.readEnrollees(csv.toString(), sequential);
+
+        for (int blockBytes : new int[]{16, 1000, 1 << 16}) {
+            for (int parallelism : new int[]{1, 3}) {
+                ParseContext context = new ParseContext(false, new RejectCollector(50, null));
+                String mode = blockBytes + "/" + parallelism;
+                Map<String, Map<String, Enrolled>> grouped =
+                        OverlappedPipeline.readEnrollees(csv.toString(), parallelism, context, blockBytes);
+                assertEquals(expected, grouped, mode);
+                // members iterate in the order the sequential read gives them, which ties in the sort keep
+                expected.forEach((company, enrollees) -> assertEquals(List.copyOf(enrollees.keySet()),
+                        List.copyOf(grouped.get(company).keySet()), mode));
+                assertEquals(sequential.rejects().summary(), context.rejects().summary(), mode);
+                assertEquals(sequential.rejects().sample(), context.rejects().sample(), mode);
+                assertEquals(sequential.accepted(), context.accepted(), mode);
+            }
+        }
+    }
+
+    @Test
+    public void testSideFileHasAbsoluteLineNumbers() throws IOException {
+        Path csv = TestCsv.messyCsv(21, 2_000, 300);
+        Path expected = Files.createTempFile("rejects", ".csv");
+        try (ParseContext context = new ParseContext(false, new RejectCollector(5, expected))) {
+            CSVReader.readEnrollees(csv.toString(), context);
+        }
+        Path actual = Files.createTempFile("rejects", ".csv");
+        try (ParseContext context = new ParseContext(false, new RejectCollector(5, actual))) {
+            OverlappedPipeline.readEnrollees(csv.toString(), 4, context, 512);
+        }
+        assertEquals(Files.readAllLines(expected).stream().sorted().toList(),
+                Files.readAllLines(actual).stream().sorted().toList());
+    }
+
+    @Test
+    public void testLastLineEnd() {
+        byte[] bytes = "ab\ncd\r\nef".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(7, LineBlockReader.lastLineEnd(bytes, bytes.length));
+        assertEquals(3, LineBlockReader.lastLineEnd(bytes, 6));
+        assertEquals(7, LineBlockReader.lastLineEnd(bytes, 7));
+        assertEquals(0, LineBlockReader.lastLineEnd(bytes, 2));
+        byte[] lone = "ab\rcd".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(3, LineBlockReader.lastLineEnd(lone, lone.length));
+    }
+
+    @Test
+    public void testReadFailuresReachTheCaller() throws IOException {
+        Path missing = Files.createTempDirectory("overlapped").resolve("missing.csv");
+        assertThrows(NoSuchFileException.class,
+                () -> OverlappedPipeline.readEnrollees(missing.toString(), 2, new ParseContext()));
+        // a directory opens, but the reader thread fails on its first read
+        Path directory = Files.createTempDirectory("overlapped");
+        assertThrows(IOException.class,
+                () -> OverlappedPipeline.readEnrollees(directory.toString(), 2, new ParseContext()));
+        assertThrows(IllegalArgumentException.class,
+                () -> OverlappedPipeline.readEnrollees(missing.toString(), 0, new ParseContext()));
+    }
+
+    @Test
+    public void testWriteFailuresAreCollected() throws IOException {
+        Path output = Files.createTempDirectory("overlapped-out");
+        // a directory where the company file should go
+        Files.createDirectories(output.resolve("acme.csv"));
+        Map<String, Map<String, Enrolled>> grouped = Map.of(
+                "acme", Map.of("1", new Enrolled("1", "Ann", "Lee", 1, "Acme")),
+                "zenith", Map.of("2", new Enrolled("2", "Bob", "Ray", 1, "Zenith")));
+
+        CompanyWriteException e = assertThrows(CompanyWriteException.class, () -> OverlappedPipeline.sortAndWrite(
+                grouped, Sorting.Strategy.COMPARATOR, 2, output, new PipelineMetrics()));
+        assertEquals(List.of("acme"), List.copyOf(e.failures().keySet()));
+        assertTrue(Files.exists(output.resolve("zenith.csv")));
+    }
+
+    @Test
+    public void testPipelineOutputMatchesStagedRun() throws IOException {
+        Path csv = TestCsv.messyCsv(21, 5_000, 300);
+        Path staged = Files.createTempDirectory("staged-out");
+        Path overlapped = Files.createTempDirectory("overlapped-out");
+        Pipeline.run(csv.toString(), PipelineOptions.parse(), staged);
+        PipelineMetrics metrics = Pipeline.run(csv.toString(),
+                PipelineOptions.parse("--pipeline=overlapped", "--parallelism=3", "--sort=radix"), overlapped);
+
+        List<Path> files;
+        try (var list = Files.list(staged)) {
+            files = list.toList();
+        }
+        assertEquals(files.size(), metrics.companyBytes().size());
+        // the sorts run inside the write stage, so their summed time may exceed it, but not their wall time
+        assertTrue(metrics.workerNanos(PipelineMetrics.Stage.SORT) > 0);
+        assertTrue(metrics.wallNanos(PipelineMetrics.Stage.SORT) <= metrics.wallNanos(PipelineMetrics.Stage.WRITE));
+        for (Path file : files) {
+            assertEquals(Files.readString(file), Files.readString(overlapped.resolve(file.getFileName())),
+                    file.getFileName().toString());
+        }
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.run(csv.toString(),
+                PipelineOptions.parse("--pipeline=overlapped", "--store=columnar"), overlapped));
+    }
+}
@@ -0,0 +1,91 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelGzipChannelTest {
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        }
+    }
+
+    // compressible text with some noise, written in uneven slices
+    private static byte[] sample(int size) {
+        Random random = new Random(42);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(8) == 0 ? (byte) random.nextInt(256) : (byte) ('a' + i % 26);
+        }
+        return data;
+    }
+
+    private static byte[] compress(byte[] data, ParallelGzipChannel channel, ByteArrayOutputStream target)
+            throws IOException {
+        int offset = 0;
+        for (int slice = 1; offset < data.length; slice = slice * 3 + 1) {
+            int n = Math.min(slice, data.length - offset);
+            channel.write(ByteBuffer.wrap(data, offset, n));
+            offset += n;
+        }
+        channel.close();
+        return target.toByteArray();
+    }
+
+    @Test
+    public void testRoundTripsAcrossManyBlocks() throws IOException {
+        byte[] data = sample(3 * ParallelGzipChannel.BLOCK_BYTES + 12345);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        byte[] gzip = compress(data, new ParallelGzipChannel(Channels.newChannel(target)), target);
+        assertArrayEquals(data, gunzip(gzip));
+        assertTrue(gzip.length < data.length);
+    }
+
+    @Test
+    public void testMembersStayInOrderWithFewPendingBlocks() throws IOException {
+        byte[] data = sample(5 * ParallelGzipChannel.BLOCK_BYTES);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            byte[] gzip = compress(data, new ParallelGzipChannel(Channels.newChannel(target), executor, 1), target);
+            assertArrayEquals(data, gunzip(gzip));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEmptyInputIsAValidGzipFile() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        new ParallelGzipChannel(Channels.newChannel(target)).close();
+        assertArrayEquals(new byte[0], gunzip(target.toByteArray()));
+    }
+
+    @Test
+    public void testIncompressibleBlockFits() throws IOException {
+        byte[] random = new byte[100_000];
+        new Random(7).nextBytes(random);
+        assertArrayEquals(random, gunzip(ParallelGzipChannel.member(random, random.length)));
+    }
+
+    @Test
+    public void testWriteAfterCloseFails() throws IOException {
+        ParallelGzipChannel channel = new ParallelGzipChannel(Channels.newChannel(new ByteArrayOutputStream()));
+        channel.close();
+        assertFalse(channel.isOpen());
+        assertThrows(java.nio.channels.ClosedChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+    }
+}
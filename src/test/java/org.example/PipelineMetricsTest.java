@@ -0,0 +1,99 @@
+package org.example;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineMetricsTest {
+
+    private static Path input() throws IOException {
+        Path csv = Files.createTempFile("metrics", ".csv");
+        Files.writeString(csv, """
+                User Id,Full Name,Version,Insurance Company
+                1,Alice Adams,1,Acme
+                1,Alice Adams,2,Acme
+                2,Bob Brown,1,ACME
+                3,Cy Cole,x,Acme
+                4,Dee Dunn,1,Zenith
+                5,Eve
+                """);
+        return csv;
+    }
+
+    @Test
+    public void testRunCountsEveryStage() throws IOException {
+        for (String store : List.of("objects", "columnar")) {
+            for (String reader : List.of("stream", "mapped", "parallel")) {
+                Path output = Files.createTempDirectory("metrics-out");
+                PipelineMetrics metrics = Pipeline.run(input().toString(),
+                        PipelineOptions.parse("--reader=" + reader, "--store=" + store), output);
+
+                String mode = reader + " " + store;
+                assertEquals(4, metrics.accepted(), mode);
+                assertEquals(2, metrics.rejected(), mode);
+                assertEquals(1, metrics.superseded(), mode);
+                assertEquals(2, metrics.peakCompanySize(), mode);
+                assertEquals(6, metrics.rows(PipelineMetrics.Stage.READ), mode);
+                assertEquals(Files.size(input()), metrics.bytes(PipelineMetrics.Stage.READ), mode);
+                assertEquals(3, metrics.rows(PipelineMetrics.Stage.SORT), mode);
+                assertEquals(3, metrics.rows(PipelineMetrics.Stage.WRITE), mode);
+                assertEquals(Map.of("acme", Files.size(output.resolve("acme.csv")),
+                        "zenith", Files.size(output.resolve("zenith.csv"))), metrics.companyBytes(), mode);
+                assertTrue(metrics.wallNanos(PipelineMetrics.Stage.READ) > 0, mode);
+            }
+        }
+    }
+
+    @Test
+    public void testExternalSortRecordsCompanyFiles() throws IOException {
+        Path output = Files.createTempDirectory("metrics-out");
+        PipelineMetrics metrics = Pipeline.run(input().toString(), PipelineOptions.parse("--external-sort=1k"), output);
+
+        assertEquals(3, metrics.rows(PipelineMetrics.Stage.WRITE));
+        assertEquals(Map.of("acme", Files.size(output.resolve("acme.csv")),
+                "zenith", Files.size(output.resolve("zenith.csv"))), metrics.companyBytes());
+    }
+
+    @Test
+    public void testJsonSummary() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.addNanos(PipelineMetrics.Stage.READ, 2_000_000_000L);
+        metrics.addRows(PipelineMetrics.Stage.READ, 10);
+        metrics.addBytes(PipelineMetrics.Stage.READ, 500);
+        metrics.recordCompanyFile("a \"b\"", 3, 90);
+
+        String json = metrics.toJson();
+        assertTrue(json.startsWith("{\"stages\":{\"read\":{\"wallMillis\":2000,\"rows\":10,\"bytes\":500,"
+                + "\"rowsPerSec\":5,\"bytesPerSec\":250}"), json);
+        assertTrue(json.contains("\"write\":{\"wallMillis\":0,\"rows\":3,\"bytes\":90,\"rowsPerSec\":0,\"bytesPerSec\":0}"), json);
+        assertTrue(json.endsWith("\"companies\":{\"a \\\"b\\\"\":{\"rows\":3,\"bytes\":90}}}"), json);
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws IOException {
+        Path file = Files.createTempFile("metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.example.PipelineStage");
+            recording.enable("org.example.CompanyWritten");
+            recording.start();
+            Pipeline.run(input().toString(), PipelineOptions.parse(), Files.createTempDirectory("metrics-out"));
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(List.of("read", "sort", "write"), events.stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.PipelineStage"))
+                .map(e -> e.getString("stage")).toList());
+        assertEquals(2, events.stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.CompanyWritten")).count());
+    }
+}
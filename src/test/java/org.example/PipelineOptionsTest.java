@@ -0,0 +1,145 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineOptionsTest {
+
+    @Test
+    public void testDefaultsWithoutArguments() {
+        PipelineOptions options = PipelineOptions.parse();
+        assertEquals(ReaderEngine.STREAM, options.readerEngine());
+    }
+
+    @Test
+    public void testReaderEngineSelection() {
+        assertEquals(ReaderEngine.MAPPED, PipelineOptions.parse("--reader=mapped").readerEngine());
+        assertEquals(ReaderEngine.MAPPED, PipelineOptions.parse("--reader=MAPPED").readerEngine());
+        assertEquals(ReaderEngine.PARALLEL, PipelineOptions.parse("--reader=parallel").readerEngine());
+    }
+
+    @Test
+    public void testParallelism() {
+        assertEquals(Runtime.getRuntime().availableProcessors(), PipelineOptions.parse().parallelism());
+        assertEquals(3, PipelineOptions.parse("--parallelism=3").parallelism());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--parallelism=0"));
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--parallelism=many"));
+    }
+
+    @Test
+    public void testUnknownOptionRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--nope=1"));
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("mapped"));
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--reader=teleport"));
+    }
+
+    @Test
+    public void testExternalSortSize() {
+        assertEquals(0, PipelineOptions.parse().externalSortBytes());
+        assertEquals(512, PipelineOptions.parse("--external-sort=512").externalSortBytes());
+        assertEquals(64L << 20, PipelineOptions.parse("--external-sort=64m").externalSortBytes());
+        assertEquals(2L << 30, PipelineOptions.parse("--external-sort=2G").externalSortBytes());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--external-sort=-1"));
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--external-sort=lots"));
+    }
+
+    @Test
+    public void testDedupeMemory() {
+        assertEquals(0, PipelineOptions.parse().dedupeMemoryBytes());
+        assertEquals(256L << 20, PipelineOptions.parse("--dedupe-memory=256m").dedupeMemoryBytes());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--dedupe-memory=0x10"));
+    }
+
+    @Test
+    public void testDedupeMap() {
+        assertFalse(PipelineOptions.parse().packedUserIds());
+        assertTrue(PipelineOptions.parse("--dedupe-map=Packed").packedUserIds());
+        assertFalse(PipelineOptions.parse("--dedupe-map=hash").packedUserIds());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--dedupe-map=tree"));
+    }
+
+    @Test
+    public void testWriters() {
+        assertEquals(1, PipelineOptions.parse().writers());
+        assertEquals(16, PipelineOptions.parse("--writers=16").writers());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--writers=0"));
+    }
+
+    @Test
+    public void testSnapshotDirectory() {
+        assertNull(PipelineOptions.parse().snapshotDirectory());
+        assertEquals(java.nio.file.Path.of("state"), PipelineOptions.parse("--snapshot=state").snapshotDirectory());
+    }
+
+    @Test
+    public void testStore() {
+        assertFalse(PipelineOptions.parse().columnarStore());
+        assertTrue(PipelineOptions.parse("--store=columnar").columnarStore());
+        assertFalse(PipelineOptions.parse("--store=objects").columnarStore());
+        assertFalse(PipelineOptions.parse().offHeapStore());
+        assertTrue(PipelineOptions.parse("--store=OffHeap").offHeapStore());
+        assertFalse(PipelineOptions.parse("--store=offheap").columnarStore());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--store=rows"));
+    }
+
+    @Test
+    public void testSortStrategy() {
+        assertEquals(Sorting.Strategy.COMPARATOR, PipelineOptions.parse().sortStrategy());
+        assertEquals(Sorting.Strategy.FOLDED, PipelineOptions.parse("--sort=folded").sortStrategy());
+        assertEquals(Sorting.Strategy.RADIX, PipelineOptions.parse("--sort=Radix").sortStrategy());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--sort=bogo"));
+    }
+
+    @Test
+    public void testInternNames() {
+        assertFalse(PipelineOptions.parse().internNames());
+        assertTrue(PipelineOptions.parse("--intern-names=true").internNames());
+        assertFalse(PipelineOptions.parse("--intern-names=FALSE").internNames());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--intern-names=maybe"));
+    }
+
+    @Test
+    public void testRejectsFile() {
+        assertNull(PipelineOptions.parse().rejectsFile());
+        assertEquals(java.nio.file.Path.of("bad.csv"), PipelineOptions.parse("--rejects=bad.csv").rejectsFile());
+    }
+
+    @Test
+    public void testMetricsFile() {
+        assertNull(PipelineOptions.parse().metricsFile());
+        assertEquals(java.nio.file.Path.of("-"), PipelineOptions.parse("--metrics=-").metricsFile());
+    }
+
+    @Test
+    public void testPipelineMode() {
+        assertFalse(PipelineOptions.parse().overlapped());
+        assertTrue(PipelineOptions.parse("--pipeline=overlapped").overlapped());
+        assertFalse(PipelineOptions.parse("--pipeline=staged").overlapped());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--pipeline=async"));
+    }
+
+    @Test
+    public void testCompress() {
+        assertFalse(PipelineOptions.parse().gzipOutput());
+        assertTrue(PipelineOptions.parse("--compress=gzip").gzipOutput());
+        assertFalse(PipelineOptions.parse("--compress=none").gzipOutput());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--compress=zstd"));
+    }
+
+    @Test
+    public void testFormat() {
+        assertFalse(PipelineOptions.parse().binaryOutput());
+        assertTrue(PipelineOptions.parse("--format=binary").binaryOutput());
+        assertFalse(PipelineOptions.parse("--format=csv").binaryOutput());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--format=parquet"));
+    }
+
+    @Test
+    public void testIndex() {
+        assertFalse(PipelineOptions.parse().indexOutput());
+        assertEquals(new CsvFormat(false, true), PipelineOptions.parse("--index=true").csvFormat());
+        assertEquals(CsvFormat.PLAIN, PipelineOptions.parse().csvFormat());
+        assertThrows(IllegalArgumentException.class, () -> PipelineOptions.parse("--index=true", "--compress=gzip"));
+    }
+}
@@ -0,0 +1,160 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineServerTest {
+
+    private static final String CSV = """
+            User Id,Full Name,Version,Insurance Company
+            1,Alice Adams,2,Acme
+            1,Alice Adams,3,Acme
+            2,Bob Brown,1,Beta Health
+            3,Carol Clark,1,acme
+            """;
+
+    // Unix-domain socket paths are limited to about 100 bytes
+    private static Path socket() throws IOException {
+        return Files.createTempDirectory("ps").resolve("s");
+    }
+
+    private static List<String> listing(Path dir) throws IOException {
+        List<String> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) paths.sorted()::iterator) {
+                files.add(file.getFileName() + ":" + Files.readString(file));
+            }
+        }
+        return files;
+    }
+
+    @Test
+    public void testJobsMatchARunInProcess() throws Exception {
+        Path input = Files.createTempFile("enroll", ".csv");
+        Files.writeString(input, CSV);
+        Path expected = Files.createTempDirectory("expected");
+        Pipeline.run(input.toString(), PipelineOptions.parse("--reader=mapped"), expected);
+
+        Path socket = socket();
+        try (PipelineServer server = PipelineServer.start(socket, 2)) {
+            ExecutorService clients = Executors.newFixedThreadPool(4);
+            try {
+                List<Path> outputs = new ArrayList<>();
+                List<Future<String>> replies = new ArrayList<>();
+                for (int i = 0; i < 6; i++) {
+                    Path output = Files.createTempDirectory("served");
+                    outputs.add(output);
+                    replies.add(clients.submit(() ->
+                            PipelineServer.submit(socket, input.toString(), output, "--reader=mapped")));
+                }
+                for (int i = 0; i < outputs.size(); i++) {
+                    String reply = replies.get(i).get();
+                    assertTrue(reply.startsWith("OK\t"), reply);
+                    assertTrue(reply.contains("\"unique\":3"), reply);
+                    assertEquals(listing(expected), listing(outputs.get(i)));
+                }
+            } finally {
+                clients.shutdownNow();
+            }
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testFailedJobsAreReportedAndTheServerKeepsRunning() throws Exception {
+        Path socket = socket();
+        Path output = Files.createTempDirectory("served");
+        try (PipelineServer server = PipelineServer.start(socket, 1)) {
+            String missing = PipelineServer.submit(socket, "/no/such/file.csv", output);
+            assertTrue(missing.startsWith("ERROR\t"), missing);
+            String badOption = PipelineServer.submit(socket, "/no/such/file.csv", output, "--reader=fast");
+            assertTrue(badOption.startsWith("ERROR\t"), badOption);
+            assertTrue(PipelineServer.run("STATUS").startsWith("ERROR\t"));
+
+            Path input = Files.createTempFile("enroll", ".csv");
+            Files.writeString(input, CSV);
+            assertTrue(PipelineServer.submit(socket, input.toString(), output).startsWith("OK\t"));
+        }
+    }
+
+    @Test
+    public void testPathsAreSentAbsoluteAndJobsPrintNothing() throws Exception {
+        Path input = Files.createTempFile("enroll", ".csv");
+        Files.writeString(input, CSV + "4,Bad Version,v,Acme\n");
+        Path output = Files.createTempDirectory("served");
+        Path rejects = Files.createTempDirectory("rejects").resolve("rejects.txt");
+        Path here = Path.of("").toAbsolutePath();
+
+        String relative = PipelineServer.run("RUN\t" + here.relativize(input) + "\t" + output);
+        assertTrue(relative.startsWith("ERROR\t") && relative.contains("absolute"), relative);
+        String relativeOption = PipelineServer.run("RUN\t" + input + "\t" + output + "\t--rejects=rejects.txt");
+        assertTrue(relativeOption.startsWith("ERROR\t") && relativeOption.contains("absolute"), relativeOption);
+
+        Path socket = socket();
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        try (PipelineServer server = PipelineServer.start(socket, 1)) {
+            System.setOut(new PrintStream(printed, true));
+            String reply = PipelineServer.submit(socket, here.relativize(input).toString(), here.relativize(output),
+                    "--rejects=" + here.relativize(rejects), "--metrics=-");
+            assertTrue(reply.startsWith("OK\t"), reply);
+        } finally {
+            System.setOut(stdout);
+        }
+        assertTrue(Files.readString(rejects).contains("BAD_VERSION"));
+        assertEquals(2, listing(output).size());
+        assertEquals("", printed.toString());
+    }
+
+    @Test
+    public void testShutdownStopsTheServer() throws Exception {
+        Path socket = socket();
+        PipelineServer server = PipelineServer.start(socket, 1);
+        assertThrows(IOException.class, () -> PipelineServer.start(socket, 1));
+        PipelineServer.shutdown(socket);
+        server.awaitShutdown();
+        assertFalse(Files.exists(socket));
+        assertThrows(IOException.class, () -> PipelineServer.submit(socket, "in.csv", Path.of("out")));
+    }
+
+    @Test
+    public void testIdleConnectionsHoldUpNeitherJobsNorShutdown() throws Exception {
+        Path input = Files.createTempFile("enroll", ".csv");
+        Files.writeString(input, CSV);
+        Path socket = socket();
+        PipelineServer server = PipelineServer.start(socket, 1);
+        try (SocketChannel idle = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+             SocketChannel alsoIdle = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            String reply = PipelineServer.submit(socket, input.toString(), Files.createTempDirectory("served"));
+            assertTrue(reply.startsWith("OK\t"), reply);
+            PipelineServer.shutdown(socket);
+            server.awaitShutdown();
+            // the server ends the idle connections instead of waiting for their requests
+            assertEquals(-1, idle.read(ByteBuffer.allocate(1)));
+            assertEquals(-1, alsoIdle.read(ByteBuffer.allocate(1)));
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testFieldsCannotBreakTheProtocol() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PipelineServer.submit(Path.of("unused"), "a\tb.csv", Path.of("out")));
+    }
+}
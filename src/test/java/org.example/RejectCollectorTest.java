@@ -0,0 +1,101 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RejectCollectorTest {
+
+    @Test
+    public void testCountsAndSummary() {
+        RejectCollector rejects = new RejectCollector();
+        assertEquals("Rejected 0 rows ()", rejects.summary());
+        rejects.reject(RejectCollector.Reason.BAD_VERSION, 4, () -> "a");
+        rejects.reject(RejectCollector.Reason.MISSING_USER_ID, 9, () -> "b");
+        rejects.reject(RejectCollector.Reason.BAD_VERSION, 12, () -> "c");
+
+        assertEquals(3, rejects.total());
+        assertEquals(2, rejects.count(RejectCollector.Reason.BAD_VERSION));
+        assertEquals("Rejected 3 rows (missing User Id: 1, invalid version number: 2); first at lines 4, 9, 12",
+                rejects.summary());
+    }
+
+    @Test
+    public void testSampleIsBoundedAndRowsAreOnlyBuiltWhenKept() throws IOException {
+        RejectCollector rejects = new RejectCollector(2, null);
+        rejects.reject(RejectCollector.Reason.UNEXPECTED, 1, () -> "one");
+        rejects.reject(RejectCollector.Reason.UNEXPECTED, 2, () -> "two");
+        rejects.reject(RejectCollector.Reason.UNEXPECTED, 3, () -> {
+            throw new AssertionError("row text of an unsampled reject");
+        });
+
+        assertEquals(3, rejects.total());
+        assertEquals(List.of(new RejectCollector.Rejected(1, RejectCollector.Reason.UNEXPECTED, "one"),
+                new RejectCollector.Rejected(2, RejectCollector.Reason.UNEXPECTED, "two")), rejects.sample());
+        assertThrows(IllegalArgumentException.class, () -> new RejectCollector(-1, null));
+    }
+
+    @Test
+    public void testSideFileGetsEveryReject() throws IOException {
+        Path side = Files.createTempFile("rejects", ".csv");
+        try (RejectCollector rejects = new RejectCollector(1, side)) {
+            for (int i = 0; i < 20_000; i++) {
+                int line = i;
+                rejects.reject(RejectCollector.Reason.MISSING_COMPANY, line, () -> "row " + line);
+            }
+        }
+        List<String> lines = Files.readAllLines(side);
+        assertEquals(20_001, lines.size());
+        assertEquals("Line,Reason,Row", lines.get(0));
+        assertEquals("19999,MISSING_COMPANY,row 19999", lines.get(20_000));
+    }
+
+    @Test
+    public void testReadersReportTheSameRejects() throws IOException {
+        Path csv = TestCsv.messyCsv(3, 5_000, 5_000);
+        ParseContext expected = new ParseContext(false, new RejectCollector(100, null));
+        CSVReader.readEnrollees(csv.toString(), expected);
+        assertTrue(expected.rejects().total() > 500);
+
+        ParseContext mapped = new ParseContext(false, new RejectCollector(100, null));
+        MappedCSVReader.readEnrollees(csv.toString(), mapped);
+        assertSameRejects(expected.rejects(), mapped.rejects());
+
+        ParseContext parallel = new ParseContext(false, new RejectCollector(100, null));
+        MappedCSVReader.readEnrolleesParallel(csv.toString(), 4, parallel, 4096);
+        assertSameRejects(expected.rejects(), parallel.rejects());
+
+        ParseContext tables = new ParseContext(false, new RejectCollector(100, null));
+        MappedCSVReader.readEnrolleeTablesParallel(csv.toString(), 3, tables, 1000);
+        assertSameRejects(expected.rejects(), tables.rejects());
+    }
+
+    @Test
+    public void testParallelSideFileHasAbsoluteLineNumbers() throws IOException {
+        Path csv = TestCsv.messyCsv(3, 3_000, 3_000);
+        Path sequentialFile = Files.createTempFile("rejects", ".csv");
+        try (ParseContext context = new ParseContext(false, new RejectCollector(5, sequentialFile))) {
+            CSVReader.readEnrollees(csv.toString(), context);
+        }
+        Path parallelFile = Files.createTempFile("rejects", ".csv");
+        try (ParseContext context = new ParseContext(false, new RejectCollector(5, parallelFile))) {
+            MappedCSVReader.readEnrolleesParallel(csv.toString(), 4, context, 2048);
+            assertEquals(5, context.rejects().sample().size());
+        }
+        // workers append concurrently, so only the set of lines is fixed
+        assertEquals(Files.readAllLines(sequentialFile).stream().sorted().toList(),
+                Files.readAllLines(parallelFile).stream().sorted().toList());
+    }
+
+    private static void assertSameRejects(RejectCollector expected, RejectCollector actual) {
+        for (RejectCollector.Reason reason : RejectCollector.Reason.values()) {
+            assertEquals(expected.count(reason), actual.count(reason), reason.label());
+        }
+        assertEquals(expected.sample(), actual.sample());
+    }
+}
@@ -0,0 +1,108 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedRunTest {
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    // runs every shard with the given options, writing binary files for the merge instead of CSV
+    private static List<Path> shardRuns(List<Path> shardFiles, String... args) throws IOException {
+        List<String> shardArgs = new ArrayList<>(List.of("--format=binary"));
+        for (String arg : args) {
+            if (!arg.startsWith("--compress=") && !arg.startsWith("--index=")) {
+                shardArgs.add(arg);
+            }
+        }
+        List<Path> shardOutputs = new ArrayList<>();
+        for (Path shard : shardFiles) {
+            Path output = Files.createTempDirectory("shard-out");
+            Pipeline.run(shard.toString(), PipelineOptions.parse(shardArgs.toArray(new String[0])), output);
+            shardOutputs.add(output);
+        }
+        return shardOutputs;
+    }
+
+    private static void assertShardedRunMatches(Path csv, int shards, String... args) throws IOException {
+        Path single = Files.createTempDirectory("single-out");
+        Pipeline.run(csv.toString(), PipelineOptions.parse(args), single);
+
+        List<Path> shardFiles = ShardedRun.partition(csv.toString(), Files.createTempDirectory("shards"), shards);
+        assertEquals(shards, shardFiles.size());
+        List<Path> shardOutputs = shardRuns(shardFiles, args);
+        Path merged = Files.createTempDirectory("merged-out");
+        int companies = ShardedRun.merge(shardOutputs, merged, PipelineOptions.parse(args).csvFormat());
+
+        List<Path> expected = list(single);
+        assertEquals(expected.stream().map(Path::getFileName).toList(),
+                list(merged).stream().map(Path::getFileName).toList());
+        for (Path file : expected) {
+            if (file.toString().endsWith(".idx")) {
+                // an index records the time of its file
+                continue;
+            }
+            companies--;
+            assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(merged.resolve(file.getFileName())),
+                    file.getFileName().toString());
+        }
+        assertEquals(0, companies);
+    }
+
+    @Test
+    public void testMergedShardsMatchSingleRun() throws IOException {
+        // quoted commas in the user ID, name and company are kept by a single run
+        Path csv = TestCsv.write(TestCsv.HEADER + "\n" + TestCsv.messyRows(25, 5_000, 600) + """
+                "U9,1","Ann, Marie Lee",2,"Acme, Inc"
+                "U9,1",Ann Lee,3,"Acme, Inc"
+                U9,"O,Brien Lee",1,Acme 1
+                """);
+        assertShardedRunMatches(csv, 3);
+        assertShardedRunMatches(csv, 1);
+        assertShardedRunMatches(csv, 2, "--reader=mapped", "--dedupe-map=packed");
+    }
+
+    @Test
+    public void testMergedShardsKeepCompressionAndIndex() throws IOException {
+        Path csv = TestCsv.messyCsv(25, 2_000, 600);
+        assertShardedRunMatches(csv, 4, "--compress=gzip");
+        assertShardedRunMatches(csv, 4, "--index=true");
+
+        Path output = Files.createTempDirectory("indexed-out");
+        List<Path> shardOutputs = shardRuns(ShardedRun.partition(csv.toString(), Files.createTempDirectory("shards"), 2));
+        ShardedRun.merge(shardOutputs, output, new CsvFormat(false, true));
+        assertEquals(CSVReader.readEnrollees(csv.toString()).get("acme 1").get("U7"),
+                CompanyIndex.lookup(output, "Acme 1", "U7"));
+    }
+
+    @Test
+    public void testSameMemberAlwaysInSameShard() {
+        for (int shards = 1; shards < 10; shards++) {
+            int shard = ShardedRun.shardOf("acme", "U1001", shards);
+            assertTrue(shard >= 0 && shard < shards);
+            assertEquals(shard, ShardedRun.shardOf("acme", "U1001", shards));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> ShardedRun.partition("missing.csv", Path.of("shards"), 0));
+    }
+
+    @Test
+    public void testCsvShardOutputsAreRefused() throws IOException {
+        Path shardOutput = Files.createTempDirectory("shard-out");
+        Files.writeString(shardOutput.resolve("acme.csv"), CSVWriter.HEADER + System.lineSeparator()
+                + "U1,Jane Doe,2,Acme");
+        assertThrows(IOException.class, () -> ShardedRun.merge(List.of(shardOutput),
+                Files.createTempDirectory("merged-out"), CsvFormat.PLAIN));
+    }
+}
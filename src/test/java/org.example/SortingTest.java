@@ -120,4 +120,93 @@ public class SortingTest {
         assertTrue(retained.containsKey("2") || retained.containsKey("1"),
                 "One of the company maps should survive merge");
     }
+
+    @Test
+    public void testEqualNamesOrderedByUserId() {
+        Map<String, Enrolled> acme = new HashMap<>();
+        for (String id : List.of("U9", "U10", "U2", "A7")) {
+            acme.put(id, new Enrolled(id, "Jane", "Doe", 1, "Acme"));
+        }
+        acme.put("B1", new Enrolled("B1", "JANE", "doe", 1, "Acme"));
+
+        var list = new ArrayList<>(Sorting.sortByName(Map.of("Acme", acme)).get("Acme").keySet());
+        assertEquals(List.of("A7", "B1", "U10", "U2", "U9"), list);
+    }
+
+    @Test
+    public void testStrategiesMatchComparatorOrder() {
+        String[] names = {"adams", "Adams", "ADAMS", "Ábel", "abel", "zoë", "Zoe", "ß", "SS", "",
+                "İ", "i", "ı", "µ", "Μ", "ÿ", "Ÿ", "a\u0000", "a", "van der Berg", "Van Der berg", null};
+        Random random = new Random(5);
+        Map<String, Map<String, Enrolled>> grouped = new LinkedHashMap<>();
+        for (int c = 0; c < 20; c++) {
+            Map<String, Enrolled> company = new HashMap<>();
+            for (int i = 0; i < 500; i++) {
+                String id = "u" + random.nextInt(10_000);
+                company.put(id, new Enrolled(id, names[random.nextInt(names.length)],
+                        names[random.nextInt(names.length)], 1, "C" + c));
+            }
+            grouped.put("c" + c, company);
+        }
+        // a company with supplementary characters takes the comparator fallback
+        grouped.put("deseret", Map.of(
+                "1", new Enrolled("1", "x", "\uD801\uDC00", 1, "D"),
+                "2", new Enrolled("2", "x", "\uD801\uDC28", 1, "D"),
+                "3", new Enrolled("3", "x", "\uD801\uDC01", 1, "D")));
+
+        Map<String, Map<String, Enrolled>> expected = Sorting.sortByName(grouped);
+        for (Sorting.Strategy strategy : Sorting.Strategy.values()) {
+            for (int parallelism : new int[]{1, 4}) {
+                Map<String, Map<String, Enrolled>> sorted = Sorting.sortByName(grouped, strategy, parallelism);
+                assertEquals(List.copyOf(expected.keySet()), List.copyOf(sorted.keySet()));
+                expected.forEach((company, enrollees) -> assertEquals(
+                        List.copyOf(enrollees.values()), List.copyOf(sorted.get(company).values()),
+                        strategy + " " + company));
+            }
+        }
+    }
+
+    @Test
+    public void testFoldMatchesCompareToIgnoreCase() {
+        String[] names = {"adams", "ADAMS", "Ábel", "ß", "SS", "İ", "ı", "µ", "Μ", "ǅ", "ǆ", "Ǆ", "K", "k"};
+        for (String a : names) {
+            for (String b : names) {
+                assertEquals(Integer.signum(a.compareToIgnoreCase(b)),
+                        Integer.signum(FoldedNameKey.fold(a).compareTo(FoldedNameKey.fold(b))), a + " vs " + b);
+            }
+        }
+        assertNull(FoldedNameKey.of(new Enrolled("1", "\uD801\uDC00", "x", 1, "D")));
+    }
+
+    @Test
+    public void testStrategyRejectsBadParallelism() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Sorting.sortByName(Map.of(), Sorting.Strategy.FOLDED, 0));
+        assertThrows(IllegalArgumentException.class, () -> Sorting.Strategy.fromName("quick"));
+    }
+
+    @Test
+    public void testRadixSortMatchesComparatorOnAsciiNames() {
+        String[] last = {"Smith", "smith", "SMITH", "Smithson", "Smit", "", "O'Brien", "o brien", "Mc Donald",
+                "McDonald", "a\u0000", "a", "A\u007F", null};
+        String[] first = {"Ann", "ann", "Anne", "An", "", "Zed", null};
+        Random random = new Random(9);
+        List<Enrolled> enrollees = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            // user ids are map keys, so unique; equal names fall back to them
+            String id = i == 0 ? null : "u" + random.nextInt(100) + "-" + i;
+            enrollees.add(new Enrolled(id, first[random.nextInt(first.length)], last[random.nextInt(last.length)], 1, "Acme"));
+        }
+        List<Enrolled> expected = new ArrayList<>(enrollees);
+        expected.sort(Sorting.BY_NAME);
+        assertEquals(expected, List.of(NameRadixSort.sort(enrollees)));
+    }
+
+    @Test
+    public void testRadixSortDeclinesNonAsciiData() {
+        assertNull(NameRadixSort.sort(List.of(
+                new Enrolled("1", "Ann", "Smith", 1, "Acme"),
+                new Enrolled("2", "Zoë", "Smith", 1, "Acme"))));
+        assertNull(NameRadixSort.sort(List.of(new Enrolled("ü1", "Ann", "Smith", 1, "Acme"))));
+    }
 }
@@ -0,0 +1,107 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpillingDeduplicatorTest {
+
+    private static Map<String, Map<String, Enrolled>> survivors(SpillingDeduplicator dedupe) throws IOException {
+        Map<String, Map<String, Enrolled>> grouped = new HashMap<>();
+        dedupe.forEachSurvivor((company, e) -> assertNull(
+                grouped.computeIfAbsent(company, k -> new HashMap<>()).put(e.userId(), e), "emitted twice"));
+        return grouped;
+    }
+
+    @Test
+    public void testSpillingMatchesInMemoryRead() throws IOException {
+        // few members with many versions each, so spills overlap and versions tie
+        Path csv = TestCsv.messyCsv(22, 20_000, 400);
+        ParseContext expectedContext = new ParseContext(false, new RejectCollector(50, null));
+        Map<String, Map<String, Enrolled>> expected = CSVReader.readEnrollees(csv.toString(), expectedContext);
+
+        // from no spill at all down to partitions that have to be split again
+        for (long budget : new long[]{Long.MAX_VALUE, 200_000, 20_000, 1}) {
+            ParseContext context = new ParseContext(false, new RejectCollector(50, null));
+            try (SpillingDeduplicator dedupe = new SpillingDeduplicator(budget, 4)) {
+                dedupe.addFile(csv.toString(), context);
+                assertEquals(budget == Long.MAX_VALUE, dedupe.spills() == 0, "budget " + budget);
+                assertEquals(expected, survivors(dedupe), "budget " + budget);
+            }
+            assertEquals(expectedContext.accepted(), context.accepted(), "budget " + budget);
+            assertEquals(expectedContext.rejects().summary(), context.rejects().summary(), "budget " + budget);
+        }
+    }
+
+    @Test
+    public void testFirstRowWinsVersionTie() throws IOException {
+        try (SpillingDeduplicator dedupe = new SpillingDeduplicator(1, 2)) {
+            dedupe.add("acme", new Enrolled("U1", "First", "Row", 2, "Acme"));
+            dedupe.add("acme", new Enrolled("U1", "Older", "Row", 1, "Acme"));
+            dedupe.add("acme", new Enrolled("U1", "Tied", "Row", 2, "Acme"));
+            dedupe.add("other", new Enrolled("U1", "Other", "Company", 0, "Other"));
+            assertEquals(4, dedupe.spills());
+            assertEquals(Map.of(
+                    "acme", Map.of("U1", new Enrolled("U1", "First", "Row", 2, "Acme")),
+                    "other", Map.of("U1", new Enrolled("U1", "Other", "Company", 0, "Other"))), survivors(dedupe));
+        }
+    }
+
+    private static Set<Path> dedupeDirectories() throws IOException {
+        try (var dirs = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return dirs.filter(d -> d.getFileName().toString().startsWith("enrollment-dedupe"))
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    public void testCloseRemovesTemporaryFiles() throws IOException {
+        Set<Path> before = dedupeDirectories();
+        try (SpillingDeduplicator dedupe = new SpillingDeduplicator(1, 8)) {
+            for (int i = 0; i < 100; i++) {
+                dedupe.add("acme", new Enrolled("U" + i, "Jane", "Doe", i, "Acme"));
+            }
+            assertEquals(before.size() + 1, dedupeDirectories().size());
+        }
+        assertEquals(before, dedupeDirectories());
+        assertThrows(IllegalArgumentException.class, () -> new SpillingDeduplicator(0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new SpillingDeduplicator(1 << 20, 1));
+    }
+
+    @Test
+    public void testPipelineWritesSameFilesAsInMemoryRun() throws IOException {
+        Path csv = TestCsv.messyCsv(22, 5_000, 400);
+        Path inMemory = Files.createTempDirectory("in-memory-out");
+        Path spilling = Files.createTempDirectory("spilling-out");
+        PipelineMetrics expected = Pipeline.run(csv.toString(), PipelineOptions.parse(), inMemory);
+        PipelineMetrics metrics = Pipeline.run(csv.toString(), PipelineOptions.parse("--dedupe-memory=16k"), spilling);
+
+        List<Path> files;
+        try (var list = Files.list(inMemory)) {
+            files = list.toList();
+        }
+        assertFalse(files.isEmpty());
+        for (Path file : files) {
+            assertEquals(Files.readString(file), Files.readString(spilling.resolve(file.getFileName())),
+                    file.getFileName().toString());
+        }
+        assertEquals(expected.accepted(), metrics.accepted());
+        assertEquals(expected.rejected(), metrics.rejected());
+        assertEquals(expected.peakCompanySize(), metrics.peakCompanySize());
+        assertEquals(expected.companyBytes(), metrics.companyBytes());
+        for (String option : new String[]{"--store=columnar", "--reader=mapped", "--writers=4", "--sort=radix",
+                "--dedupe-map=packed", "--intern-names=true"}) {
+            assertThrows(IllegalArgumentException.class, () -> Pipeline.run(csv.toString(),
+                    PipelineOptions.parse("--dedupe-memory=16k", option), spilling), option);
+        }
+    }
+}
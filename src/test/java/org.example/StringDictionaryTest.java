@@ -0,0 +1,66 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StringDictionaryTest {
+
+    @Test
+    public void testSameContentReturnsSameInstance() {
+        StringDictionary dictionary = new StringDictionary(100);
+        char[] chars = "xAcme Insx".toCharArray();
+        byte[] bytes = "--Acme Ins".getBytes(StandardCharsets.US_ASCII);
+        String first = dictionary.intern(chars, 1, 9);
+        assertEquals("Acme Ins", first);
+        assertSame(first, dictionary.intern(chars, 1, 9));
+        assertSame(first, dictionary.internAscii(bytes, 2, 10));
+        assertSame(first, dictionary.intern(new String("Acme Ins")));
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    public void testDistinctValuesAndGrowth() {
+        StringDictionary dictionary = new StringDictionary(10_000);
+        String[] canonical = new String[2000];
+        for (int i = 0; i < canonical.length; i++) {
+            canonical[i] = dictionary.intern(("Company " + i).toCharArray(), 0, ("Company " + i).length());
+        }
+        for (int i = 0; i < canonical.length; i++) {
+            assertSame(canonical[i], dictionary.intern("Company " + i));
+        }
+        assertEquals(canonical.length, dictionary.size());
+    }
+
+    @Test
+    public void testFullDictionaryStillReturnsValues() {
+        StringDictionary dictionary = new StringDictionary(2);
+        dictionary.intern("a");
+        dictionary.intern("b");
+        String c = dictionary.intern("c".toCharArray(), 0, 1);
+        assertEquals("c", c);
+        assertNotSame(c, dictionary.intern("c".toCharArray(), 0, 1));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    public void testLowerCaseIsComputedOncePerEntry() {
+        StringDictionary dictionary = new StringDictionary(10);
+        String company = dictionary.intern("ACME Ins");
+        String lower = dictionary.lowerCase(company);
+        assertEquals("acme ins", lower);
+        assertSame(lower, dictionary.lowerCase(company));
+        assertSame(lower, dictionary.lowerCase(new String("ACME Ins")));
+        // unknown values are still lower-cased
+        assertEquals("bürger", dictionary.lowerCase("BÜRGER"));
+    }
+
+    @Test
+    public void testEmptyValue() {
+        StringDictionary dictionary = new StringDictionary(10);
+        assertEquals("", dictionary.intern(new char[0], 0, 0));
+        assertSame(dictionary.intern(new char[0], 0, 0), dictionary.intern(""));
+    }
+}
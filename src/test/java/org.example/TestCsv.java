@@ -0,0 +1,74 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generated input for the tests that compare readers, stores and pipeline modes on the
+ * same large, untidy file.
+ */
+final class TestCsv {
+
+    static final String HEADER = "User Id,Full Name,Version,Insurance Company";
+
+    private static final String[] FIRST_NAMES = {"anna", "Anna", "Émile", "zoë", "O'Brien", "Li"};
+    private static final String[] SPELLINGS = {"Acme ", "ACME ", " acme "};
+    private static final String[] TERMINATORS = {"\n", "\r\n", "\r"};
+
+    private TestCsv() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns {@code rows} rows, each with a line terminator, drawn from {@code seed}:
+     * <ul>
+     *     <li>members {@code U0} to {@code U<members-1>} with versions 0 to 3, so members
+     *         repeat and versions tie</li>
+     *     <li>companies {@code Acme 0} to {@code Acme 3}, spelled in upper or lower case
+     *         and some with a leading blank</li>
+     *     <li>first names differing only in case or with non-ASCII letters, and now and
+     *         then a 3000 character last name</li>
+     *     <li>about a fifth rejected, for a bad version, too few fields, a missing user ID
+     *         or a missing company, and a few empty lines</li>
+     *     <li>{@code \n}, {@code \r\n} and {@code \r} line terminators</li>
+     * </ul>
+     */
+    static String messyRows(long seed, int rows, int members) {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            String company = SPELLINGS[random.nextInt(SPELLINGS.length)] + random.nextInt(4);
+            switch (random.nextInt(20)) {
+                case 0 -> content.append('U').append(i).append(",Bad Version,v,").append(company);
+                case 1 -> content.append('U').append(i).append(",Short");
+                case 2 -> content.append("");
+                case 3 -> content.append(",Ann Lee,1,").append(company);
+                case 4 -> content.append('U').append(i).append(",Ann Lee,1,");
+                default -> {
+                    String last = random.nextInt(100) == 0 ? "x".repeat(3000) : "Lee" + random.nextInt(30);
+                    content.append('U').append(random.nextInt(members)).append(',')
+                            .append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(' ').append(last)
+                            .append(',').append(random.nextInt(4)).append(',').append(company);
+                }
+            }
+            content.append(TERMINATORS[random.nextInt(TERMINATORS.length)]);
+        }
+        return content.toString();
+    }
+
+    /**
+     * Writes a header and {@link #messyRows} to a temporary file.
+     */
+    static Path messyCsv(long seed, int rows, int members) throws IOException {
+        return write(HEADER + "\r\n" + messyRows(seed, rows, members));
+    }
+
+    static Path write(String content) throws IOException {
+        Path csv = Files.createTempFile("enroll", ".csv");
+        Files.writeString(csv, content, StandardCharsets.UTF_8);
+        return csv;
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserIdMapTest {
+
+    @Test
+    public void testPackedKeysAreDistinct() {
+        List<String> packable = List.of("U1001", "U01001", "1001", "AB1001", "ab1001", "A1", "AA1", "U999999999999");
+        Set<Long> keys = new HashSet<>();
+        for (String userId : packable) {
+            long key = UserIdMap.pack(userId);
+            assertNotEquals(0L, key, userId);
+            assertTrue(keys.add(key), userId);
+        }
+        for (String userId : List.of("", "U", "ABC1", "U-1", "U1001x", "U1234567890123", "Ü1", " U1")) {
+            assertEquals(0L, UserIdMap.pack(userId), userId);
+        }
+    }
+
+    @Test
+    public void testHighestVersionWinsAndFirstWinsTies() {
+        UserIdMap map = new UserIdMap();
+        assertTrue(map.add(new Enrolled("U1", "John", "Doe", 1, "Acme")));
+        assertTrue(map.add(new Enrolled("member-2", "Jane", "Roe", 4, "Acme")));
+        assertTrue(map.add(new Enrolled("U1", "Johnny", "Doe", 3, "Acme")));
+        assertFalse(map.add(new Enrolled("U1", "Other", "Doe", 3, "Acme")));
+        assertFalse(map.add(new Enrolled("member-2", "Jane", "Roe", 2, "Acme")));
+
+        assertEquals(Map.of("U1", new Enrolled("U1", "Johnny", "Doe", 3, "Acme"),
+                "member-2", new Enrolled("member-2", "Jane", "Roe", 4, "Acme")), map);
+        assertNull(map.get("U2"));
+        assertFalse(map.containsKey(1));
+        assertThrows(NullPointerException.class, () -> map.add(new Enrolled(null, "a", "b", 1, "Acme")));
+        assertThrows(NullPointerException.class, () -> map.add(new Enrolled("U3", "a", "b", null, "Acme")));
+        assertThrows(IllegalArgumentException.class, () -> map.put("U3", new Enrolled("U4", "a", "b", 1, "Acme")));
+        assertThrows(UnsupportedOperationException.class, () -> map.merge("U1", map.get("U1"), (a, b) -> null));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove("U1"));
+    }
+
+    @Test
+    public void testMatchesHashMapOnRandomRows() {
+        Random random = new Random(24);
+        UserIdMap added = new UserIdMap();
+        UserIdMap merged = new UserIdMap(4);
+        Map<String, Enrolled> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            // mostly packable IDs, some with leading zeros, and a String fallback share
+            String userId = switch (random.nextInt(4)) {
+                case 0 -> "U0" + random.nextInt(500);
+                case 1 -> "id-" + random.nextInt(500);
+                default -> "U" + random.nextInt(5000);
+            };
+            Enrolled e = new Enrolled(userId, "F" + i, "L", random.nextInt(20), "Acme");
+            added.add(e);
+            merged.merge(userId, e, (e1, e2) -> e1.version() >= e2.version() ? e1 : e2);
+            expected.merge(userId, e, (e1, e2) -> e1.version() >= e2.version() ? e1 : e2);
+        }
+        assertEquals(expected, added);
+        assertEquals(expected, merged);
+        assertEquals(expected.size(), added.size());
+        assertEquals(expected.hashCode(), added.hashCode());
+    }
+
+    @Test
+    public void testReadersDeduplicateIntoUserIdMaps() throws IOException {
+        Path csv = Files.createTempFile("packed", ".csv");
+        Files.writeString(csv, """
+                User Id,Full Name,Version,Insurance Company
+                U1001,John Doe,1,Acme
+                U1001,John Doe,2,ACME
+                x-7,Jane Roe,1,Acme
+                U1001,Johnny Doe,2,Acme
+                U1002,Jim Poe,v,Acme
+                """);
+        PipelineOptions options = PipelineOptions.parse("--dedupe-map=packed");
+        Map<String, Map<String, Enrolled>> expected = ReaderEngine.STREAM.read(csv.toString(), PipelineOptions.parse());
+        Map<String, Map<String, Map<String, Enrolled>>> reads = new LinkedHashMap<>();
+        for (ReaderEngine engine : ReaderEngine.values()) {
+            reads.put(engine.name(), engine.read(csv.toString(), options));
+        }
+        try (ParseContext context = options.newParseContext()) {
+            reads.put("overlapped", OverlappedPipeline.readEnrollees(csv.toString(), 2, context));
+        }
+        try (ParseContext context = options.newParseContext()) {
+            reads.put("batch", BatchReader.readEnrollees(List.of(csv, csv), options, context));
+        }
+        reads.forEach((name, grouped) -> {
+            assertEquals(expected, grouped, name);
+            assertTrue(grouped.get("acme") instanceof UserIdMap, name);
+            assertEquals(new Enrolled("U1001", "John", "Doe", 2, "ACME"), grouped.get("acme").get("U1001"));
+        });
+        Path output = Files.createTempDirectory("packed");
+        assertThrows(IllegalArgumentException.class, () -> Pipeline.run(csv.toString(),
+                PipelineOptions.parse("--store=columnar", "--dedupe-map=packed"), output));
+    }
+}
@@ -32,4 +32,9 @@ public class UtilityClassTest {
     public void testSortingCannotBeInstantiated() throws Exception {
         assertUtilityClassNonInstantiable(Sorting.class);
     }
+
+    @Test
+    public void testShardedRunCannotBeInstantiated() throws Exception {
+        assertUtilityClassNonInstantiable(ShardedRun.class);
+    }
 }